@@ -2,6 +2,7 @@ package evolutionaryrobotics.evaluationfunctions;
 
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
+import simulation.Simulator;
 import simulation.Updatable;
 import simulation.util.Arguments;
 
@@ -17,6 +18,18 @@ public abstract class EvaluationFunction implements Serializable, Updatable {
 		return fitness;
 	}
 	
+	/**
+	 * Optimistic bound of the fitness of the sample, given the steps simulated
+	 * so far, used to abort evaluations that cannot be selected. Evaluation
+	 * functions that cannot bound their fitness return infinity, and their
+	 * evaluations are never aborted.
+	 * 
+	 * @param remainingSteps number of steps of the sample still to simulate
+	 */
+	public double getFitnessUpperBound(Simulator simulator, int remainingSteps) {
+		return Double.POSITIVE_INFINITY;
+	}
+	
 	public Arguments getArgs() {
 		return args;
 	}
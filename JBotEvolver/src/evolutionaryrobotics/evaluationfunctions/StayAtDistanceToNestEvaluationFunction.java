@@ -29,5 +29,11 @@ public class StayAtDistanceToNestEvaluationFunction extends EvaluationFunction {
 			fitness += 1/(Math.abs(distance - distanceToNest) + .1)*.1; 
 		}
 	}
+	
+	@Override
+	public double getFitnessUpperBound(Simulator simulator, int remainingSteps) {
+		//each robot gets at most 1 per step, at the given distance
+		return fitness + remainingSteps * simulator.getEnvironment().getRobots().size();
+	}
 
 }
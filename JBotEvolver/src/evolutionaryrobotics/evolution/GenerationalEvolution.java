@@ -2,6 +2,9 @@ package evolutionaryrobotics.evolution;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 
 import simulation.Simulator;
 import simulation.robot.Robot;
@@ -16,19 +19,63 @@ import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
 import evolutionaryrobotics.populations.Population;
 import evolutionaryrobotics.util.DiskStorage;
+import evolutionaryrobotics.util.SampleRace;
+import evolutionaryrobotics.util.SelectionThreshold;
 
 public class GenerationalEvolution extends Evolution {
 	
 	protected Population population;
 	@ArgumentsAnnotation(name="supressmessages", values={"0","1"}, help="Set to 1 to show information about the evolution on the java console")
 	protected DiskStorage diskStorage;
+	@ArgumentsAnnotation(name="fitnesscache", defaultValue="0", help="Maximum number of samples whose fitness is cached, so that chromosomes that are evaluated again with the same samples are not simulated again. Set to 0 to disable the cache.")
+	protected int fitnessCacheSize = 0;
+	@ArgumentsAnnotation(name="reusesimulator", values={"0","1"}, defaultValue="0", help="Set to 1 to reuse the simulator and the robots of each thread in all the samples, resetting them between samples, when the environment and the robots support it.")
+	protected boolean reuseSimulator = false;
+	@ArgumentsAnnotation(name="checkpointlog", defaultValue="0", help="Set to K to save the populations in an append-only log, with a full snapshot every K generations and the changes in between, instead of a file per generation. Set to 0 to save a file per generation.")
+	protected int checkpointLog = 0;
+	@ArgumentsAnnotation(name="fitnesslog", values={"0","1"}, defaultValue="1", help="Set to 0 to save the fitness only in the binary _fitness.bin history, and not in the _fitness.log text file.")
+	protected boolean textFitnessLog = true;
+	@ArgumentsAnnotation(name="racing", values={"0","1"}, defaultValue="0", help="Set to 1 to abort the evaluations that cannot reach the selection threshold of the population, when the evaluation function gives an upper bound of the fitness. The fitness of an aborted evaluation is its bound, which is used for the selection but not for the average and lowest fitness of the generation.")
+	protected boolean racing = false;
+	@ArgumentsAnnotation(name="adaptivesamples", values={"0","1"}, defaultValue="0", help="Set to 1 to give each chromosome one sample, and more samples, up to the number of samples of the population, only to the chromosomes whose confidence interval overlaps a selection boundary of the population. The fitness of a chromosome is the average of its samples.")
+	protected boolean adaptiveSamples = false;
+	@ArgumentsAnnotation(name="racingdelta", defaultValue="0.05", help="Probability that a chromosome is placed on the wrong side of a selection boundary with adaptivesamples=1. It is only guaranteed when racingrange is set, otherwise it is a heuristic.")
+	protected double racingDelta = 0.05;
+	@ArgumentsAnnotation(name="racingbound", values={"hoeffding","bernstein"}, defaultValue="hoeffding", help="Confidence interval used with adaptivesamples=1. The empirical Bernstein bound is tighter than the Hoeffding bound only with many samples and a small variance.")
+	protected boolean hoeffding = true;
+	@ArgumentsAnnotation(name="racingrange", defaultValue="0", help="Difference between the highest and the lowest fitness that a sample can get, used by the confidence intervals of adaptivesamples=1. Set to 0 to estimate it from the samples of each generation.")
+	protected double racingRange = 0;
 	protected String output = "";
 	protected DecimalFormat df = new DecimalFormat("#.##");
+	protected LinkedList<JBotEvolver> preparedEvolvers = new LinkedList<JBotEvolver>();
 
 	public GenerationalEvolution(JBotEvolver jBotEvolver, TaskExecutor taskExecutor, Arguments args) {
 		super(jBotEvolver, taskExecutor, args);
 		
+		fitnessCacheSize = args.getArgumentAsIntOrSetDefault("fitnesscache", fitnessCacheSize);
+		reuseSimulator = args.getArgumentAsIntOrSetDefault("reusesimulator", 0) == 1;
+		checkpointLog = args.getArgumentAsIntOrSetDefault("checkpointlog", checkpointLog);
+		textFitnessLog = args.getArgumentAsIntOrSetDefault("fitnesslog", 1) == 1;
+		racing = args.getArgumentAsIntOrSetDefault("racing", 0) == 1;
+		adaptiveSamples = args.getArgumentAsIntOrSetDefault("adaptivesamples", 0) == 1;
+		racingDelta = args.getArgumentAsDoubleOrSetDefault("racingdelta", racingDelta);
+		racingRange = args.getArgumentAsDoubleOrSetDefault("racingrange", racingRange);
+		
+		String bound = args.getArgumentAsStringOrSetDefault("racingbound", "hoeffding");
+		if(!bound.equalsIgnoreCase("hoeffding") && !bound.equalsIgnoreCase("bernstein"))
+			throw new RuntimeException("Unknown racingbound: "+bound);
+		hoeffding = bound.equalsIgnoreCase("hoeffding");
+		
+		if(racingRange < 0)
+			throw new RuntimeException("racingrange cannot be negative: "+racingRange);
+		
 		setupPopulation();
+		
+		if(adaptiveSamples && racing)
+			throw new RuntimeException("The evaluations cannot be aborted (racing=1) with adaptivesamples=1");
+		if(adaptiveSamples && population.getSelectionBoundaries() == null)
+			throw new RuntimeException("Population "+population.getClass().getSimpleName()+" does not support adaptivesamples=1");
+		
 		setupDiskStorage();
 	}
 	
@@ -51,26 +98,100 @@ public class GenerationalEvolution extends Evolution {
 			
 			Chromosome c;
 			
-			int totalChromosomes = 0;
+			int cacheHits = 0;
+			int cacheMisses = 0;
+			int aborted = 0;
+			int simulatedSamples = 0;
+			int maxSamples = 0;
 			
-			while ((c = population.getNextChromosomeToEvaluate()) != null && executeEvolution) {
+			if(adaptiveSamples) {
+				ArrayList<Chromosome> chromosomes = new ArrayList<Chromosome>();
+				HashMap<Integer, Integer> indexes = new HashMap<Integer, Integer>();
+				ArrayList<Integer> round = new ArrayList<Integer>();
+				
+				while ((c = population.getNextChromosomeToEvaluate()) != null) {
+					indexes.put(c.getID(), chromosomes.size());
+					round.add(chromosomes.size());
+					chromosomes.add(c);
+				}
+				
 				int samples = population.getNumberOfSamplesPerChromosome();
+				maxSamples = samples * chromosomes.size();
+				SampleRace race = new SampleRace(chromosomes.size(), samples, population.getSelectionBoundaries(), racingDelta, hoeffding, racingRange);
 				
-				taskExecutor.addTask(new GenerationalTask(
-						new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()),
-						samples,c,population.getGenerationRandomSeed())
-				);
+				//one sample for each chromosome, and then the chromosomes whose
+				//side of the selection boundaries is not known get as many
+				//samples again as they have, so that there are few rounds
+				while(!round.isEmpty() && executeEvolution) {
+					for(int i : round) {
+						int done = race.getNumberOfSamples(i);
+						GenerationalTask task = new GenerationalTask(
+								getTaskEvolver(),
+								Math.max(1, Math.min(done, samples - done)),chromosomes.get(i),population.getGenerationRandomSeed(),fitnessCacheSize,reuseSimulator);
+						task.setFirstSample(done);
+						taskExecutor.addTask(task);
+						print(".");
+					}
+					
+					print("\n");
+					
+					prepareEvolvers(population.getPopulationSize());
+					
+					for(int n = round.size() ; n > 0 && executeEvolution ; n--) {
+						SimpleFitnessResult result = (SimpleFitnessResult)taskExecutor.getResult();
+						race.addSamples(indexes.get(result.getChromosomeId()), result.getSamplesFitness());
+						cacheHits+= result.getCacheHits();
+						cacheMisses+= result.getCacheMisses();
+						print("!");
+					}
+					
+					print("\n");
+					round = race.getUndecided();
+				}
 				
-				totalChromosomes++;
-				print(".");
-			}
+				if(executeEvolution) {
+					for(int i = 0 ; i < chromosomes.size() ; i++)
+						population.setEvaluationResultForId(chromosomes.get(i).getID(), race.getMean(i));
+				}
+				
+				simulatedSamples = race.getTotalNumberOfSamples();
+			} else {
+				int totalChromosomes = 0;
+			
+				SelectionThreshold threshold = racing ? new SelectionThreshold() : null;
 			
-			print("\n");
+				while ((c = population.getNextChromosomeToEvaluate()) != null && executeEvolution) {
+					int samples = population.getNumberOfSamplesPerChromosome();
+				
+					GenerationalTask task = new GenerationalTask(
+							getTaskEvolver(),
+							samples,c,population.getGenerationRandomSeed(),fitnessCacheSize,reuseSimulator);
+					task.setSelectionThreshold(threshold);
+					taskExecutor.addTask(task);
+				
+					totalChromosomes++;
+					print(".");
+				}
+			
+				print("\n");
 			
-			while(totalChromosomes-- > 0 && executeEvolution) {
-				SimpleFitnessResult result = (SimpleFitnessResult)taskExecutor.getResult();
-				population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
-				print("!");
+				prepareEvolvers(population.getPopulationSize());
+			
+				while(totalChromosomes-- > 0 && executeEvolution) {
+					SimpleFitnessResult result = (SimpleFitnessResult)taskExecutor.getResult();
+					if(result.isAborted())
+						population.getChromosome(result.getChromosomeId()).setFitnessAborted(true);
+					population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
+					cacheHits+= result.getCacheHits();
+					cacheMisses+= result.getCacheMisses();
+				
+					if(result.isAborted())
+						aborted++;
+					else if(threshold != null)
+						threshold.raise(population.getSelectionThreshold());
+				
+					print(result.isAborted() ? "x" : "!");
+				}
 			}
 			
 			if(executeEvolution) {
@@ -78,7 +199,10 @@ public class GenerationalEvolution extends Evolution {
 				print("\nGeneration "+population.getNumberOfCurrentGeneration()+
 						"\tHighest: "+population.getHighestFitness()+
 						"\tAverage: "+population.getAverageFitness()+
-						"\tLowest: "+population.getLowestFitness()+"\n");
+						"\tLowest: "+population.getLowestFitness()+
+						(fitnessCacheSize > 0 ? "\tCache hits: "+cacheHits+"\tmisses: "+cacheMisses : "")+
+						(racing ? "\tAborted: "+aborted : "")+
+						(adaptiveSamples ? "\tSamples: "+simulatedSamples+"/"+maxSamples : "")+"\n");
 				
 				try {
 					diskStorage.savePopulation(population);
@@ -93,6 +217,21 @@ public class GenerationalEvolution extends Evolution {
 		diskStorage.close();
 	}
 	
+	/**
+	 * Prepares, while the tasks just added are evaluated, the copies of the
+	 * arguments that the given number of next tasks will use.
+	 */
+	protected void prepareEvolvers(int tasks) {
+		while(preparedEvolvers.size() < tasks && executeEvolution)
+			preparedEvolvers.add(new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed()));
+	}
+	
+	protected JBotEvolver getTaskEvolver() {
+		if(!preparedEvolvers.isEmpty())
+			return preparedEvolvers.poll();
+		return new JBotEvolver(jBotEvolver.getArgumentsCopy(), jBotEvolver.getRandomSeed());
+	}
+	
 	protected int getGenomeLength() {
 		
 		Simulator sim = jBotEvolver.createSimulator();
@@ -137,6 +276,8 @@ public class GenerationalEvolution extends Evolution {
 		if (jBotEvolver.getArguments().get("--output") != null) {
 			output = jBotEvolver.getArguments().get("--output").getCompleteArgumentString();
 			diskStorage = new DiskStorage(jBotEvolver.getArguments().get("--output").getCompleteArgumentString());
+			diskStorage.setCheckpointLog(checkpointLog);
+			diskStorage.setTextFitnessLog(textFitnessLog);
 			try {
 				diskStorage.start();
 				diskStorage.saveCommandlineArguments(jBotEvolver.getArguments());
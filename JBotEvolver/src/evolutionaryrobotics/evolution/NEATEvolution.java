@@ -77,6 +77,7 @@ public class NEATEvolution extends Evolution {
 		algorithm.pluginParentSelector(new TournamentSelector());
 
 		if (i == 0) {
+			algorithm.setRandomSeed(jBotEvolver.getRandomSeed());
 			algorithm.createPopulation();
 			population.setGenerationRandomSeed(jBotEvolver.getRandomSeed());
 			population.createRandomPopulation();
@@ -97,6 +98,7 @@ public class NEATEvolution extends Evolution {
 			taskExecutor.setDescription(output + " " + population.getNumberOfCurrentGeneration() + "/"
 					+ population.getNumberOfGenerations() + " " + d);
 
+			algorithm.setRandomSeed(population.getGenerationRandomSeed());
 			algorithm.runEpoch();
 
 			i++;
@@ -122,7 +124,7 @@ public class NEATEvolution extends Evolution {
 		}
 
 		InnovationDatabase db = algorithm.innovationDatabase();
-		System.out.println("Innovation Database Stats - Hits: " + db.hits + " - misses: " + db.misses);
+		System.out.println("Innovation Database Stats - Hits: " + db.hits + " - misses: " + db.misses + " - size: " + db.size());
 	}
 
 	protected void configureDescriptor(Arguments args) {
@@ -165,6 +167,8 @@ public class NEATEvolution extends Evolution {
 		double maxPerturb = args.getArgumentAsDoubleOrSetDefault("maxPerturb", 0.5);
 		double maxBiasPerturb = args.getArgumentAsDoubleOrSetDefault("maxBiasPerturb", 0.1);
 		boolean copyBest = args.getArgumentAsIntOrSetDefault("copyBest", 1) == 1;
+		boolean pruneInnovations = args.getArgumentAsIntOrSetDefault("pruneInnovations", 0) == 1;
+		int offspringThreads = args.getArgumentAsIntOrSetDefault("offspringThreads", 1);
 
 		descriptor.setPAddLink(pAddLink);
 		descriptor.setPAddNode(pAddNode);
@@ -200,6 +204,8 @@ public class NEATEvolution extends Evolution {
 		descriptor.setMaxPerturb(maxPerturb);
 		descriptor.setMaxBiasPerturb(maxBiasPerturb);
 		descriptor.setCopyBest(copyBest);
+		descriptor.setPruneInnovations(pruneInnovations);
+		descriptor.setOffspringThreads(offspringThreads);
 	}
 
 	protected int[] getInputOutputNeurons() {
@@ -0,0 +1,135 @@
+package evolutionaryrobotics.evolution;
+
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.TaskExecutor;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.SteadyStatePopulation;
+
+/**
+ * Steady-state evolution without a generational barrier. A fixed number of
+ * evaluations is kept in the {@link TaskExecutor} and, as soon as a result
+ * arrives, its chromosome is inserted in the {@link SteadyStatePopulation}
+ * and a new offspring is submitted, so the workers are never idle waiting
+ * for the slowest evaluation of a generation.
+ *
+ * The population is saved through the {@link evolutionaryrobotics.util.DiskStorage}
+ * every <code>checkpoint</code> evaluations, and each checkpoint is reported
+ * as a generation. The evaluations are not raced: racing=1 and
+ * adaptivesamples=1 need the selection threshold of a generation.
+ */
+public class SteadyStateEvolution extends GenerationalEvolution {
+
+	@ArgumentsAnnotation(name="checkpoint", help="Number of evaluations between checkpoints. The default is the size of the population.")
+	protected int checkpointInterval;
+	@ArgumentsAnnotation(name="inflight", help="Maximum number of evaluations running at the same time. The default is the size of the population.")
+	protected int maxInFlight;
+
+	public SteadyStateEvolution(JBotEvolver jBotEvolver, TaskExecutor taskExecutor, Arguments args) {
+		super(jBotEvolver, taskExecutor, args);
+
+		if(!(population instanceof SteadyStatePopulation))
+			throw new RuntimeException("SteadyStateEvolution requires a SteadyStatePopulation: "+population.getClass().getName());
+		if(racing || adaptiveSamples)
+			throw new RuntimeException("SteadyStateEvolution does not support racing=1 or adaptivesamples=1");
+
+		checkpointInterval = args.getArgumentAsIntOrSetDefault("checkpoint", population.getPopulationSize());
+		maxInFlight = args.getArgumentAsIntOrSetDefault("inflight", population.getPopulationSize());
+	}
+
+	@Override
+	public void executeEvolution() {
+
+		SteadyStatePopulation steadyState = (SteadyStatePopulation)population;
+
+		if(steadyState.getChromosomes() == null)
+			population.createRandomPopulation();
+
+		taskExecutor.setTotalNumberOfTasks((population.getNumberOfGenerations()-population.getNumberOfCurrentGeneration())*population.getPopulationSize());
+
+		int inFlight = 0;
+
+		//evaluations that were running when the population was saved
+		for(Chromosome c : steadyState.getPendingChromosomes()) {
+			submit(c);
+			inFlight++;
+		}
+
+		Chromosome c;
+
+		while(inFlight < maxInFlight && (c = population.getNextChromosomeToEvaluate()) != null) {
+			submit(c);
+			inFlight++;
+		}
+
+		print("\n");
+
+		int evaluations = 0;
+
+		while(inFlight > 0 && executeEvolution) {
+
+			SimpleFitnessResult result;
+
+			try {
+				result = (SimpleFitnessResult)taskExecutor.getResult();
+			} catch(RuntimeException e) {
+				//the evaluations that were running are submitted again when the evolution is resumed
+				checkpoint(steadyState);
+				diskStorage.close();
+				throw e;
+			}
+
+			//the task executor was stopped
+			if(result == null)
+				break;
+
+			inFlight--;
+			population.setEvaluationResultForId(result.getChromosomeId(), result.getFitness());
+			print("!");
+
+			if(++evaluations % checkpointInterval == 0) {
+				checkpoint(steadyState);
+				population.createNextGeneration();
+			}
+
+			//offspring can only be created once a chromosome was evaluated
+			while(executeEvolution && inFlight < maxInFlight && (c = population.getNextChromosomeToEvaluate()) != null) {
+				submit(c);
+				inFlight++;
+			}
+		}
+
+		if(executeEvolution && evaluations % checkpointInterval != 0)
+			checkpoint(steadyState);
+
+		evolutionFinished = true;
+		diskStorage.close();
+	}
+
+	protected void submit(Chromosome c) {
+		taskExecutor.addTask(new GenerationalTask(
+				getTaskEvolver(),
+				population.getNumberOfSamplesPerChromosome(),c,population.getGenerationRandomSeed(),fitnessCacheSize,reuseSimulator)
+		);
+	}
+
+	protected void checkpoint(SteadyStatePopulation steadyState) {
+
+		double d = Double.valueOf(df.format(population.getHighestFitness()));
+		taskExecutor.setDescription(output+" "+steadyState.getNumberOfEvaluations()+" evaluations " + d);
+
+		print("\nGeneration "+population.getNumberOfCurrentGeneration()+
+				"\tEvaluations: "+steadyState.getNumberOfEvaluations()+
+				"\tInserted: "+steadyState.getNumberOfInsertionsInGeneration()+
+				"\tHighest: "+population.getHighestFitness()+
+				"\tAverage: "+population.getAverageFitness()+
+				"\tLowest: "+population.getLowestFitness()+"\n");
+
+		try {
+			diskStorage.savePopulation(population);
+		} catch(Exception e) {e.printStackTrace();}
+	}
+}
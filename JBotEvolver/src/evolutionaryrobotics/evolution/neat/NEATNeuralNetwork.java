@@ -1,7 +1,6 @@
 package evolutionaryrobotics.evolution.neat;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Vector;
 
@@ -12,9 +11,6 @@ import evolutionaryrobotics.evolution.neat.core.NEATLinkGene;
 import evolutionaryrobotics.evolution.neat.core.NEATNetDescriptor;
 import evolutionaryrobotics.evolution.neat.core.NEATNeuralNet;
 import evolutionaryrobotics.evolution.neat.core.NEATNodeGene;
-import evolutionaryrobotics.evolution.neat.data.core.NetworkInput;
-import evolutionaryrobotics.evolution.neat.data.core.NetworkOutputSet;
-import evolutionaryrobotics.evolution.neat.data.csv.CSVInput;
 import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
@@ -24,6 +20,7 @@ public class NEATNeuralNetwork extends NeuralNetwork{
 
 	public static final double NODE = 0d, LINK = 1d, FEATURE = 2d;
 	protected NEATNeuralNet network;
+	private double[] scaledInputs;
 	
 	public NEATNeuralNetwork(Vector<NNInput> inputs, Vector<NNOutput> outputs, Arguments arguments) {
 		create(inputs, outputs);
@@ -35,13 +32,12 @@ public class NEATNeuralNetwork extends NeuralNetwork{
 
 	@Override
 	protected double[] propagateInputs(double[] inputValues) {
-		double[] vals = Arrays.copyOf(inputValues, inputValues.length);
-		for (int i = 0; i < vals.length; i++) {
-			vals[i] = vals[i] * 2 - 1;
+		if (scaledInputs == null || scaledInputs.length != inputValues.length)
+			scaledInputs = new double[inputValues.length];
+		for (int i = 0; i < scaledInputs.length; i++) {
+			scaledInputs[i] = inputValues[i] * 2 - 1;
 		}
-		NetworkInput in = new CSVInput(vals);
-		NetworkOutputSet output = network.execute(in);
-		return output.nextOutput().values();
+		return network.execute(scaledInputs);
 	}
 
 	@Override
@@ -6,9 +6,8 @@ package evolutionaryrobotics.evolution.neat.core;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Random;
-import java.util.Set;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.Gene;
@@ -16,7 +15,12 @@ import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
 /**
  * Provides the NEAT innovation database as described in Kenneth Stanley's NEAT
- * papers The innovations are kept for the entire life of the run.
+ * papers The innovations are kept for the entire life of the run, unless they
+ * are pruned (see {@link #prune(Chromosome[])}).
+ *
+ * The link innovations are indexed by their (from, to) pair and the node
+ * innovations by the link they split. The innovations can be submitted by
+ * several threads.
  *
  * @author MSimmerson
  *
@@ -24,15 +28,16 @@ import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 public class InnovationDatabase implements Serializable {
 
     private static final long serialVersionUID = -1L;
-    private Random ran = new Random();
-    private HashMap innovations;
+    private HashMap<Integer, NEATInnovation> innovations;
+    private transient HashMap<Long, NEATLinkInnovation> linkIndex;
+    private transient HashMap<Integer, NEATNodeInnovation> nodeIndex;
     private int innovationId = 1;
     private int neuronId = 1;
     public int hits = 0;
     public int misses = 0;
 
     public InnovationDatabase() {
-        this.innovations = new HashMap();
+        this.innovations = new HashMap<Integer, NEATInnovation>();
     }
 
     /**
@@ -50,8 +55,10 @@ public class InnovationDatabase implements Serializable {
         }*/
     }
     
-    public void reset() {
-        this.innovations = new HashMap();
+    public synchronized void reset() {
+        this.innovations = new HashMap<Integer, NEATInnovation>();
+        this.linkIndex = null;
+        this.nodeIndex = null;
         this.innovationId = 1;
         this.neuronId = 1;
         this.hits = 0;
@@ -66,6 +73,86 @@ public class InnovationDatabase implements Serializable {
         return (neuronId++);
     }
 
+    private static long linkKey(int fromId, int toId) {
+        return (((long) fromId << 32) | (toId & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Builds the indexes, which are not serialized.
+     */
+    private void index() {
+        if (this.linkIndex != null) {
+            return;
+        }
+        this.linkIndex = new HashMap<Long, NEATLinkInnovation>();
+        this.nodeIndex = new HashMap<Integer, NEATNodeInnovation>();
+        for (NEATInnovation innovation : this.innovations.values()) {
+            this.addToIndex(innovation);
+        }
+    }
+
+    private void addToIndex(NEATInnovation innovation) {
+        if (innovation instanceof NEATLinkInnovation) {
+            NEATLinkInnovation link = (NEATLinkInnovation) innovation;
+            this.linkIndex.put(linkKey(link.getFromId(), link.getToId()), link);
+        } else if (innovation instanceof NEATNodeInnovation) {
+            NEATNodeInnovation node = (NEATNodeInnovation) innovation;
+            // the input and output nodes do not split a link
+            if (node.getLinkInnovationId() != 0) {
+                this.nodeIndex.put(node.getLinkInnovationId(), node);
+            }
+        }
+    }
+
+    private synchronized void addInnovation(NEATInnovation innovation) {
+        this.index();
+        this.innovations.put(innovation.innovationId(), innovation);
+        this.addToIndex(innovation);
+    }
+
+    /**
+     * Removes the innovations that no gene of the given chromosomes has, so
+     * that the database does not grow for the entire life of the run. A
+     * structural mutation that is found again after its innovation was
+     * removed gets a new innovation number.
+     *
+     * @param chromosomes - chromosomes whose innovations are kept, such as the
+     * current population and the best chromosome found so far
+     * @return number of innovations removed
+     */
+    public synchronized int prune(Chromosome[] chromosomes) {
+        HashSet<Integer> used = new HashSet<Integer>();
+        for (Chromosome chromosome : chromosomes) {
+            if (chromosome == null) {
+                continue;
+            }
+            for (Gene gene : chromosome.genes()) {
+                if (gene instanceof NEATGene) {
+                    used.add(((NEATGene) gene).getInnovationNumber());
+                }
+            }
+        }
+
+        int removed = 0;
+        Iterator<Integer> it = this.innovations.keySet().iterator();
+        while (it.hasNext()) {
+            if (!used.contains(it.next())) {
+                it.remove();
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            this.linkIndex = null;
+            this.index();
+        }
+        return (removed);
+    }
+
+    public synchronized int size() {
+        return (this.innovations.size());
+    }
+
     /**
      * Creates popsize chromosomes ready for creating a NEAT network.
      *
@@ -112,7 +199,7 @@ public class InnovationDatabase implements Serializable {
                 // start with one link to each output, allows feature selection
                 links = new NEATLinkGene[outputs];
                 for (i = 0; i < outputs; i++) {
-                    links[i] = this.submitLinkInnovation(nodes[this.ran.nextInt(inputs)].id(), nodes[inputs + i].id());
+                    links[i] = this.submitLinkInnovation(nodes[MathUtils.nextInt(inputs)].id(), nodes[inputs + i].id());
                     links[i].setWeight(MathUtils.nextPlusMinusOne());
                 }
             } else {
@@ -151,7 +238,7 @@ public class InnovationDatabase implements Serializable {
         int innovationNumber = this.nextInnovationNumber();
         NEATInnovation databaseEntry = new NEATFeatureInnovation();
         databaseEntry.setInnovationId(innovationNumber);
-        this.innovations.put(new Integer(innovationNumber), databaseEntry);
+        this.addInnovation(databaseEntry);
 
         return (new NEATFeatureGene(innovationNumber, MathUtils.nextDouble()));
     }
@@ -161,33 +248,55 @@ public class InnovationDatabase implements Serializable {
         NEATInnovation databaseEntry = new NEATNodeInnovation();
         databaseEntry.setInnovationId(innovationNumber);
         ((NEATNodeInnovation) databaseEntry).setNodeId(this.nextNodeNumber());
-        this.innovations.put(new Integer(innovationNumber), databaseEntry);
+        this.addInnovation(databaseEntry);
         NEATNodeGene nodeGene = new NEATNodeGene(innovationNumber, ((NEATNodeInnovation) databaseEntry).getNodeId(), MathUtils.nextDouble(), type, MathUtils.nextPlusMinusOne());
 
         return (nodeGene);
     }
 
-    private NEATInnovation findNodeInnovation(int linkInnovationId) {
-        NEATNodeInnovation nodeInnovation = new NEATNodeInnovation(linkInnovationId);
-        NEATInnovation databaseEntry = null;
-        boolean found = false;
-        Set keySet;
-        Integer key;
-        Iterator it;
-
-        if (this.innovations.containsValue(nodeInnovation)) {
-            keySet = this.innovations.keySet();
-            it = keySet.iterator();
-
-            while (it.hasNext() && !found) {
-                key = (Integer) it.next();
-                databaseEntry = (NEATInnovation) this.innovations.get(key);
-                if ((databaseEntry instanceof NEATNodeInnovation)
-                        && (databaseEntry != null)
-                        && ((((NEATNodeInnovation) databaseEntry)).getLinkInnovationId() == linkInnovationId)) {
-                    found = true;
-                }
-            }
+    synchronized NEATNodeInnovation findNodeInnovation(int linkInnovationId) {
+        this.index();
+        return (this.nodeIndex.get(linkInnovationId));
+    }
+
+    synchronized NEATLinkInnovation findLinkInnovation(int fromId, int toId) {
+        this.index();
+        return (this.linkIndex.get(linkKey(fromId, toId)));
+    }
+
+    /**
+     * Finds the innovation of the node that splits the link, creating it if it
+     * does not exist.
+     */
+    synchronized NEATNodeInnovation nodeInnovation(int linkInnovationId) {
+        NEATNodeInnovation databaseEntry = this.findNodeInnovation(linkInnovationId);
+
+        if (databaseEntry == null) {
+            misses++;
+            databaseEntry = new NEATNodeInnovation(linkInnovationId);
+            databaseEntry.setNodeId(this.nextNodeNumber());
+            databaseEntry.setInnovationId(this.nextInnovationNumber());
+            this.addInnovation(databaseEntry);
+        } else {
+            hits++;
+        }
+
+        return (databaseEntry);
+    }
+
+    /**
+     * Finds the innovation of the link, creating it if it does not exist.
+     */
+    synchronized NEATLinkInnovation linkInnovation(int fromId, int toId) {
+        NEATLinkInnovation databaseEntry = this.findLinkInnovation(fromId, toId);
+
+        if (databaseEntry == null) {
+            misses++;
+            databaseEntry = new NEATLinkInnovation(fromId, toId);
+            databaseEntry.setInnovationId(this.nextInnovationNumber());
+            this.addInnovation(databaseEntry);
+        } else {
+            hits++;
         }
 
         return (databaseEntry);
@@ -197,81 +306,47 @@ public class InnovationDatabase implements Serializable {
      * Submits a node insertion mutation to the database. If it does not exist,
      * it creates it and adds it to the database. It returns the database entry
      *
+     * If the calling thread has an {@link InnovationJournal} of this database,
+     * a new innovation is only recorded in the journal.
+     *
      * @param linkGene - link to add node to
      * @return - Created node gene
      */
     public NEATNodeGene submitNodeInnovation(NEATLinkGene linkGene) {
-        int innovationNumber;
-        NEATInnovation databaseEntry = this.findNodeInnovation(linkGene.getInnovationNumber());
-        NEATNodeGene gene = null;
+        InnovationJournal journal = InnovationJournal.current(this);
+        NEATNodeInnovation databaseEntry;
 
-        if (databaseEntry == null) {
-            misses++;
-            innovationNumber = this.nextInnovationNumber();
-            databaseEntry = new NEATNodeInnovation(linkGene.getInnovationNumber());
-            ((NEATNodeInnovation) databaseEntry).setNodeId(this.nextNodeNumber());
-            databaseEntry.setInnovationId(innovationNumber);
-            this.innovations.put(new Integer(innovationNumber), databaseEntry);
+        if (journal != null) {
+            databaseEntry = journal.nodeInnovation(linkGene.getInnovationNumber());
         } else {
-            hits++;
+            databaseEntry = this.nodeInnovation(linkGene.getInnovationNumber());
         }
 
-        gene = new NEATNodeGene(databaseEntry.innovationId(), ((NEATNodeInnovation) databaseEntry).getNodeId(), MathUtils.nextDouble(), NEATNodeGene.HIDDEN, MathUtils.nextPlusMinusOne());
-
-        return (gene);
+        return (new NEATNodeGene(databaseEntry.innovationId(), databaseEntry.getNodeId(), MathUtils.nextDouble(), NEATNodeGene.HIDDEN, MathUtils.nextPlusMinusOne()));
     }
 
     /**
      * Submits a link insertion mutation to the database. If it does not exist,
      * it creates it and adds it to the database. It returns the database entry
      *
+     * If the calling thread has an {@link InnovationJournal} of this database,
+     * a new innovation is only recorded in the journal.
+     *
      * @param from - from node identifier
      * @param to - to node identifier
      * @return - Created link gene
      */
     public NEATLinkGene submitLinkInnovation(int fromId, int toId) {
-        int innovationNumber;
-        NEATInnovation databaseEntry = this.findLinkInnovation(fromId, toId);
+        InnovationJournal journal = InnovationJournal.current(this);
+        NEATLinkInnovation databaseEntry;
 
-        if (databaseEntry == null) {
-            misses++;
-            innovationNumber = this.nextInnovationNumber();
-            databaseEntry = new NEATLinkInnovation(fromId, toId);
-            databaseEntry.setInnovationId(innovationNumber);
-            this.innovations.put(new Integer(innovationNumber), databaseEntry);
+        if (journal != null) {
+            databaseEntry = journal.linkInnovation(fromId, toId);
         } else {
-            hits++;
+            databaseEntry = this.linkInnovation(fromId, toId);
         }
-        // the 0 weight is a place holder
-        NEATLinkGene gene = new NEATLinkGene(databaseEntry.innovationId(), true, fromId, toId, 0);
-
-        return (gene);
-    }
 
-    private NEATInnovation findLinkInnovation(int fromId, int toId) {
-        NEATLinkInnovation linkInnovation = new NEATLinkInnovation(fromId, toId);
-        NEATInnovation databaseEntry = null;
-        boolean found = false;
-        Set keySet;
-        Integer key;
-        Iterator it;
-
-        if (this.innovations.containsValue(linkInnovation)) {
-            keySet = this.innovations.keySet();
-            it = keySet.iterator();
-
-            while (it.hasNext() && !found) {
-                key = (Integer) it.next();
-                databaseEntry = (NEATInnovation) this.innovations.get(key);
-                if ((databaseEntry instanceof NEATLinkInnovation)
-                        && (databaseEntry != null)
-                        && (((NEATLinkInnovation) databaseEntry).getFromId() == fromId)
-                        && (((NEATLinkInnovation) databaseEntry).getToId() == toId)) {
-                    found = true;
-                }
-            }
-        }
-
-        return (databaseEntry);
+        // the 0 weight is a place holder
+        return (new NEATLinkGene(databaseEntry.innovationId(), true, fromId, toId, 0));
     }
 }
@@ -0,0 +1,151 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+
+/**
+ * Records the innovations found by the mutations of one specie while the
+ * offspring of the species are produced in parallel. The innovations that are
+ * not yet in the database get provisional (negative) innovation numbers and
+ * node ids, which are replaced when the journal is committed. The journals are
+ * committed in the order of the species, so the numbers do not depend on
+ * which specie finished first.
+ *
+ * @see InnovationDatabase
+ */
+public class InnovationJournal {
+
+    private static final ThreadLocal<InnovationJournal> current = new ThreadLocal<InnovationJournal>();
+
+    private InnovationDatabase db;
+    private HashMap<Long, NEATLinkInnovation> links = new HashMap<Long, NEATLinkInnovation>();
+    private HashMap<Integer, NEATNodeInnovation> nodes = new HashMap<Integer, NEATNodeInnovation>();
+    private ArrayList<NEATInnovation> created = new ArrayList<NEATInnovation>();
+    private int innovationId = -1;
+    private int neuronId = -1;
+    private int hits = 0;
+
+    public InnovationJournal(InnovationDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Makes the innovations of the database submitted by the calling thread
+     * be recorded in this journal, until {@link #end()} is called.
+     */
+    public void begin() {
+        current.set(this);
+    }
+
+    public void end() {
+        current.remove();
+    }
+
+    static InnovationJournal current(InnovationDatabase db) {
+        InnovationJournal journal = current.get();
+        return (journal != null && journal.db == db ? journal : null);
+    }
+
+    private static long linkKey(int fromId, int toId) {
+        return (((long) fromId << 32) | (toId & 0xFFFFFFFFL));
+    }
+
+    NEATNodeInnovation nodeInnovation(int linkInnovationId) {
+        NEATNodeInnovation entry = this.db.findNodeInnovation(linkInnovationId);
+
+        if (entry == null) {
+            entry = this.nodes.get(linkInnovationId);
+        }
+        if (entry == null) {
+            entry = new NEATNodeInnovation(linkInnovationId);
+            entry.setNodeId(this.neuronId--);
+            entry.setInnovationId(this.innovationId--);
+            this.nodes.put(linkInnovationId, entry);
+            this.created.add(entry);
+        } else {
+            this.hits++;
+        }
+
+        return (entry);
+    }
+
+    NEATLinkInnovation linkInnovation(int fromId, int toId) {
+        NEATLinkInnovation entry = this.db.findLinkInnovation(fromId, toId);
+
+        if (entry == null) {
+            entry = this.links.get(linkKey(fromId, toId));
+        }
+        if (entry == null) {
+            entry = new NEATLinkInnovation(fromId, toId);
+            entry.setInnovationId(this.innovationId--);
+            this.links.put(linkKey(fromId, toId), entry);
+            this.created.add(entry);
+        } else {
+            this.hits++;
+        }
+
+        return (entry);
+    }
+
+    /**
+     * Adds the recorded innovations to the database, in the order in which
+     * they were found, and replaces the provisional numbers in the genes of
+     * the chromosomes.
+     *
+     * @param chromosomes - offspring produced while the journal was in use
+     */
+    public void commit(Chromosome[] chromosomes) {
+        HashMap<Integer, Integer> innovations = new HashMap<Integer, Integer>();
+        HashMap<Integer, Integer> neurons = new HashMap<Integer, Integer>();
+
+        synchronized (this.db) {
+            for (NEATInnovation entry : this.created) {
+                if (entry instanceof NEATNodeInnovation) {
+                    NEATNodeInnovation node = (NEATNodeInnovation) entry;
+                    NEATNodeInnovation committed = this.db.nodeInnovation(resolve(innovations, node.getLinkInnovationId()));
+                    innovations.put(node.innovationId(), committed.innovationId());
+                    neurons.put(node.getNodeId(), committed.getNodeId());
+                } else {
+                    NEATLinkInnovation link = (NEATLinkInnovation) entry;
+                    NEATLinkInnovation committed = this.db.linkInnovation(resolve(neurons, link.getFromId()), resolve(neurons, link.getToId()));
+                    innovations.put(link.innovationId(), committed.innovationId());
+                }
+            }
+            this.db.hits += this.hits;
+        }
+
+        if (this.created.isEmpty()) {
+            return;
+        }
+
+        for (Chromosome chromosome : chromosomes) {
+            if (chromosome == null) {
+                continue;
+            }
+            Gene[] genes = chromosome.genes();
+            for (Gene gene : genes) {
+                if (gene instanceof NEATLinkGene) {
+                    NEATLinkGene link = (NEATLinkGene) gene;
+                    link.setInnovationNumber(resolve(innovations, link.getInnovationNumber()));
+                    link.setFromId(resolve(neurons, link.getFromId()));
+                    link.setToId(resolve(neurons, link.getToId()));
+                } else if (gene instanceof NEATNodeGene) {
+                    NEATNodeGene node = (NEATNodeGene) gene;
+                    node.setInnovation(resolve(innovations, node.getInnovationNumber()), resolve(neurons, node.id()));
+                }
+            }
+            // the gene arrays cached by the chromosome have the old numbers
+            chromosome.updateChromosome(genes);
+        }
+    }
+
+    private static int resolve(HashMap<Integer, Integer> committed, int id) {
+        if (id >= 0) {
+            return (id);
+        }
+        return (committed.get(id));
+    }
+}
@@ -20,6 +20,7 @@ public class NEATChromosome implements Chromosome {
 	private double fitness;
 	private int specieId = -1;
 	private boolean nOrder = false;
+	private transient NEATGeneArrays geneArrays;
 	
 	
 	public NEATChromosome(Gene[] genes) {
@@ -55,6 +56,20 @@ public class NEATChromosome implements Chromosome {
 	public void updateChromosome(Gene[] newGenes) {
 		this.genes = new NEATGene[newGenes.length];
 		System.arraycopy(newGenes, 0, this.genes, 0, this.genes.length);
+		this.geneArrays = null;
+	}
+	
+	/**
+	 * Innovation numbers and weights of the genes, built on the first call
+	 * after the genes are updated.
+	 */
+	public NEATGeneArrays geneArrays() {
+		NEATGeneArrays arrays = this.geneArrays;
+		if (arrays == null) {
+			arrays = new NEATGeneArrays(this.genes);
+			this.geneArrays = arrays;
+		}
+		return (arrays);
 	}
 
 	@Override
@@ -0,0 +1,88 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
+
+/**
+ * Compatibility scores between the chromosomes of a generation and the
+ * representatives of the species at the start of the speciation. All the
+ * scores are computed in parallel before the chromosomes are assigned to
+ * species, and the species look them up instead of computing them again.
+ * Representatives that change during the speciation are not in the cache.
+ */
+public class NEATCompatibilityCache {
+
+	private static final int APPLICANTS_PER_TASK = 8;
+
+	private IdentityHashMap<Chromosome, Integer> applicantIndexes = new IdentityHashMap<Chromosome, Integer>();
+	private IdentityHashMap<Chromosome, Integer> representativeIndexes = new IdentityHashMap<Chromosome, Integer>();
+	private double[][] scores;
+
+	/**
+	 * @param pool - pool that computes the scores
+	 */
+	public NEATCompatibilityCache(final Chromosome[] applicants, final List<NEATSpecie> species, ForkJoinPool pool) {
+		final Chromosome[] representatives = new Chromosome[species.size()];
+		int i;
+
+		for (i = 0; i < applicants.length; i++) {
+			applicantIndexes.put(applicants[i], i);
+		}
+		for (i = 0; i < representatives.length; i++) {
+			representatives[i] = species.get(i).findBestMember();
+			representativeIndexes.put(representatives[i], i);
+			((NEATChromosome)representatives[i]).geneArrays();
+		}
+
+		this.scores = new double[applicants.length][representatives.length];
+
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (i = 0; i < applicants.length; i += APPLICANTS_PER_TASK) {
+			final int start = i;
+			final int end = Math.min(applicants.length, i + APPLICANTS_PER_TASK);
+			tasks.add(new Callable<Object>() {
+				@Override
+				public Object call() {
+					for (int a = start; a < end; a++) {
+						NEATGeneArrays applicant = ((NEATChromosome)applicants[a]).geneArrays();
+						for (int r = 0; r < representatives.length; r++) {
+							NEATSpecie specie = species.get(r);
+							scores[a][r] = NEATSpecieManager.compatibilityScore(applicant, ((NEATChromosome)representatives[r]).geneArrays(), specie.excessCoeff(), specie.disjointCoeff(), specie.weightCoeff());
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Object> f : pool.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return the cached score, or NaN if it was not computed
+	 */
+	public double score(Chromosome applicant, Chromosome representative) {
+		Integer a = applicantIndexes.get(applicant);
+		Integer r = representativeIndexes.get(representative);
+
+		if (a == null || r == null) {
+			return Double.NaN;
+		}
+		return (this.scores[a][r]);
+	}
+}
@@ -47,6 +47,8 @@ public class NEATGADescriptor implements GADescriptor {
 	private double maxPerturb;
 	private double maxBiasPerturb;
         private boolean copyBest;
+	private boolean pruneInnovations;
+	private int offspringThreads = 1;
 
 	/**
 	 * @return Returns the survivalThreshold.
@@ -424,4 +426,17 @@ public class NEATGADescriptor implements GADescriptor {
         public void setCopyBest(boolean b) {
             this.copyBest = b;
         }
+
+	public boolean isPruneInnovations() {
+		return pruneInnovations;
+	}
+	public void setPruneInnovations(boolean pruneInnovations) {
+		this.pruneInnovations = pruneInnovations;
+	}
+	public int getOffspringThreads() {
+		return offspringThreads;
+	}
+	public void setOffspringThreads(int offspringThreads) {
+		this.offspringThreads = offspringThreads;
+	}
 }
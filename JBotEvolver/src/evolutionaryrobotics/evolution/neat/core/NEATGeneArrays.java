@@ -0,0 +1,66 @@
+package evolutionaryrobotics.evolution.neat.core;
+
+import java.util.Arrays;
+
+import evolutionaryrobotics.evolution.neat.ga.core.Gene;
+
+/**
+ * Innovation numbers and weights of the genes of a chromosome, sorted by
+ * innovation number, used to compute the compatibility between chromosomes
+ * without casting each gene. Genes that are not links have a NaN weight.
+ */
+public class NEATGeneArrays {
+
+	private final int[] innovationNumbers;
+	private final double[] weights;
+
+	public NEATGeneArrays(Gene[] genes) {
+		int n = genes.length;
+		int[] innovations = new int[n];
+		double[] geneWeights = new double[n];
+		boolean sorted = true;
+		int i;
+
+		for (i = 0; i < n; i++) {
+			innovations[i] = ((NEATGene)genes[i]).getInnovationNumber();
+			geneWeights[i] = genes[i] instanceof NEATLinkGene ? ((NEATLinkGene)genes[i]).getWeight() : Double.NaN;
+			if (i > 0 && innovations[i] < innovations[i - 1]) {
+				sorted = false;
+			}
+		}
+
+		if (!sorted) {
+			// sort the innovation and index pairs packed in a long
+			long[] keys = new long[n];
+			for (i = 0; i < n; i++) {
+				keys[i] = ((long)innovations[i] << 32) | i;
+			}
+			Arrays.sort(keys);
+
+			int[] sortedInnovations = new int[n];
+			double[] sortedWeights = new double[n];
+			for (i = 0; i < n; i++) {
+				int index = (int)keys[i];
+				sortedInnovations[i] = innovations[index];
+				sortedWeights[i] = geneWeights[index];
+			}
+			innovations = sortedInnovations;
+			geneWeights = sortedWeights;
+		}
+
+		this.innovationNumbers = innovations;
+		this.weights = geneWeights;
+	}
+
+	public int size() {
+		return (this.innovationNumbers.length);
+	}
+
+	public int[] innovationNumbers() {
+		return (this.innovationNumbers);
+	}
+
+	public double[] weights() {
+		return (this.weights);
+	}
+}
@@ -8,6 +8,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import evolutionaryrobotics.evolution.neat.core.mutators.NEATMutator;
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
@@ -21,6 +26,8 @@ import evolutionaryrobotics.evolution.neat.ga.core.ParentSelector;
 import evolutionaryrobotics.evolution.neat.ga.core.Population;
 import evolutionaryrobotics.evolution.neat.ga.core.Specie;
 import evolutionaryrobotics.evolution.neat.ga.core.Species;
+import evolutionaryrobotics.evolution.neat.utils.MathUtils;
+import simulation.util.SimRandom;
 
 /**
  *
@@ -42,6 +49,10 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
     private int specieIdIdx = 1;
     private int eleCount = 0;
     private InnovationDatabase innov;
+    private transient ForkJoinPool offspringPool;
+    private transient ForkJoinPool compatibilityPool;
+    private boolean seeded = false;
+    private long randomSeed;
 
     /**
      * Creates a NEAT GA with behaviour defined by the descriptor
@@ -83,6 +94,23 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         return selector;
     }
 
+    /**
+     * Seeds the generator that the operators use during the next
+     * {@link #createPopulation()} or {@link #runEpoch()}. Without a seed they
+     * use the generator of the calling thread.
+     */
+    public void setRandomSeed(long seed) {
+        this.randomSeed = seed;
+        this.seeded = true;
+    }
+
+    private Random bindRandom() {
+        if (this.seeded) {
+            return (MathUtils.setThreadRandom(new SimRandom(this.randomSeed)));
+        }
+        return (MathUtils.getThreadRandom());
+    }
+
     /**
      * Creates the initial population
      */
@@ -90,9 +118,14 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
 	public void createPopulation() {
         int popSize = this.descriptor.gaPopulationSize();
         int initialChromoSize = this.func.requiredChromosomeSize() + this.descriptor.getExtraFeatureCount();
-        this.pop = new NEATPopulation4J(popSize, initialChromoSize, this.descriptor.getInputNodes(), this.descriptor.getOutputNodes(), this.descriptor.featureSelectionEnabled(), this.descriptor.getExtraFeatureCount());
-        ((NEATPopulation4J) pop).setInnovationDatabase(innov);
-        this.pop.createPopulation();
+        Random previous = this.bindRandom();
+        try {
+            this.pop = new NEATPopulation4J(popSize, initialChromoSize, this.descriptor.getInputNodes(), this.descriptor.getOutputNodes(), this.descriptor.featureSelectionEnabled(), this.descriptor.getExtraFeatureCount());
+            ((NEATPopulation4J) pop).setInnovationDatabase(innov);
+            this.pop.createPopulation();
+        } finally {
+            MathUtils.setThreadRandom(previous);
+        }
     }
     
     public void loadPopulation(NEATPopulation4J pop) {
@@ -153,6 +186,28 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
 
         this.specieList.resetSpecies(this.descriptor.getThreshold());
 
+        // compute the scores against the current representatives in parallel
+        ArrayList<NEATSpecie> cachedSpecies = new ArrayList<NEATSpecie>();
+        for (i = 0; i < this.specieList.specieList().size(); i++) {
+            specie = (Specie) this.specieList.specieList().get(i);
+            if (specie instanceof NEATSpecie && specie.findBestMember() instanceof NEATChromosome) {
+                cachedSpecies.add((NEATSpecie) specie);
+            }
+        }
+        boolean cacheable = true;
+        for (i = 0; i < currentGen.length; i++) {
+            cacheable &= currentGen[i] instanceof NEATChromosome;
+        }
+        if (cacheable && !cachedSpecies.isEmpty()) {
+            if (this.compatibilityPool == null) {
+                this.compatibilityPool = new ForkJoinPool();
+            }
+            NEATCompatibilityCache cache = new NEATCompatibilityCache(currentGen, cachedSpecies, this.compatibilityPool);
+            for (NEATSpecie s : cachedSpecies) {
+                s.setCompatibilityCache(cache);
+            }
+        }
+
         //cat.info("Compat threshold:" + this.descriptor.getThreshold());
         for (i = 0; i < currentGen.length; i++) {
             if (!memberAssigned) {
@@ -179,6 +234,13 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
             memberAssigned = false;
         }
 
+        for (i = 0; i < this.specieList.specieList().size(); i++) {
+            specie = (Specie) this.specieList.specieList().get(i);
+            if (specie instanceof NEATSpecie) {
+                ((NEATSpecie) specie).setCompatibilityCache(null);
+            }
+        }
+
         /*if (cat.isDebugEnabled()) {
          for (i = 0; i < this.specieList.specieList().size(); i++) {
          specie = (Specie)this.specieList.specieList().get(i);
@@ -198,7 +260,12 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         this.setChromosomeNO(currentGen);
         //cat.debug("Evaluating pop");
         this.evaluatePopulation(currentGen);
-        this.runEvolutionCycle(currentGen);
+        Random previous = this.bindRandom();
+        try {
+            this.runEvolutionCycle(currentGen);
+        } finally {
+            MathUtils.setThreadRandom(previous);
+        }
     }
 
     /**
@@ -231,6 +298,10 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
 		//cat.debug("Creating New Gen");
         // spawn new pop	
         this.pop.updatePopulation(this.spawn());
+        // forget the innovations that no longer exist in the population
+        if (this.descriptor.isPruneInnovations()) {
+            this.pruneInnovations();
+        }
         // Display specie stats
         validSpecieList = this.specieList.validSpecieList(champ.getSpecieId());
         //cat.debug("Num species:" + validSpecieList.size());
@@ -244,6 +315,14 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         this.eleCount++;
     }
 
+    private void pruneInnovations() {
+        Chromosome[] genoTypes = this.pop.genoTypes();
+        Chromosome[] kept = new Chromosome[genoTypes.length + 1];
+        System.arraycopy(genoTypes, 0, kept, 0, genoTypes.length);
+        kept[genoTypes.length] = this.discoveredBest;
+        this.innov.prune(kept);
+    }
+
     private void runEle(Chromosome[] currentGen) {
         if (this.descriptor.isEleEvents()) {
             if ((this.eleCount % this.descriptor.getEleEventTime()) == 0 && this.eleCount != 0) {
@@ -263,17 +342,24 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
         }
     }
 
+    /**
+     * Produces the offspring of the valid species. Each specie draws its
+     * random numbers from a generator of its own, split in the order of the
+     * species, and records its innovations in a journal that is committed in
+     * the same order, so the new population does not depend on the number of
+     * threads that produce it.
+     */
     private Chromosome[] spawn() {
         Chromosome[] currentGen = this.pop.genoTypes();
         Chromosome[] newGen = new Chromosome[currentGen.length];
         Specie specie = null;
-        ChromosomeSet offspring = null;
         int offSpringCount;
         int newGenIdx = 0;
         int i;
-        int j = 0;
+        int j;
         double totalAvFitness;
 		//int offSp = 0;
+        ArrayList<OffspringTask> tasks = new ArrayList<OffspringTask>();
 
         // update species by sharing fitness.
         this.specieList.shareFitness();
@@ -295,22 +381,87 @@ public class NEATGeneticAlgorithm implements GeneticAlgorithm {
 
             //cat.debug("Sp[" + specie.id() + "] Age:" + ((NEATSpecie)specie).specieAge() + ":Offspring Sz:" + offSpringCount + ":AvF:" + specie.getAverageFitness() + ":FAge:" + specie.getCurrentFitnessAge() + ":BestF:" + specie.findBestMember().fitness());
             if (offSpringCount > 0) {
-                offspring = specie.specieOffspring(offSpringCount, this.mut, this.selector, this.xOver);
-                for (j = 0; j < offspring.size(); j++) {
-                    if (newGenIdx < newGen.length) {
-                        // if population not full
-                        newGen[newGenIdx++] = offspring.nextChromosome();
-                    }
-                }
+                tasks.add(new OffspringTask(specie, offSpringCount, MathUtils.split()));
+                newGenIdx = Math.min(newGen.length, newGenIdx + offSpringCount);
             } else {
                 //cat.debug("Specie " + specie.id() + ":size:" + specie.specieMembers().size() + " produced no offspring.  Average fitness was " + specie.averageFitness() + " out of a total fitness of " + this.specieList.totalAvSpeciesFitness());
                 specie.setExtinct();
             }
         }
 
+        this.produceOffspring(tasks);
+
+        newGenIdx = 0;
+        for (OffspringTask task : tasks) {
+            task.journal.commit(task.offspring);
+            for (j = 0; j < task.offspring.length; j++) {
+                if (newGenIdx < newGen.length) {
+                    // if population not full
+                    newGen[newGenIdx++] = task.offspring[j];
+                }
+            }
+        }
+
         return (newGen);
     }
 
+    private void produceOffspring(ArrayList<OffspringTask> tasks) {
+        int threads = Math.min(this.descriptor.getOffspringThreads(), tasks.size());
+
+        if (threads <= 1) {
+            for (OffspringTask task : tasks) {
+                task.call();
+            }
+            return;
+        }
+
+        if (this.offspringPool == null || this.offspringPool.getParallelism() != this.descriptor.getOffspringThreads()) {
+            this.offspringPool = new ForkJoinPool(this.descriptor.getOffspringThreads());
+        }
+        try {
+            for (Future<Chromosome[]> result : this.offspringPool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private class OffspringTask implements Callable<Chromosome[]> {
+
+        private Specie specie;
+        private int count;
+        private Random random;
+        private InnovationJournal journal;
+        private Chromosome[] offspring;
+
+        public OffspringTask(Specie specie, int count, Random random) {
+            this.specie = specie;
+            this.count = count;
+            this.random = random;
+            this.journal = new InnovationJournal(innov);
+        }
+
+        @Override
+        public Chromosome[] call() {
+            Random previous = MathUtils.setThreadRandom(this.random);
+            this.journal.begin();
+            try {
+                ChromosomeSet set = this.specie.specieOffspring(this.count, mut, selector, xOver);
+                this.offspring = new Chromosome[set.size()];
+                for (int i = 0; i < this.offspring.length; i++) {
+                    this.offspring[i] = set.nextChromosome();
+                }
+            } finally {
+                this.journal.end();
+                MathUtils.setThreadRandom(previous);
+            }
+            return (this.offspring);
+        }
+    }
+
     private Specie createNewSpecie(Chromosome member) {
         double excessCoeff = this.descriptor.getExcessCoeff();
         double disjointCoeff = this.descriptor.getDisjointCoeff();
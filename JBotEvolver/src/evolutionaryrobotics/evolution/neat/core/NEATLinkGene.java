@@ -64,6 +64,12 @@ public class NEATLinkGene implements NEATGene {
 	public void setToId(int toId) {
 		this.toId = toId;
 	}
+	/**
+	 * Replaces a provisional innovation number, see {@link InnovationJournal}.
+	 */
+	void setInnovationNumber(int innovationNumber) {
+		this.innovationNumber = innovationNumber;
+	}
 	/**
 	 * @param weight The weight to set.
 	 */
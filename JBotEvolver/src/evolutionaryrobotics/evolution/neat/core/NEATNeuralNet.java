@@ -7,6 +7,7 @@ package evolutionaryrobotics.evolution.neat.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 
 import evolutionaryrobotics.evolution.neat.data.core.NetworkInput;
 import evolutionaryrobotics.evolution.neat.data.core.NetworkOutputSet;
@@ -35,9 +36,40 @@ public class NEATNeuralNet implements NeuralNet {
 	private NEATNeuron[] neurons;
     private NEATNeuron[] outputNeurons;
     private NEATFeatureGene[] featureGenes;
-	private int level = 0;
 	//private int depthLevel = 0;
 	
+	private static final int OP_INPUT = 0;
+	private static final int OP_SNAPSHOT = 1;
+	private static final int OP_NEURON = 2;
+	
+	private static final int VISITING = 1;
+	private static final int DONE = 2;
+	
+	// compiled program, one operation per position
+	private int[] programTypes;
+	private int[] programTargets;
+	private int[] programInputColumns;
+	private int[] programOperandStart;
+	private int[] programOperandEnd;
+	// operand >= 0 is the index of a neuron, operand < 0 is the snapshot -operand-1
+	private int[] operands;
+	private double[] operandWeights;
+	private double[] activations;
+	private double[] snapshots;
+	private boolean[] hasSources;
+	private int[] outputIndexes;
+	private double[] outputs;
+	
+	// only used while compiling
+	private transient HashMap<NEATNeuron, Integer> neuronIndexes;
+	private transient ArrayList<Integer> compiledTypes;
+	private transient ArrayList<Integer> compiledTargets;
+	private transient ArrayList<Integer> compiledColumns;
+	private transient ArrayList<Integer> compiledOperandStart;
+	private transient ArrayList<Integer> compiledOperands;
+	private transient ArrayList<Double> compiledWeights;
+	private transient int numberOfSnapshots;
+	
 	public NEATNeuron[] neurons() {
 		return (this.neurons);
 	}
@@ -52,56 +84,190 @@ public class NEATNeuralNet implements NeuralNet {
 	@Override
 	public NetworkOutputSet execute(NetworkInput netInput) {
 		NEATNetOutputSet opSet;
-		double[] outputs;
-		this.level = 0;
+		
+		opSet = new NEATNetOutputSet();
+		opSet.addNetworkOutput(new NEATNetOutput(this.execute(netInput.pattern())));
+		return (opSet);
+	}
+	
+	/**
+	 * Runs the compiled program of the network for the given input pattern.
+	 * Each neuron is activated once, in topological order, and the values
+	 * of recurrent connections are read from <code>lastActivation()</code>
+	 * at the same point where the recursive evaluation used to read them.
+	 * 
+	 * @return the values of the output neurons, in an array that is reused
+	 * in the next call
+	 */
+	public double[] execute(double[] pattern) {
 		int i;
-		// trawl through the graph bacwards from each output node
+		int j;
+		int op;
+		int operand;
+		double neuronIp;
+		
 		if (outputNeurons.length == 0) {
 			System.err.println("No output neurons");
 		}
-		outputs = new double[outputNeurons.length];
-		for (i = 0; i < outputs.length; i++) {
-			outputs[i] = this.neuronOutput(outputNeurons[i], netInput);
+		
+		for (op = 0; op < programTargets.length; op++) {
+			int target = programTargets[op];
+			switch (programTypes[op]) {
+			case OP_INPUT:
+				// match the input column to the input node, id's start from 1
+				activations[target] = pattern[programInputColumns[op]];
+				neurons[target].setLastActivation(activations[target]);
+				break;
+			case OP_SNAPSHOT:
+				snapshots[programInputColumns[op]] = activations[target];
+				break;
+			case OP_NEURON:
+				if (!hasSources[target]) {
+					// acting as a bias neuron
+					activations[target] = -1;
+				} else {
+					neuronIp = 0;
+					for (j = programOperandStart[op]; j < programOperandEnd[op]; j++) {
+						operand = operands[j];
+						neuronIp += (operand >= 0 ? activations[operand] : snapshots[-operand - 1]) * operandWeights[j];
+					}
+					neuronIp += (-1 * neurons[target].bias());
+					activations[target] = neurons[target].function().activate(neuronIp);
+				}
+				neurons[target].setLastActivation(activations[target]);
+				break;
+			}
 		}
 		
-		opSet = new NEATNetOutputSet();
-		opSet.addNetworkOutput(new NEATNetOutput(outputs));
-		return (opSet);
+		for (i = 0; i < outputs.length; i++) {
+			outputs[i] = activations[outputIndexes[i]];
+		}
+		return (outputs);
 	}
 	
 	public NEATNeuron[] outputNeurons() {
             return outputNeurons;
 	}
 	
-	private double neuronOutput(NEATNeuron neuron, NetworkInput netInput) {
-		double output = 0;
-		double[] inputPattern;
-		// find its inputs
-		NEATNeuron[] sourceNodes = neuron.sourceNeurons();
+	/**
+	 * Compiles the graph into a flat program, visiting it backwards from each
+	 * output node in the same order as the original recursive evaluation.
+	 */
+	private void compileProgram() {
 		int i;
+		int n = this.neurons.length;
+		
+		this.neuronIndexes = new HashMap<NEATNeuron, Integer>();
+		for (i = 0; i < n; i++) {
+			neuronIndexes.put(this.neurons[i], i);
+		}
+		
+		this.activations = new double[n];
+		this.hasSources = new boolean[n];
+		for (i = 0; i < n; i++) {
+			activations[i] = this.neurons[i].lastActivation();
+			hasSources[i] = this.neurons[i].sourceNeurons().length > 0;
+		}
+		
+		this.compiledTypes = new ArrayList<Integer>();
+		this.compiledTargets = new ArrayList<Integer>();
+		this.compiledColumns = new ArrayList<Integer>();
+		this.compiledOperandStart = new ArrayList<Integer>();
+		this.compiledOperands = new ArrayList<Integer>();
+		this.compiledWeights = new ArrayList<Double>();
+		this.numberOfSnapshots = 0;
+		
+		int[] state = new int[n];
+		
+		this.outputIndexes = new int[outputNeurons.length];
+		for (i = 0; i < outputNeurons.length; i++) {
+			outputIndexes[i] = neuronIndexes.get(outputNeurons[i]);
+			this.compileNeuron(outputIndexes[i], state);
+		}
+		this.outputs = new double[outputNeurons.length];
+		
+		int size = compiledTypes.size();
+		this.programTypes = new int[size];
+		this.programTargets = new int[size];
+		this.programInputColumns = new int[size];
+		this.programOperandStart = new int[size];
+		this.programOperandEnd = new int[size];
+		
+		for (i = 0; i < size; i++) {
+			programTypes[i] = compiledTypes.get(i);
+			programTargets[i] = compiledTargets.get(i);
+			programInputColumns[i] = compiledColumns.get(i);
+			programOperandStart[i] = compiledOperandStart.get(i);
+			programOperandEnd[i] = i + 1 < size ? compiledOperandStart.get(i + 1) : compiledOperands.size();
+		}
+		
+		this.operands = new int[compiledOperands.size()];
+		this.operandWeights = new double[compiledOperands.size()];
+		for (i = 0; i < operands.length; i++) {
+			operands[i] = compiledOperands.get(i);
+			operandWeights[i] = compiledWeights.get(i);
+		}
+		this.snapshots = new double[numberOfSnapshots];
+		
+		this.neuronIndexes = null;
+		this.compiledTypes = null;
+		this.compiledTargets = null;
+		this.compiledColumns = null;
+		this.compiledOperandStart = null;
+		this.compiledOperands = null;
+		this.compiledWeights = null;
+	}
+	
+	private void compileNeuron(int index, int[] state) {
+		NEATNeuron neuron = this.neurons[index];
+		
+		if (state[index] == DONE) {
+			return;
+		}
 		
-		this.level++;
 		if (neuron.neuronType() == NEATNodeGene.INPUT) {
-			inputPattern = new double[1];
-			// match the input column to the input node, id's start from 1
-			inputPattern[0] = netInput.pattern()[neuron.id() - 1];
-		} else {
-			inputPattern = new double[sourceNodes.length];
-			for (i = 0; i < sourceNodes.length; i++) {
-				if (neuron.id() == sourceNodes[i].id()) {				
-					// Self Recurrent
-					inputPattern[i] = neuron.lastActivation();
-				} else if (neuron.neuronDepth() > sourceNodes[i].neuronDepth()) {
-					// Recurrent
-					inputPattern[i] = sourceNodes[i].lastActivation();
-				} else {
-					inputPattern[i] = this.neuronOutput(sourceNodes[i], netInput);
-				}
+			addOperation(OP_INPUT, index, neuron.id() - 1);
+			state[index] = DONE;
+			return;
+		}
+		
+		state[index] = VISITING;
+		
+		NEATNeuron[] sourceNodes = neuron.sourceNeurons();
+		Synapse[] synapses = neuron.incomingSynapses();
+		int[] sourceOperands = new int[sourceNodes.length];
+		int i;
+		
+		for (i = 0; i < sourceNodes.length; i++) {
+			int source = neuronIndexes.get(sourceNodes[i]);
+			if (neuron.id() == sourceNodes[i].id()
+					|| neuron.neuronDepth() > sourceNodes[i].neuronDepth()
+					|| state[source] == VISITING) {
+				// (Self) Recurrent, the value is read before the remaining sources are activated
+				addOperation(OP_SNAPSHOT, source, numberOfSnapshots);
+				sourceOperands[i] = -(++numberOfSnapshots);
+			} else {
+				this.compileNeuron(source, state);
+				sourceOperands[i] = source;
+			}
+		}
+		
+		addOperation(OP_NEURON, index, -1);
+		for (i = 0; i < sourceNodes.length; i++) {
+			if (synapses[i].isEnabled()) {
+				compiledOperands.add(sourceOperands[i]);
+				compiledWeights.add(synapses[i].getWeight());
 			}
 		}
-		output = neuron.activate(inputPattern);
-		this.level--;
-		return (output);
+		
+		state[index] = DONE;
+	}
+	
+	private void addOperation(int type, int target, int column) {
+		compiledTypes.add(type);
+		compiledTargets.add(target);
+		compiledColumns.add(column);
+		compiledOperandStart.add(compiledOperands.size());
 	}
 
 	/**
@@ -141,6 +307,7 @@ public class NEATNeuralNet implements NeuralNet {
         this.outputNeurons = new NEATNeuron[outputNeuronsList.size()];
         outputNeuronsList.toArray(this.outputNeurons);
 		this.assignNeuronDepth(outputNeurons, 0);
+		this.compileProgram();
 		
 		this.featureGenes = new NEATFeatureGene[features.size()];
 		features.toArray(featureGenes);
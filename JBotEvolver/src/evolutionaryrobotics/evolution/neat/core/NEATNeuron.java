@@ -62,6 +62,10 @@ public class NEATNeuron implements Neuron {
 		return (this.lastActivation);
 	}
 	
+	void setLastActivation(double lastActivation) {
+		this.lastActivation = lastActivation;
+	}
+	
 	/**
 	 * If it is an input neuron, returns the input, else will run through the specified activation function.
 	 * 
@@ -68,6 +68,15 @@ public class NEATNodeGene implements NEATGene {
 		return (this.id);
 	}
 
+	/**
+	 * Replaces a provisional innovation number and node id, see
+	 * {@link InnovationJournal}.
+	 */
+	void setInnovation(int innovationNumber, int id) {
+		this.innovationNumber = innovationNumber;
+		this.id = id;
+	}
+
 	public double sigmoidFactor() {
 		return (this.sigmoidFactor);
 	}
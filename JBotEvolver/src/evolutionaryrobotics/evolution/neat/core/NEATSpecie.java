@@ -31,6 +31,7 @@ public class NEATSpecie extends Specie {
     private int youthThreshold;
     private double fitnessMultiplier = 1;
     private boolean copyBest;
+    private transient NEATCompatibilityCache compatibilityCache;
     
     public NEATSpecie(double threshold, double excessCoeff, double disjointCoeff, double weightCoeff, int id, boolean copyBest) {
         super(threshold, id);
@@ -111,7 +112,10 @@ public class NEATSpecie extends Specie {
         if (specieRepresentative == null) {
             compatable = true;
         } else {
-            compatabilityScore = NEATSpecieManager.compatibilityScore(specieApplicant, specieRepresentative, this.excessCoeff, this.disjointCoeff, this.weightCoeff);
+            compatabilityScore = this.compatibilityCache == null ? Double.NaN : this.compatibilityCache.score(specieApplicant, specieRepresentative);
+            if (Double.isNaN(compatabilityScore)) {
+                compatabilityScore = NEATSpecieManager.compatibilityScore(specieApplicant, specieRepresentative, this.excessCoeff, this.disjointCoeff, this.weightCoeff);
+            }
             //cat.debug("compatabilityScore:" + compatabilityScore);
             compatable = compatabilityScore < this.specieThreshold();
         }
@@ -161,6 +165,25 @@ public class NEATSpecie extends Specie {
         return (offspring);
     }
 
+    /**
+     * @param compatibilityCache scores computed in advance for the current speciation, or null
+     */
+    public void setCompatibilityCache(NEATCompatibilityCache compatibilityCache) {
+        this.compatibilityCache = compatibilityCache;
+    }
+
+    public double excessCoeff() {
+        return (this.excessCoeff);
+    }
+
+    public double disjointCoeff() {
+        return (this.disjointCoeff);
+    }
+
+    public double weightCoeff() {
+        return (this.weightCoeff);
+    }
+
     public int specieAge() {
         return (this.specieAge);
     }
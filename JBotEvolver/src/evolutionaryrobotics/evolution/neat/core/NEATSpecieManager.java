@@ -6,7 +6,6 @@
 package evolutionaryrobotics.evolution.neat.core;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
-import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 
 /**
  * @author MSimmerson
@@ -16,67 +15,66 @@ import evolutionaryrobotics.evolution.neat.ga.core.Gene;
 public class NEATSpecieManager {
 	
 	public static double compatibilityScore(Chromosome specieApplicant, Chromosome specieRepresentative, double excessCoeff, double disjointCoeff, double weightCoeff) {
-		int disjoints = 0;
-		int excess = 0;
-		boolean genesToProcess = true;
+		return (compatibilityScore(geneArrays(specieApplicant), geneArrays(specieRepresentative), excessCoeff, disjointCoeff, weightCoeff));
+	}
+	
+	/**
+	 * Merge-join of the genes of both chromosomes, sorted by innovation number.
+	 * Genes that are missing in the other chromosome are excess if they are
+	 * after its last gene, and disjoint otherwise. The weight difference is
+	 * averaged over the matching genes.
+	 */
+	public static double compatibilityScore(NEATGeneArrays applicant, NEATGeneArrays representative, double excessCoeff, double disjointCoeff, double weightCoeff) {
+		int[] applicantInnovations = applicant.innovationNumbers();
+		int[] repInnovations = representative.innovationNumbers();
+		double[] applicantWeights = applicant.weights();
+		double[] repWeights = representative.weights();
+		int applicantSize = applicantInnovations.length;
+		int repSize = repInnovations.length;
 		int applicantIdx = 0;
-		boolean applicantIdxEnded = false;
 		int repIdx = 0;
-		boolean repIdxEnded = false;
-		double avWeightDiff = 0;
+		int disjoints = 0;
+		int excess;
+		int matching = 0;
 		double weightDiffTotal = 0;
+		double avWeightDiff;
 		int N;
-		double compatabilityScore = Integer.MAX_VALUE;
-		Gene[] applicantGenes;
-		Gene[] repGenes;
 		
-		applicantGenes = specieApplicant.genes();
-		repGenes = specieRepresentative.genes();
-		N = specieApplicant.size() > specieRepresentative.size() ? specieApplicant.size() : specieRepresentative.size();
-		while (genesToProcess) {
-			// find disjoints and excess
-                    
-			if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() == ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				// find average weight diff
-				if (applicantGenes[applicantIdx] instanceof NEATLinkGene) {
-					weightDiffTotal += Math.abs(((NEATLinkGene)applicantGenes[applicantIdx]).getWeight() - ((NEATLinkGene)repGenes[repIdx]).getWeight());
+		while (applicantIdx < applicantSize && repIdx < repSize) {
+			int applicantInnovation = applicantInnovations[applicantIdx];
+			int repInnovation = repInnovations[repIdx];
+			
+			if (applicantInnovation == repInnovation) {
+				// NaN for genes that are not links
+				if (applicantWeights[applicantIdx] == applicantWeights[applicantIdx] && repWeights[repIdx] == repWeights[repIdx]) {
+					weightDiffTotal += Math.abs(applicantWeights[applicantIdx] - repWeights[repIdx]);
 				}
+				matching++;
 				applicantIdx++;
 				repIdx++;
-			} else if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() > ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				if (repIdx < repGenes.length && !repIdxEnded) {
-					repIdx++;
-					disjoints++;
-				} else {
-					applicantIdx++;
-					excess++;
-				}
-			} else if (((NEATGene)applicantGenes[applicantIdx]).getInnovationNumber() < ((NEATGene)repGenes[repIdx]).getInnovationNumber()) {
-				if (applicantIdx < applicantGenes.length && !applicantIdxEnded) {
-					applicantIdx++;
-					disjoints++;
-				} else {
-					repIdx++;
-					excess++;
-				}
-			}
-						
-			if (applicantIdx == N || repIdx == N) {
-				genesToProcess = false;
-			}
-
-			// ensure we don't go out of range
-			if (applicantIdx == applicantGenes.length) {
-				applicantIdx %= applicantGenes.length;
-				applicantIdxEnded = true;
-			} else if (repIdx == repGenes.length) {
-				repIdx %= repGenes.length;
-				repIdxEnded = true;
+			} else if (applicantInnovation < repInnovation) {
+				disjoints++;
+				applicantIdx++;
+			} else {
+				disjoints++;
+				repIdx++;
 			}
 		}
-		avWeightDiff = N == disjoints + excess ? 0 : weightDiffTotal / (N - disjoints - excess);
-		compatabilityScore = ((excessCoeff * excess) / N) + ((disjointCoeff * disjoints) / N) + weightCoeff * avWeightDiff;
+		excess = (applicantSize - applicantIdx) + (repSize - repIdx);
+		
+		N = applicantSize > repSize ? applicantSize : repSize;
+		if (N == 0) {
+			return (0);
+		}
+		avWeightDiff = matching == 0 ? 0 : weightDiffTotal / matching;
 		
-		return (compatabilityScore);
+		return (((excessCoeff * excess) / N) + ((disjointCoeff * disjoints) / N) + weightCoeff * avWeightDiff);
+	}
+	
+	private static NEATGeneArrays geneArrays(Chromosome chromosome) {
+		if (chromosome instanceof NEATChromosome) {
+			return (((NEATChromosome)chromosome).geneArrays());
+		}
+		return (new NEATGeneArrays(chromosome.genes()));
 	}
 }
@@ -6,7 +6,6 @@
 package evolutionaryrobotics.evolution.neat.core.mutators;
 
 import java.util.ArrayList;
-import java.util.Random;
 
 import evolutionaryrobotics.evolution.neat.core.InnovationDatabase;
 import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
@@ -37,10 +36,6 @@ public class NEATMutator implements Mutator {
     private double biasPerturb = 0.1;
     private InnovationDatabase db;
     private static final int MAX_LINK_ATTEMPTS = 5;
-    private final Random linkRand = new Random();
-    private final Random nodeRand = new Random(linkRand.nextLong());
-    private final Random perturbRand = new Random(linkRand.nextLong());
-    private final Random disableRand = new Random(linkRand.nextLong());
 
     public NEATMutator() {
     }
@@ -103,7 +98,7 @@ public class NEATMutator implements Mutator {
     }
 
     private Gene mutateFeature(NEATFeatureGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
+        double perturbRandVal = MathUtils.nextDouble();
         Gene mutated = mutatee;
         if (perturbRandVal < this.pPerturb) {
             mutated = new NEATFeatureGene(mutatee.getInnovationNumber(), mutatee.geneAsNumber().doubleValue() + MathUtils.nextClampedDouble(-perturb, perturb));
@@ -113,13 +108,13 @@ public class NEATMutator implements Mutator {
     }
 
     private Gene mutateLink(NEATLinkGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
-        double disableRandVal = disableRand.nextDouble();
+        double perturbRandVal = MathUtils.nextDouble();
+        double disableRandVal = MathUtils.nextDouble();
         double newWeight;
         NEATLinkGene mutated = mutatee;
 
         if (perturbRandVal < this.pPerturb) {
-            if (this.pWeightReplaced > perturbRand.nextDouble()) {
+            if (this.pWeightReplaced > MathUtils.nextDouble()) {
                 newWeight = MathUtils.nextPlusMinusOne();
             } else {
                 newWeight = mutatee.getWeight() + MathUtils.nextClampedDouble(-perturb, perturb);
@@ -142,8 +137,8 @@ public class NEATMutator implements Mutator {
     }
 
     private Gene mutateNode(NEATNodeGene mutatee) {
-        double perturbRandVal = perturbRand.nextDouble();
-        double mutateBias = perturbRand.nextDouble();
+        double perturbRandVal = MathUtils.nextDouble();
+        double mutateBias = MathUtils.nextDouble();
         NEATNodeGene mutated = mutatee;
         double newSF = mutatee.sigmoidFactor();
         double newBias = mutatee.bias();
@@ -183,7 +178,7 @@ public class NEATMutator implements Mutator {
     }
 
     private void mutateAddLink(Chromosome mutatee) {
-        double linkRandVal = linkRand.nextDouble();
+        double linkRandVal = MathUtils.nextDouble();
         NEATNodeGene from;
         NEATNodeGene to;
         int rIdx;
@@ -199,9 +194,9 @@ public class NEATMutator implements Mutator {
             links = this.candidateLinks(mutatee.genes(), false);
             // find a new available link
             while (newLink == null && i < MAX_LINK_ATTEMPTS) {
-                rIdx = linkRand.nextInt(nodes.size());
+                rIdx = MathUtils.nextInt(nodes.size());
                 from = ((NEATNodeGene) nodes.get(rIdx));
-                rIdx = linkRand.nextInt(nodes.size());
+                rIdx = MathUtils.nextInt(nodes.size());
                 to = ((NEATNodeGene) nodes.get(rIdx));
                 if (!this.linkIllegal(from, to, links)) {
                     // set it to a random value
@@ -217,7 +212,7 @@ public class NEATMutator implements Mutator {
     }
 
     private void mutateAddNode(Chromosome mutatee) {
-        double nodeRandVal = nodeRand.nextDouble();
+        double nodeRandVal = MathUtils.nextDouble();
         ArrayList nodeLinks;
         //ArrayList nodes;
         NEATLinkGene chosen;
@@ -236,7 +231,7 @@ public class NEATMutator implements Mutator {
             nodeLinks = this.candidateLinks(mutatee.genes(), true);
             if (nodeLinks.size() > 0) {
                 // ensure there is a link to split
-                linkIdx = nodeRand.nextInt(nodeLinks.size());
+                linkIdx = MathUtils.nextInt(nodeLinks.size());
                 chosen = (NEATLinkGene) nodeLinks.get(linkIdx);
                 // disable old link
                 chosen.setEnabled(false);
@@ -2,13 +2,13 @@ package evolutionaryrobotics.evolution.neat.core.pselectors;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Random;
 
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.ChromosomeSet;
 import evolutionaryrobotics.evolution.neat.ga.core.ParentSelector;
 import evolutionaryrobotics.evolution.neat.ga.core.Population;
 import evolutionaryrobotics.evolution.neat.ga.core.Specie;
+import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
 /**
  * @author MSimmerson
@@ -18,7 +18,6 @@ import evolutionaryrobotics.evolution.neat.ga.core.Specie;
 public class TournamentSelector implements ParentSelector {
 	private int numElitist;
 	private boolean naturalOrder = false;
-	private Random rand = new Random();
 	
 	/**
 	 * @see org.neat4j.ailibrary.ga.core.ParentSelector#setElitismStrategy(int)
@@ -48,8 +47,8 @@ public class TournamentSelector implements ParentSelector {
 					pOne = genoTypes[0];
 					pTwo = genoTypes[0];
 				} else {
-					pOne = genoTypes[this.rand.nextInt(genoTypes.length - 1)];
-					pTwo = genoTypes[this.rand.nextInt(genoTypes.length - 1)];
+					pOne = genoTypes[MathUtils.nextInt(genoTypes.length - 1)];
+					pTwo = genoTypes[MathUtils.nextInt(genoTypes.length - 1)];
 				}
 				set.add(this.performATournament(pOne, pTwo));
 			}
@@ -5,13 +5,13 @@
 package evolutionaryrobotics.evolution.neat.core.xover;
 
 import java.util.ArrayList;
-import java.util.Random;
 
 import evolutionaryrobotics.evolution.neat.core.NEATChromosome;
 import evolutionaryrobotics.evolution.neat.core.NEATGene;
 import evolutionaryrobotics.evolution.neat.ga.core.Chromosome;
 import evolutionaryrobotics.evolution.neat.ga.core.ChromosomeSet;
 import evolutionaryrobotics.evolution.neat.ga.core.CrossOver;
+import evolutionaryrobotics.evolution.neat.utils.MathUtils;
 
 /**
  * @author MSimmerson
@@ -21,7 +21,6 @@ import evolutionaryrobotics.evolution.neat.ga.core.CrossOver;
  */
 public class NEATCrossover implements CrossOver {
 	private static final long serialVersionUID = 1L;
-	private final Random rand = new Random();
 	private double pXOver;
 	
 	@Override
@@ -79,7 +78,7 @@ public class NEATCrossover implements CrossOver {
 				childBorn = true;
 			} else if (bestGenes[bestIdx].getInnovationNumber() == worstGenes[worstIdx].getInnovationNumber()) {
 				// innovations are the same, pick one gene at random
-				childGenes.add(rand.nextBoolean() ? bestGenes[bestIdx] : worstGenes[worstIdx]);
+				childGenes.add(MathUtils.nextBoolean() ? bestGenes[bestIdx] : worstGenes[worstIdx]);
 				bestIdx++;
 				worstIdx++;
 			} else if (bestGenes[bestIdx].getInnovationNumber() > worstGenes[worstIdx].getInnovationNumber()){
@@ -8,24 +8,83 @@ package evolutionaryrobotics.evolution.neat.utils;
 
 import java.util.Random;
 
+import simulation.util.SimRandom;
+
 /**
  * @author msimmerson
  *
  * Provides some useful maths utility methods used for creating and modifying wieghts etc 
+ * 
+ * The random numbers are drawn from the generator bound to the calling thread,
+ * if any, so that the offspring of each specie can be produced in parallel
+ * from a stream of its own. Without one they are drawn from an unseeded
+ * generator shared by all the threads.
  */
 public class MathUtils
 {
 	private static final Random rand = new Random();
+	private static final ThreadLocal<Random> threadRand = new ThreadLocal<Random>();
     private MathUtils() {
     }
     
+    /**
+     * Binds the generator to the calling thread, or unbinds it if null.
+     * 
+     * @return the generator that was bound to the thread, or null
+     */
+    public static Random setThreadRandom(Random random) {
+    	Random previous = threadRand.get();
+    	if (random == null) {
+    		threadRand.remove();
+    	} else {
+    		threadRand.set(random);
+    	}
+    	return (previous);
+    }
+    
+    /**
+     * @return the generator bound to the calling thread, or null
+     */
+    public static Random getThreadRandom() {
+    	return (threadRand.get());
+    }
+    
+    private static Random random() {
+    	Random random = threadRand.get();
+    	return (random == null ? rand : random);
+    }
+    
     // clamped to +plus/-minus
     public static double nextClampedDouble(double minus, double plus) {
-    	return ((rand.nextDouble() - 0.5) * (plus - minus)); 	
+    	return ((random().nextDouble() - 0.5) * (plus - minus)); 	
     }
     
     public static double nextDouble() {
-    	return (rand.nextDouble()); 	
+    	return (random().nextDouble()); 	
+    }
+    
+    public static int nextInt(int n) {
+    	return (random().nextInt(n));
+    }
+    
+    public static long nextLong() {
+    	return (random().nextLong());
+    }
+    
+    public static boolean nextBoolean() {
+    	return (random().nextBoolean());
+    }
+    
+    /**
+     * @return a new generator for another thread, seeded from the generator
+     * of the calling thread
+     */
+    public static SimRandom split() {
+    	Random random = random();
+    	if (random instanceof SimRandom) {
+    		return (((SimRandom) random).split());
+    	}
+    	return (new SimRandom(random.nextLong()));
     }
 
     public static double nextPlusMinusOne() {
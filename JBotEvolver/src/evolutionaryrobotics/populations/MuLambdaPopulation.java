@@ -32,6 +32,7 @@ public class MuLambdaPopulation extends Population implements Serializable {
 	protected double accumulatedFitness;
 	protected double worstFitness;
 	protected int numberOfChromosomesEvaluated;
+	protected int numberOfChromosomesAborted;
 	protected int nextChromosomeToEvaluate;
 	protected int numberOfElites = 5;
 	protected int lambda = 5;
@@ -116,22 +117,8 @@ public class MuLambdaPopulation extends Population implements Serializable {
 			if (!parentIterator.hasNext()) {
 				parentIterator = parents.iterator();
 			}
-			double[] alleles = new double[genomelength];
-
 			Chromosome parent = parentIterator.next();
-
-			for (int j = 0; j < genomelength; j++) {
-				double allele = parent.getAlleles()[j];
-				if (randomNumberGenerator.nextDouble() < mutationRate) {
-					allele = allele + randomNumberGenerator.nextGaussian();
-					if (allele < -10)
-						allele = -10;
-					if (allele > 10)
-						allele = 10;
-				}
-
-				alleles[j] = allele;
-			}
+			double[] alleles = mutate(parent.getAlleles());
 
 			chromosomes[numberOfElites + i] = new Chromosome(alleles,
 					numberOfElites + i);
@@ -150,6 +137,7 @@ public class MuLambdaPopulation extends Population implements Serializable {
 		accumulatedFitness = 0;
 		worstFitness = 1e10;
 		numberOfChromosomesEvaluated = 0;
+		numberOfChromosomesAborted = 0;
 		nextChromosomeToEvaluate = 0;
 	}
 
@@ -203,14 +191,32 @@ public class MuLambdaPopulation extends Population implements Serializable {
 		return top;
 	}
 
+	/**
+	 * The chromosomes whose evaluation was aborted are not taken into account,
+	 * since their fitness is only an upper bound, see
+	 * {@link Chromosome#setFitnessAborted(boolean)}.
+	 */
 	@Override
 	public double getLowestFitness() {
 		return worstFitness;
 	}
 
+	/**
+	 * The chromosomes whose evaluation was aborted are not taken into account,
+	 * and the average is 0 if all of them were aborted.
+	 */
 	@Override
 	public double getAverageFitness() {
-		return accumulatedFitness / (double) chromosomes.length;
+		int counted = chromosomes.length - numberOfChromosomesAborted;
+		return counted > 0 ? accumulatedFitness / (double) counted : 0;
+	}
+	
+	/**
+	 * @return the number of chromosomes of the current generation whose
+	 * evaluation was aborted
+	 */
+	public int getNumberOfChromosomesAborted() {
+		return numberOfChromosomesAborted;
 	}
 
 	@Override
@@ -218,6 +224,43 @@ public class MuLambdaPopulation extends Population implements Serializable {
 		return bestFitness;
 	}
 
+	/**
+	 * The parents and the elite are the best max(lambda, elites) chromosomes,
+	 * so a chromosome is selected only if its fitness is at least that of the
+	 * max(lambda, elites)th best chromosome evaluated so far.
+	 */
+	@Override
+	public double getSelectionThreshold() {
+		int selected = Math.max(lambda, numberOfElites);
+		double[] best = new double[selected];
+		int n = 0;
+		
+		for (Chromosome c : chromosomes) {
+			if (!c.getFitnessSet() || c.getFitnessAborted())
+				continue;
+			
+			double fitness = c.getFitness();
+			int i = Math.min(n, selected - 1);
+			if (n == selected && fitness <= best[i])
+				continue;
+			while (i > 0 && best[i - 1] < fitness) {
+				best[i] = best[i - 1];
+				i--;
+			}
+			best[i] = fitness;
+			n = Math.min(n + 1, selected);
+		}
+		
+		return n < selected ? Double.NEGATIVE_INFINITY : best[selected - 1];
+	}
+
+	@Override
+	public int[] getSelectionBoundaries() {
+		if (lambda == numberOfElites)
+			return new int[]{lambda};
+		return new int[]{numberOfElites, lambda};
+	}
+
 	@Override
 	public Chromosome getNextChromosomeToEvaluate() {
 //		randomNumberGenerator.setSeed(getGenerationRandomSeed());
@@ -253,6 +296,12 @@ public class MuLambdaPopulation extends Population implements Serializable {
 
 		chromosome.setFitness(fitness);
 		numberOfChromosomesEvaluated++;
+		
+		if (chromosome.getFitnessAborted()) {
+			numberOfChromosomesAborted++;
+			return;
+		}
+		
 		accumulatedFitness += fitness;
 
 		if (fitness > bestFitness) {
@@ -274,6 +323,12 @@ public class MuLambdaPopulation extends Population implements Serializable {
 
 		chromosomes[pos].setFitness(fitness);
 		numberOfChromosomesEvaluated++;
+		
+		if (chromosomes[pos].getFitnessAborted()) {
+			numberOfChromosomesAborted++;
+			return;
+		}
+		
 		accumulatedFitness += fitness;
 
 		if (fitness > bestFitness) {
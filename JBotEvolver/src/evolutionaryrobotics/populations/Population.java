@@ -15,6 +15,7 @@ import simulation.util.ArgumentsAnnotation;
 import simulation.util.Factory;
 import comm.FileProvider;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.util.CheckpointLog;
 
 /**
  * Super-class for populations/evolutionary algorithms.
@@ -205,6 +206,27 @@ public abstract class Population implements Serializable {
      */
     public abstract Chromosome[] getTopChromosome(int number);
 
+    /** Get the lowest fitness that a chromosome of the current generation can
+     * still have to be selected, given the chromosomes evaluated so far. The
+     * evaluations whose fitness cannot reach it can be aborted.
+     * 
+     * @return the threshold, or negative infinity if it is not known.
+     */
+    public double getSelectionThreshold() {
+    	return Double.NEGATIVE_INFINITY;
+    }
+
+    /** Get the selection boundaries of the population: for each boundary, the
+     * number of best chromosomes that are selected for something, such as
+     * the parents and the elite.
+     * 
+     * @return the boundaries, or null if the selection does not only depend
+     * on the ranking of the chromosomes.
+     */
+    public int[] getSelectionBoundaries() {
+    	return null;
+    }
+
     /** Get the number of generations to evolve. 
      * 
      * @return the number generations to evolve.
@@ -338,6 +360,29 @@ public abstract class Population implements Serializable {
 		return currentNumberOfGenerationsAboveFitnessThreshold >= numberOfGenerationsAboveFitnessThresholdRequired;
 	}
 	
+	/**
+	 * Gaussian mutation: each allele of the parent is mutated with probability
+	 * <code>mutationRate</code> and kept between -10 and 10.
+	 * 
+	 * @return the alleles of the offspring
+	 */
+	protected double[] mutate(double[] parent) {
+		double[] alleles = new double[parent.length];
+		
+		for (int j = 0; j < parent.length; j++) {
+			double allele = parent[j];
+			if (randomNumberGenerator.nextDouble() < mutationRate) {
+				allele = allele + randomNumberGenerator.nextGaussian();
+				if (allele < -10)
+					allele = -10;
+				if (allele > 10)
+					allele = 10;
+			}
+			alleles[j] = allele;
+		}
+		return alleles;
+	}
+	
 	public synchronized static Population getPopulation(Arguments args) throws Exception {
 		
 		if(args.getArgumentIsDefined("load"))
@@ -369,6 +414,10 @@ public abstract class Population implements Serializable {
 		if(!populationFile.exists())
 			populationFile = new File(parentFolder+"/../populations/"+f.getName());
 		
+		Population logged = loadPopulationFromCheckpointLog(parentFolder, f.getName());
+		if(logged != null)
+			return logged;
+		
 		FileInputStream fis = new FileInputStream(populationFile);
 		GZIPInputStream gzipIn = new GZIPInputStream(fis);
 		ObjectInputStream in = new ObjectInputStream(gzipIn);
@@ -408,6 +457,10 @@ public abstract class Population implements Serializable {
 		if(!populationFile.exists())
 			populationFile = new File(args.getArgumentAsString("parentfolder")+"/../populations/"+f.getName());
 		
+		Population logged = loadPopulationFromCheckpointLog(args.getArgumentAsString("parentfolder"), f.getName());
+		if(logged != null)
+			return logged;
+		
 		FileInputStream fis = new FileInputStream(populationFile);
 		GZIPInputStream gzipIn = new GZIPInputStream(fis);
 		ObjectInputStream in = new ObjectInputStream(gzipIn);
@@ -416,6 +469,36 @@ public abstract class Population implements Serializable {
 		return population;
 	}
 
+	/**
+	 * Loads a population from the {@link CheckpointLog} of the folder, if
+	 * there is no file for it (<code>prefix + "population" + generation</code>).
+	 * 
+	 * @return the population, or null if it is saved in its own file
+	 */
+	private static Population loadPopulationFromCheckpointLog(String parentFolder, String name) throws Exception {
+		int i = name.lastIndexOf("population");
+		if(i < 0)
+			return null;
+		
+		int generation;
+		try {
+			generation = Integer.parseInt(name.substring(i + "population".length()));
+		} catch(NumberFormatException e) {
+			return null;
+		}
+		
+		String[] folders = {parentFolder+"/populations/", parentFolder+"/../populations/"};
+		
+		for(String folder : folders) {
+			if(new File(folder+name).exists())
+				return null;
+			File log = new File(folder+name.substring(0, i)+CheckpointLog.FILENAME);
+			if(log.exists())
+				return CheckpointLog.read(log, generation);
+		}
+		return null;
+	}
+
 	public abstract Chromosome getChromosome(int chromosomeId);
 	
 	public LinkedList<Serializable> getSerializableObjects() {
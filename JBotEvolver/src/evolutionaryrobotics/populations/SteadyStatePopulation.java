@@ -0,0 +1,330 @@
+package evolutionaryrobotics.populations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import controllers.FixedLenghtGenomeEvolvableController;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+
+/**
+ * Steady-state evolutionary algorithm, used by the
+ * {@link evolutionaryrobotics.evolution.SteadyStateEvolution}. There is no
+ * generational barrier: a new offspring can be requested at any time, and it
+ * is inserted in the population as soon as its fitness is known.
+ *
+ * The parents are chosen by tournament selection among the evaluated
+ * chromosomes. An evaluated offspring either replaces the worst chromosome of
+ * the population (<code>insertion=worst</code>) or the worst of a random
+ * tournament (<code>insertion=tournament</code>), if it is better.
+ *
+ * A generation is only used for reporting and checkpoints: the evolution
+ * calls {@link #createNextGeneration()} after each checkpoint. The evolution
+ * ends after <code>generations*size</code> evaluations.
+ */
+public class SteadyStatePopulation extends Population {
+	private static final long serialVersionUID = 1L;
+
+	protected int genomelength;
+	@ArgumentsAnnotation(name="size", defaultValue="100")
+	protected int populationSize;
+	@ArgumentsAnnotation(name="tournamentsize", defaultValue="3", help="Number of chromosomes in the tournaments that choose the parents and, with insertion=tournament, the chromosome that is replaced")
+	protected int tournamentSize = 3;
+	@ArgumentsAnnotation(name="insertion", values={"worst","tournament"}, defaultValue="worst")
+	protected boolean tournamentInsertion = false;
+
+	protected Chromosome chromosomes[];
+	protected HashMap<Integer, Chromosome> pending = new HashMap<Integer, Chromosome>();
+	protected int nextInitialChromosome;
+	protected int nextId;
+	protected int currentGeneration;
+	protected long numberOfEvaluations;
+	protected int numberOfEvaluationsInGeneration;
+	protected int numberOfInsertionsInGeneration;
+	protected boolean fitnessThresholdReached = false;
+
+	public SteadyStatePopulation(Arguments arguments) {
+		super(arguments);
+		populationSize = arguments.getArgumentAsIntOrSetDefault("size", 100);
+		numberOfGenerations = arguments.getArgumentAsIntOrSetDefault("generations", 100);
+		numberOfSamplesPerChromosome = arguments.getArgumentAsIntOrSetDefault("samples", 5);
+		mutationRate = arguments.getArgumentAsDoubleOrSetDefault("mutationrate", 0.1);
+		tournamentSize = arguments.getArgumentAsIntOrSetDefault("tournamentsize", tournamentSize);
+		tournamentInsertion = arguments.getArgumentAsStringOrSetDefault("insertion", "worst").equalsIgnoreCase("tournament");
+
+		genomelength = arguments.getArgumentAsInt("genomelength");
+	}
+
+	@Override
+	public void createRandomPopulation() {
+		randomNumberGenerator.setSeed(getGenerationRandomSeed());
+
+		chromosomes = new Chromosome[populationSize];
+
+		for (int i = 0; i < populationSize; i++) {
+			double[] alleles = new double[genomelength];
+			for (int j = 0; j < genomelength; j++) {
+				alleles[j] = randomNumberGenerator.nextGaussian() * 2;
+			}
+			chromosomes[i] = new Chromosome(alleles, nextId++);
+		}
+
+		nextInitialChromosome = 0;
+		setGenerationRandomSeed(randomNumberGenerator.nextInt());
+	}
+
+	/**
+	 * Returns a chromosome of the initial population that was not evaluated
+	 * yet or, when all of them were handed out, a new offspring. Returns null
+	 * when the evolution is done, or when no chromosome was evaluated yet to
+	 * be the parent of an offspring. The chromosome stays pending until its
+	 * fitness is set with {@link #setEvaluationResultForId(int, double)}.
+	 */
+	@Override
+	public Chromosome getNextChromosomeToEvaluate() {
+		if (evolutionDone())
+			return null;
+
+		Chromosome c;
+
+		if (nextInitialChromosome < populationSize) {
+			c = chromosomes[nextInitialChromosome++];
+		} else {
+			c = createOffspring();
+			if (c == null)
+				return null;
+		}
+
+		pending.put(c.getID(), c);
+		return c;
+	}
+
+	/**
+	 * @return a mutated copy of a parent, or null if no chromosome was
+	 * evaluated yet
+	 */
+	protected Chromosome createOffspring() {
+		Chromosome parent = selectParent();
+		if (parent == null)
+			return null;
+		return new Chromosome(mutate(parent.getAlleles()), nextId++);
+	}
+
+	/**
+	 * Tournament among the evaluated chromosomes.
+	 * 
+	 * @return the parent, or null if no chromosome was evaluated yet
+	 */
+	protected Chromosome selectParent() {
+		ArrayList<Chromosome> evaluated = getEvaluatedChromosomes();
+		if (evaluated.isEmpty())
+			return null;
+
+		Chromosome best = null;
+		for (int i = 0; i < tournamentSize; i++) {
+			Chromosome c = evaluated.get(randomNumberGenerator.nextInt(evaluated.size()));
+			if (best == null || c.getFitness() > best.getFitness())
+				best = c;
+		}
+		return best;
+	}
+
+	private ArrayList<Chromosome> getEvaluatedChromosomes() {
+		ArrayList<Chromosome> evaluated = new ArrayList<Chromosome>(populationSize);
+		for (Chromosome c : chromosomes)
+			if (c.getFitnessSet())
+				evaluated.add(c);
+		return evaluated;
+	}
+
+	@Override
+	public void setEvaluationResult(Chromosome chromosome, double fitness) {
+		setEvaluationResultForId(chromosome.getID(), fitness);
+	}
+
+	/**
+	 * Sets the fitness of a pending chromosome. Chromosomes of the initial
+	 * population keep their place, offspring are inserted if they are better
+	 * than the chromosome they would replace.
+	 */
+	@Override
+	public void setEvaluationResultForId(int id, double fitness) {
+		Chromosome c = pending.remove(id);
+
+		if (c == null) {
+			throw new java.lang.RuntimeException("Chromosome " + id + " is not being evaluated");
+		}
+
+		c.setFitness(fitness);
+		numberOfEvaluations++;
+		numberOfEvaluationsInGeneration++;
+
+		if (indexOf(c) < 0) {
+			int replace = tournamentInsertion ? selectTournamentReplacement() : selectWorst();
+			if (!chromosomes[replace].getFitnessSet() || fitness > chromosomes[replace].getFitness()) {
+				chromosomes[replace] = c;
+				numberOfInsertionsInGeneration++;
+			}
+		}
+	}
+
+	private int indexOf(Chromosome c) {
+		for (int i = 0; i < populationSize; i++)
+			if (chromosomes[i] == c)
+				return i;
+		return -1;
+	}
+
+	private int selectWorst() {
+		int worst = -1;
+		for (int i = 0; i < populationSize; i++) {
+			//chromosomes of the initial population that are still being evaluated are not replaced
+			if (!chromosomes[i].getFitnessSet())
+				continue;
+			if (worst < 0 || chromosomes[i].getFitness() < chromosomes[worst].getFitness())
+				worst = i;
+		}
+		return worst < 0 ? 0 : worst;
+	}
+
+	private int selectTournamentReplacement() {
+		int worst = -1;
+		for (int i = 0; i < tournamentSize; i++) {
+			int index = randomNumberGenerator.nextInt(populationSize);
+			if (!chromosomes[index].getFitnessSet())
+				continue;
+			if (worst < 0 || chromosomes[index].getFitness() < chromosomes[worst].getFitness())
+				worst = index;
+		}
+		return worst < 0 ? selectWorst() : worst;
+	}
+
+	/**
+	 * Starts a new generation for the purpose of reporting: the statistics of
+	 * the generation are reset and a new random seed is drawn for the
+	 * evaluations that follow. The population itself is not changed.
+	 */
+	@Override
+	public void createNextGeneration() {
+		fitnessThresholdReached = checkFitnessThreshold(getHighestFitness());
+		currentGeneration++;
+		numberOfEvaluationsInGeneration = 0;
+		numberOfInsertionsInGeneration = 0;
+		randomNumberGenerator.setSeed(getGenerationRandomSeed());
+		setGenerationRandomSeed(randomNumberGenerator.nextInt());
+	}
+
+	@Override
+	public boolean evolutionDone() {
+		return numberOfEvaluations + pending.size() >= (long)numberOfGenerations * populationSize || fitnessThresholdReached;
+	}
+
+	public long getNumberOfEvaluations() {
+		return numberOfEvaluations;
+	}
+
+	/**
+	 * @return the chromosomes whose fitness is not known yet, such as the
+	 * ones that were being evaluated when the population was saved
+	 */
+	public ArrayList<Chromosome> getPendingChromosomes() {
+		return new ArrayList<Chromosome>(pending.values());
+	}
+
+	public int getNumberOfInsertionsInGeneration() {
+		return numberOfInsertionsInGeneration;
+	}
+
+	@Override
+	public int getNumberOfCurrentGeneration() {
+		return currentGeneration;
+	}
+
+	@Override
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	@Override
+	public int getNumberOfChromosomesEvaluated() {
+		return numberOfEvaluationsInGeneration;
+	}
+
+	@Override
+	public double getLowestFitness() {
+		double lowest = Double.MAX_VALUE;
+		for (Chromosome c : chromosomes)
+			if (c.getFitnessSet() && c.getFitness() < lowest)
+				lowest = c.getFitness();
+		return lowest == Double.MAX_VALUE ? 0 : lowest;
+	}
+
+	@Override
+	public double getAverageFitness() {
+		double total = 0;
+		int n = 0;
+		for (Chromosome c : chromosomes) {
+			if (c.getFitnessSet()) {
+				total += c.getFitness();
+				n++;
+			}
+		}
+		return n == 0 ? 0 : total / n;
+	}
+
+	@Override
+	public double getHighestFitness() {
+		Chromosome best = getBestChromosome();
+		return best == null ? 0 : best.getFitness();
+	}
+
+	@Override
+	public Chromosome getBestChromosome() {
+		Chromosome best = null;
+		for (Chromosome c : chromosomes)
+			if (c.getFitnessSet() && (best == null || c.getFitness() > best.getFitness()))
+				best = c;
+		return best;
+	}
+
+	/**
+	 * Only the evaluated chromosomes are ranked, so fewer than
+	 * <code>number</code> may be returned.
+	 */
+	@Override
+	public Chromosome[] getTopChromosome(int number) {
+		Chromosome[] sorted = getEvaluatedChromosomes().toArray(new Chromosome[0]);
+		Arrays.sort(sorted, new Chromosome.CompareChromosomeFitness());
+		return Arrays.copyOf(sorted, Math.min(number, sorted.length));
+	}
+
+	@Override
+	public Chromosome getChromosome(int chromosomeId) {
+		Chromosome c = pending.get(chromosomeId);
+		if (c != null)
+			return c;
+		for (Chromosome member : chromosomes)
+			if (member.getID() == chromosomeId)
+				return member;
+		return null;
+	}
+
+	@Override
+	public void setupIndividual(Robot r) {
+		Chromosome c = getBestChromosome();
+		if(r.getController() instanceof FixedLenghtGenomeEvolvableController) {
+			FixedLenghtGenomeEvolvableController fc = (FixedLenghtGenomeEvolvableController)r.getController();
+			if(fc.getNNWeights() == null) {
+				fc.setNNWeights(c.getAlleles());
+			}
+		}
+	}
+
+	@Override
+	public Chromosome[] getChromosomes() {
+		return chromosomes;
+	}
+}
@@ -0,0 +1,499 @@
+package evolutionaryrobotics.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.Population;
+
+/**
+ * Append-only log of the populations of an evolution, which replaces the
+ * <code>populations/populationN</code> files. Each record holds the population
+ * serialized without its chromosomes, and the chromosomes: in full in a
+ * snapshot, which is written every <code>snapshotInterval</code> records, and
+ * otherwise as the alleles that differ from the most similar chromosome of the
+ * previous record.
+ *
+ * The records are compressed and written by a background thread, which forces
+ * them to the disk after each batch of records it finds queued. A record that
+ * was not completely written (if the evolution was killed) is ignored when
+ * reading, and truncated when the log is opened for writing again.
+ *
+ * Record: magic, type (snapshot or delta), generation, length of the body,
+ * deflated body, CRC32 of the body.
+ */
+public class CheckpointLog {
+
+	public static final String FILENAME = "checkpoints.log";
+
+	private static final int MAGIC = 0x4A42434B;
+	private static final byte SNAPSHOT = 1;
+	private static final byte DELTA = 2;
+	private static final int HEADER = 13;
+
+	private static final Record END = new Record();
+
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int snapshotInterval;
+	private int recordsSinceSnapshot;
+	private ArrayList<ChromosomeData> previous;
+	private ArrayBlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(4);
+	private Thread writer;
+	private volatile IOException error;
+
+	/**
+	 * Opens a log for appending, creating it if needed.
+	 */
+	public CheckpointLog(File f, int snapshotInterval) throws IOException {
+		this.snapshotInterval = Math.max(1, snapshotInterval);
+
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+		channel.truncate(getValidLength(f));
+		channel.position(channel.size());
+
+		writer = new Thread("CheckpointLog") {
+			@Override
+			public void run() {
+				writeRecords();
+			}
+		};
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues the population to be written. The population is serialized
+	 * before this method returns, so it can be changed afterwards.
+	 */
+	public void append(Population population) throws IOException {
+		if(error != null)
+			throw error;
+
+		Record r = new Record();
+		r.generation = population.getNumberOfCurrentGeneration();
+		r.chromosomes = new ArrayList<ChromosomeData>();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new SkeletonOutputStream(bytes, r.chromosomes);
+		out.writeObject(population);
+		out.close();
+		r.skeleton = bytes.toByteArray();
+
+		try {
+			queue.put(r);
+		} catch(InterruptedException e) {
+			throw new IOException("Interrupted while queuing generation "+r.generation);
+		}
+	}
+
+	/**
+	 * Writes the queued records and stops the background thread.
+	 */
+	public void close() throws IOException {
+		try {
+			queue.put(END);
+			writer.join();
+		} catch(InterruptedException e) {
+			throw new IOException("Interrupted while closing the checkpoint log");
+		}
+		file.close();
+		if(error != null)
+			throw error;
+	}
+
+	private void writeRecords() {
+		ArrayList<Record> batch = new ArrayList<Record>();
+		try {
+			while(true) {
+				batch.clear();
+				batch.add(queue.take());
+				queue.drainTo(batch);
+
+				boolean end = false;
+				for(Record r : batch) {
+					if(r == END)
+						end = true;
+					else
+						write(r);
+				}
+				channel.force(false);
+
+				if(end)
+					return;
+			}
+		} catch(IOException e) {
+			error = e;
+		} catch(InterruptedException e) {
+			error = new IOException("Checkpoint writer interrupted");
+		}
+	}
+
+	private void write(Record r) throws IOException {
+		boolean snapshot = previous == null || recordsSinceSnapshot + 1 >= snapshotInterval;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+		out.writeInt(r.skeleton.length);
+		out.write(r.skeleton);
+		out.writeInt(r.chromosomes.size());
+		for(ChromosomeData c : r.chromosomes)
+			c.write(out, snapshot ? null : previous);
+		out.close();
+		byte[] body = bytes.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update(body);
+
+		ByteBuffer b = ByteBuffer.allocate(HEADER + body.length + 4);
+		b.putInt(MAGIC);
+		b.put(snapshot ? SNAPSHOT : DELTA);
+		b.putInt(r.generation);
+		b.putInt(body.length);
+		b.put(body);
+		b.putInt((int)crc.getValue());
+		b.flip();
+		while(b.hasRemaining())
+			channel.write(b);
+
+		previous = r.chromosomes;
+		recordsSinceSnapshot = snapshot ? 0 : recordsSinceSnapshot + 1;
+	}
+
+	/**
+	 * Restores the population of the given generation. If that generation was
+	 * saved more than once, as when an evolution is restarted from an earlier
+	 * generation, the last one is restored. If it is not in the log, the last
+	 * generation before it is restored.
+	 */
+	public static Population read(File f, int generation) throws IOException, ClassNotFoundException {
+		ArrayList<Long> positions = new ArrayList<Long>();
+		ArrayList<Header> headers = new ArrayList<Header>();
+
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			long position = 0;
+			Header h;
+			while((h = readHeader(raf, position)) != null) {
+				positions.add(position);
+				headers.add(h);
+				position+= HEADER + h.length + 4;
+			}
+
+			int target = -1;
+			for(int i = 0 ; i < headers.size() ; i++)
+				if(headers.get(i).generation <= generation && (target < 0 || headers.get(i).generation >= headers.get(target).generation))
+					target = i;
+
+			if(target < 0)
+				throw new IOException("Generation "+generation+" is not in "+f);
+
+			if(headers.get(target).generation != generation)
+				System.err.println("Generation "+generation+" is not in "+f+"! Opening generation "+headers.get(target).generation+"...");
+
+			int start = target;
+			while(headers.get(start).type != SNAPSHOT)
+				start--;
+
+			ArrayList<ChromosomeData> chromosomes = null;
+			byte[] skeleton = null;
+
+			for(int i = start ; i <= target ; i++) {
+				byte[] body = new byte[headers.get(i).length];
+				raf.seek(positions.get(i) + HEADER);
+				raf.readFully(body);
+
+				DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(body)));
+				skeleton = new byte[in.readInt()];
+				in.readFully(skeleton);
+
+				int n = in.readInt();
+				ArrayList<ChromosomeData> current = new ArrayList<ChromosomeData>(n);
+				for(int j = 0 ; j < n ; j++)
+					current.add(ChromosomeData.read(in, chromosomes));
+				chromosomes = current;
+			}
+
+			ObjectInputStream in = new SkeletonInputStream(new ByteArrayInputStream(skeleton), chromosomes);
+			Population population = (Population)in.readObject();
+			in.close();
+			return population;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the length of the complete records at the start of the file
+	 */
+	private static long getValidLength(File f) throws IOException {
+		if(!f.exists())
+			return 0;
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			long position = 0;
+			Header h;
+			while((h = readHeader(raf, position)) != null)
+				position+= HEADER + h.length + 4;
+			return position;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return the header of the record at the given position, or null if there
+	 * is no complete and valid record there
+	 */
+	private static Header readHeader(RandomAccessFile raf, long position) throws IOException {
+		if(position + HEADER + 4 > raf.length())
+			return null;
+
+		raf.seek(position);
+		Header h = new Header();
+		if(raf.readInt() != MAGIC)
+			return null;
+		h.type = raf.readByte();
+		h.generation = raf.readInt();
+		h.length = raf.readInt();
+
+		if(h.length < 0 || position + HEADER + h.length + 4 > raf.length())
+			return null;
+
+		byte[] body = new byte[h.length];
+		raf.readFully(body);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		if(raf.readInt() != (int)crc.getValue())
+			return null;
+
+		return h;
+	}
+
+	private static class Header {
+		private byte type;
+		private int generation;
+		private int length;
+	}
+
+	private static class Record {
+		private int generation;
+		private byte[] skeleton;
+		private ArrayList<ChromosomeData> chromosomes;
+	}
+
+	private static class ChromosomeData {
+
+		//flags of the fitness, in a byte that older logs wrote as a boolean
+		private static final int FITNESS_SET = 1;
+		private static final int FITNESS_ABORTED = 2;
+
+		private int id;
+		private double fitness;
+		private boolean fitnessSet;
+		private boolean fitnessAborted;
+		private double[] alleles;
+
+		public ChromosomeData(Chromosome c) {
+			id = c.getID();
+			fitness = c.getFitness();
+			fitnessSet = c.getFitnessSet();
+			fitnessAborted = c.getFitnessAborted();
+			alleles = c.getAlleles() == null ? null : c.getAlleles().clone();
+		}
+
+		private ChromosomeData() {}
+
+		public Chromosome getChromosome() {
+			Chromosome c = new Chromosome(alleles, id);
+			if(fitnessSet)
+				c.setFitness(fitness);
+			c.setFitnessAborted(fitnessAborted);
+			return c;
+		}
+
+		/**
+		 * Writes the chromosome, as the alleles that differ from the most
+		 * similar chromosome of the base, if there is a base.
+		 */
+		public void write(DataOutputStream out, ArrayList<ChromosomeData> base) throws IOException {
+			out.writeInt(id);
+			out.writeDouble(fitness);
+			out.writeByte((fitnessSet ? FITNESS_SET : 0) | (fitnessAborted ? FITNESS_ABORTED : 0));
+			out.writeInt(alleles == null ? -1 : alleles.length);
+
+			if(alleles == null)
+				return;
+
+			int b = base == null ? -1 : findMostSimilar(base);
+			int changes = b < 0 ? alleles.length : countChanges(base.get(b).alleles);
+
+			//a delta takes 12 bytes per change, the full alleles 8 bytes each
+			if(b >= 0 && changes * 12 >= alleles.length * 8)
+				b = -1;
+
+			out.writeInt(b);
+
+			if(b < 0) {
+				for(double d : alleles)
+					out.writeDouble(d);
+			} else {
+				double[] baseAlleles = base.get(b).alleles;
+				out.writeInt(changes);
+				for(int i = 0 ; i < alleles.length ; i++) {
+					if(Double.doubleToRawLongBits(alleles[i]) != Double.doubleToRawLongBits(baseAlleles[i])) {
+						out.writeInt(i);
+						out.writeDouble(alleles[i]);
+					}
+				}
+			}
+		}
+
+		public static ChromosomeData read(DataInputStream in, ArrayList<ChromosomeData> base) throws IOException {
+			ChromosomeData c = new ChromosomeData();
+			c.id = in.readInt();
+			c.fitness = in.readDouble();
+			int flags = in.readByte();
+			c.fitnessSet = (flags & FITNESS_SET) != 0;
+			c.fitnessAborted = (flags & FITNESS_ABORTED) != 0;
+
+			int length = in.readInt();
+			if(length < 0)
+				return c;
+
+			int b = in.readInt();
+			if(b < 0) {
+				c.alleles = new double[length];
+				for(int i = 0 ; i < length ; i++)
+					c.alleles[i] = in.readDouble();
+			} else {
+				if(base == null || b >= base.size())
+					throw new IOException("Delta of a chromosome without its base");
+				c.alleles = base.get(b).alleles.clone();
+				int changes = in.readInt();
+				for(int i = 0 ; i < changes ; i++)
+					c.alleles[in.readInt()] = in.readDouble();
+			}
+			return c;
+		}
+
+		/**
+		 * @return the index of the chromosome of the base with the same number
+		 * of alleles that shares the most alleles with this one, comparing a
+		 * sample of the alleles, or -1 if there is none
+		 */
+		private int findMostSimilar(ArrayList<ChromosomeData> base) {
+			int step = Math.max(1, alleles.length / 32);
+			int best = -1;
+			int bestEqual = -1;
+			for(int j = 0 ; j < base.size() ; j++) {
+				double[] other = base.get(j).alleles;
+				if(other == null || other.length != alleles.length)
+					continue;
+				int equal = 0;
+				for(int i = 0 ; i < alleles.length ; i+= step)
+					if(Double.doubleToRawLongBits(alleles[i]) == Double.doubleToRawLongBits(other[i]))
+						equal++;
+				if(equal > bestEqual) {
+					best = j;
+					bestEqual = equal;
+				}
+			}
+			return best;
+		}
+
+		private int countChanges(double[] other) {
+			int changes = 0;
+			for(int i = 0 ; i < alleles.length ; i++)
+				if(Double.doubleToRawLongBits(alleles[i]) != Double.doubleToRawLongBits(other[i]))
+					changes++;
+			return changes;
+		}
+	}
+
+	/**
+	 * Placeholder of a chromosome in the serialized population.
+	 */
+	private static class ChromosomeReference implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private int index;
+
+		public ChromosomeReference(int index) {
+			this.index = index;
+		}
+	}
+
+	private static class SkeletonOutputStream extends ObjectOutputStream {
+
+		private ArrayList<ChromosomeData> chromosomes;
+		private IdentityHashMap<Chromosome, ChromosomeReference> references = new IdentityHashMap<Chromosome, ChromosomeReference>();
+
+		public SkeletonOutputStream(OutputStream out, ArrayList<ChromosomeData> chromosomes) throws IOException {
+			super(out);
+			this.chromosomes = chromosomes;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			//subclasses of Chromosome can have more state, so they are serialized as before
+			if(obj == null || obj.getClass() != Chromosome.class)
+				return obj;
+
+			Chromosome c = (Chromosome)obj;
+			ChromosomeReference r = references.get(c);
+			if(r == null) {
+				r = new ChromosomeReference(chromosomes.size());
+				references.put(c, r);
+				chromosomes.add(new ChromosomeData(c));
+			}
+			return r;
+		}
+	}
+
+	private static class SkeletonInputStream extends ObjectInputStream {
+
+		private ArrayList<ChromosomeData> chromosomes;
+		private Chromosome[] resolved;
+
+		public SkeletonInputStream(InputStream in, ArrayList<ChromosomeData> chromosomes) throws IOException {
+			super(in);
+			this.chromosomes = chromosomes;
+			this.resolved = new Chromosome[chromosomes.size()];
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if(!(obj instanceof ChromosomeReference))
+				return obj;
+
+			int index = ((ChromosomeReference)obj).index;
+			if(index >= resolved.length)
+				throw new EOFException("Missing chromosome "+index);
+			if(resolved[index] == null)
+				resolved[index] = chromosomes.get(index).getChromosome();
+			return resolved[index];
+		}
+	}
+}
@@ -29,11 +29,33 @@ public class DiskStorage implements Serializable{
 	protected final String restartFilename = "_restartevolution.conf";
 
 	protected PrintStream fitnessLog;
+	protected boolean textFitnessLog = true;
+	protected transient FitnessHistory fitnessHistory;
+
+	protected int snapshotInterval = 0;
+	protected transient HashMap<String, CheckpointLog> checkpointLogs = new HashMap<String, CheckpointLog>();
 
 	public DiskStorage(String outputDirectory) {
 		this.outputDirectory = outputDirectory;
 	}
 
+	/**
+	 * Saves the populations in a {@link CheckpointLog} instead of a file per
+	 * generation, with a full snapshot every <code>snapshotInterval</code>
+	 * generations.
+	 */
+	public void setCheckpointLog(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	/**
+	 * The fitness is always saved in the {@link FitnessHistory}. The
+	 * <code>_fitness.log</code> text file is only written if enabled.
+	 */
+	public void setTextFitnessLog(boolean textFitnessLog) {
+		this.textFitnessLog = textFitnessLog;
+	}
+
 	public void start() throws FileNotFoundException {
 		if (outputDirectory != null) {
 			File f = new File(outputDirectory);
@@ -88,8 +110,26 @@ public class DiskStorage implements Serializable{
 
 	public void close() {
 		if (outputDirectory != null) {
-			fitnessLog.close();
+			if(fitnessLog != null)
+				fitnessLog.close();
+			
+			if(fitnessHistory != null) {
+				try {
+					fitnessHistory.close();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+				fitnessHistory = null;
+			}
 			
+			for(CheckpointLog log : checkpointLogs.values()) {
+				try {
+					log.close();
+				} catch(IOException e) {
+					e.printStackTrace();
+				}
+			}
+			checkpointLogs.clear();
 		}
 	}
 
@@ -170,6 +210,8 @@ public class DiskStorage implements Serializable{
 	}
 	
 	private void openFitnessLog(boolean append) {
+		if(!textFitnessLog)
+			return;
 		try {
 			
 			if(fitnessLog != null)
@@ -185,6 +227,11 @@ public class DiskStorage implements Serializable{
 
 	private void updateFitnessLog(Population populationA, Population populationB) {
 		
+		updateFitnessHistory(populationA, populationB);
+		
+		if(!textFitnessLog)
+			return;
+		
 		if(populationA.getNumberOfCurrentGeneration() == 0) {
 			openFitnessLog(false);
 		}
@@ -200,8 +247,23 @@ public class DiskStorage implements Serializable{
 						populationB.getLowestFitness());
 		fitnessLog.flush();
 	}
+	
+	private void updateFitnessHistory(Population... populations) {
+		try {
+			if(fitnessHistory == null)
+				fitnessHistory = FitnessHistory.create(new File(outputDirectory + "/" + FitnessHistory.FILENAME), populations.length, populations[0].getPopulationSize(), populations[0].getNumberOfGenerations());
+			fitnessHistory.append(populations);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
 
 	private void updateFitnessLog(Population population) {
+		updateFitnessHistory(population);
+		
+		if(!textFitnessLog)
+			return;
+		
 		if(population.getNumberOfCurrentGeneration() == 0) {
 			openFitnessLog(false);
 		}
@@ -321,6 +383,16 @@ public class DiskStorage implements Serializable{
 
 	private void savePopulationToFile(Population population, String prefix)
 			throws FileNotFoundException, IOException {
+		if(snapshotInterval > 0) {
+			CheckpointLog log = checkpointLogs.get(prefix);
+			if(log == null) {
+				log = new CheckpointLog(new File(outputDirectory + "/populations/" + prefix + CheckpointLog.FILENAME), snapshotInterval);
+				checkpointLogs.put(prefix, log);
+			}
+			log.append(population);
+			return;
+		}
+		
 		FileOutputStream fileOut = new FileOutputStream(outputDirectory
 				+ "/populations/" + prefix + populationFilename
 				+ population.getNumberOfCurrentGeneration());
@@ -0,0 +1,131 @@
+package evolutionaryrobotics.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import simulation.util.Arguments;
+
+/**
+ * Bounded LRU cache with the fitness of each sample of a chromosome. The
+ * entries are keyed by the alleles, the seed and the index of the sample, and
+ * a fingerprint of the arguments of the evaluation, so a sample is only found
+ * when the same genome is evaluated again with the same sample seed: within
+ * a generation, such as an offspring identical to another one, or across
+ * generations when the population keeps the seed of its samples. A
+ * {@link evolutionaryrobotics.populations.MuLambdaPopulation} draws a new
+ * seed every generation, so its elite gets new samples and is not found.
+ *
+ * There is a single cache per JVM, shared by all the tasks that run in it.
+ */
+public class FitnessCache {
+
+	private static FitnessCache instance;
+
+	private LinkedHashMap<Key, Double> entries;
+	private int capacity;
+
+	private FitnessCache(int capacity) {
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+				return size() > FitnessCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cache of this JVM, creating it or growing it so that it
+	 * holds at least the given number of entries.
+	 */
+	public static synchronized FitnessCache getInstance(int capacity) {
+		if(instance == null)
+			instance = new FitnessCache(capacity);
+		else
+			instance.ensureCapacity(capacity);
+		return instance;
+	}
+
+	private synchronized void ensureCapacity(int capacity) {
+		if(capacity > this.capacity)
+			this.capacity = capacity;
+	}
+
+	/**
+	 * @return the fitness of the sample, or null if it is not in the cache
+	 */
+	public synchronized Double get(double[] alleles, long seed, int sample, String fingerprint) {
+		return entries.get(new Key(alleles, seed, sample, fingerprint));
+	}
+
+	public synchronized void put(double[] alleles, long seed, int sample, String fingerprint, double fitness) {
+		entries.put(new Key(alleles.clone(), seed, sample, fingerprint), fitness);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Fingerprint of the arguments that define an evaluation, independent of
+	 * the order of the options.
+	 */
+	public static String getFingerprint(HashMap<String, Arguments> arguments, long randomSeed) {
+		TreeMap<String, Arguments> sorted = new TreeMap<String, Arguments>(arguments);
+		StringBuilder sb = new StringBuilder();
+
+		sb.append(randomSeed);
+		for(String name : sorted.keySet()) {
+			Arguments args = sorted.get(name);
+			sb.append('\n').append(name).append(' ');
+			if(args != null)
+				sb.append(args.getCompleteArgumentString());
+		}
+		return sb.toString();
+	}
+
+	private static class Key {
+
+		private double[] alleles;
+		private long seed;
+		private int sample;
+		private String fingerprint;
+		private int hash;
+
+		public Key(double[] alleles, long seed, int sample, String fingerprint) {
+			this.alleles = alleles;
+			this.seed = seed;
+			this.sample = sample;
+			this.fingerprint = fingerprint;
+
+			int h = Arrays.hashCode(alleles);
+			h = 31 * h + (int)(seed ^ (seed >>> 32));
+			h = 31 * h + sample;
+			h = 31 * h + fingerprint.hashCode();
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key))
+				return false;
+			Key other = (Key)obj;
+			return hash == other.hash && seed == other.seed && sample == other.sample &&
+					Arrays.equals(alleles, other.alleles) && fingerprint.equals(other.fingerprint);
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package evolutionaryrobotics.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.populations.Population;
+
+/**
+ * Binary history of the fitness of an evolution, stored by columns, so that
+ * the viewers can map the file and scan one value of every generation, such
+ * as the highest fitness, without parsing the <code>_fitness.log</code> or
+ * skipping the fitness of the chromosomes.
+ *
+ * Header: magic, version, number of populations, number of chromosomes per
+ * population, capacity in generations, number of generations written. Then a
+ * column per value, with room for the capacity: the generation, the wall time
+ * in ms, and the highest, average and lowest fitness of each population. Then
+ * a block with the fitness of the chromosomes of each generation, population
+ * after population (NaN if a population has fewer chromosomes).
+ *
+ * The number of generations is written after their values, so a generation
+ * that was not completely written is ignored. When the capacity is reached,
+ * the history is copied to a new file with twice the capacity.
+ */
+public class FitnessHistory {
+
+	public static final String FILENAME = "_fitness.bin";
+
+	private static final int MAGIC = 0x4A424648;
+	private static final int VERSION = 2;
+	private static final int HEADER = 24;
+	private static final int ROWS = 20;
+
+	private int populations;
+	private int chromosomes;
+	private int capacity;
+	private int rows;
+
+	private File f;
+	private RandomAccessFile file;
+	private FileChannel channel;
+
+	private MappedByteBuffer buffer;
+
+	private FitnessHistory(int populations, int chromosomes, int capacity) {
+		this.populations = populations;
+		this.chromosomes = chromosomes;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Opens the history for writing. The generations that are not older than
+	 * the next generation written are replaced, as when the evolution is
+	 * restarted, and the file is rewritten if its layout is different.
+	 *
+	 * @param capacity the number of generations expected
+	 */
+	public static FitnessHistory create(File f, int populations, int chromosomes, int capacity) throws IOException {
+		FitnessHistory h = new FitnessHistory(populations, chromosomes, Math.max(1, capacity));
+		h.f = f;
+		h.file = new RandomAccessFile(f, "rw");
+		h.channel = h.file.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		h.channel.read(header, 0);
+		header.flip();
+
+		boolean valid = header.remaining() == HEADER && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+				&& header.getInt(8) == populations && header.getInt(12) == chromosomes && header.getInt(16) > 0;
+
+		if(valid) {
+			h.capacity = header.getInt(16);
+			h.rows = Math.min(Math.max(0, header.getInt(ROWS)), h.capacity);
+		}
+
+		if(!valid || h.channel.size() < h.getSize()) {
+			h.capacity = Math.max(1, capacity);
+			h.rows = 0;
+			h.channel.truncate(0);
+		}
+
+		h.file.setLength(h.getSize());
+		h.writeHeader();
+		return h;
+	}
+
+	/**
+	 * Maps the history for reading. The generations written after the history
+	 * was opened are not seen.
+	 */
+	public static FitnessHistory open(File f) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(f, "r");
+		try {
+			if(raf.length() < HEADER)
+				throw new IOException("Not a fitness history: "+f);
+
+			MappedByteBuffer buffer = raf.getChannel().map(MapMode.READ_ONLY, 0, raf.length());
+
+			if(buffer.getInt(0) != MAGIC)
+				throw new IOException("Not a fitness history: "+f);
+			if(buffer.getInt(4) != VERSION)
+				throw new IOException("Unsupported version of the fitness history: "+buffer.getInt(4));
+
+			FitnessHistory h = new FitnessHistory(buffer.getInt(8), buffer.getInt(12), buffer.getInt(16));
+			if(h.capacity <= 0 || raf.length() < h.getSize())
+				throw new IOException("Truncated fitness history: "+f);
+
+			h.buffer = buffer;
+			h.rows = Math.min(Math.max(0, buffer.getInt(ROWS)), h.capacity);
+			return h;
+		} finally {
+			raf.close();
+		}
+	}
+
+	public void append(Population... populations) throws IOException {
+		int generation = populations[0].getNumberOfCurrentGeneration();
+
+		while(rows > 0 && readInt(HEADER + (rows - 1) * 4L) >= generation)
+			rows--;
+
+		double[] summary = new double[this.populations * 3];
+		ByteBuffer fitness = ByteBuffer.allocate(this.populations * chromosomes * 8);
+
+		for(int p = 0 ; p < this.populations ; p++) {
+			Population population = populations[p];
+			summary[p * 3] = population.getHighestFitness();
+			summary[p * 3 + 1] = population.getAverageFitness();
+			summary[p * 3 + 2] = population.getLowestFitness();
+
+			Chromosome[] c = population.getChromosomes();
+			for(int i = 0 ; i < chromosomes ; i++)
+				fitness.putDouble(c != null && i < c.length && c[i] != null ? c[i].getFitness() : Double.NaN);
+		}
+		fitness.flip();
+
+		if(rows == capacity)
+			grow();
+
+		writeRow(rows, generation, System.currentTimeMillis(), summary, fitness);
+		rows++;
+		writeHeader();
+	}
+
+	/**
+	 * Copies the history to a file with twice the capacity, which then
+	 * replaces it, so that the history is complete if the copy is interrupted.
+	 */
+	private void grow() throws IOException {
+		File tmp = new File(f.getPath() + ".tmp");
+		tmp.delete();
+
+		FitnessHistory h = create(tmp, populations, chromosomes, capacity * 2);
+		double[] summary = new double[populations * 3];
+
+		for(int r = 0 ; r < rows ; r++) {
+			for(int p = 0 ; p < populations ; p++)
+				for(int v = 0 ; v < 3 ; v++)
+					summary[p * 3 + v] = read(getColumn(p, v) + r * 8L, 8).getDouble(0);
+			ByteBuffer fitness = read(getFitnessBlock() + (long)r * populations * chromosomes * 8, populations * chromosomes * 8);
+			h.writeRow(r, readInt(HEADER + r * 4L), read(getWallTimes() + r * 8L, 8).getLong(0), summary, fitness);
+		}
+		h.rows = rows;
+		h.writeHeader();
+		h.close();
+		close();
+
+		if(!tmp.renameTo(f) && !(f.delete() && tmp.renameTo(f)))
+			throw new IOException("Could not replace "+f+" with "+tmp);
+
+		capacity = h.capacity;
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+	}
+
+	private void writeRow(int r, int generation, long wallTime, double[] summary, ByteBuffer fitness) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(8);
+
+		b.putInt(0, generation).limit(4);
+		write(HEADER + r * 4L, b);
+		b.clear();
+		write(getWallTimes() + r * 8L, b.putLong(0, wallTime));
+
+		for(int p = 0 ; p < populations ; p++) {
+			for(int v = 0 ; v < 3 ; v++) {
+				b.clear();
+				write(getColumn(p, v) + r * 8L, b.putDouble(0, summary[p * 3 + v]));
+			}
+		}
+
+		write(getFitnessBlock() + (long)r * populations * chromosomes * 8, fitness);
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER);
+		header.putInt(MAGIC).putInt(VERSION).putInt(populations).putInt(chromosomes).putInt(capacity).putInt(rows).flip();
+		write(0, header);
+	}
+
+	private void write(long position, ByteBuffer b) throws IOException {
+		while(b.hasRemaining())
+			position+= channel.write(b, position);
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(length);
+		while(b.hasRemaining() && channel.read(b, position + b.position()) >= 0);
+		b.flip();
+		return b;
+	}
+
+	private int readInt(long position) throws IOException {
+		return read(position, 4).getInt(0);
+	}
+
+	public void close() throws IOException {
+		if(file != null)
+			file.close();
+	}
+
+	public int getNumberOfRows() {
+		return rows;
+	}
+
+	public int getNumberOfPopulations() {
+		return populations;
+	}
+
+	public int getNumberOfChromosomes() {
+		return chromosomes;
+	}
+
+	public int getGeneration(int row) {
+		return buffer.getInt(HEADER + check(row) * 4);
+	}
+
+	/**
+	 * @return the time at which the generation was saved, in ms since the epoch
+	 */
+	public long getWallTime(int row) {
+		return buffer.getLong((int)getWallTimes() + check(row) * 8);
+	}
+
+	public double getHighestFitness(int row) {
+		return getHighestFitness(row, 0);
+	}
+
+	public double getAverageFitness(int row) {
+		return getAverageFitness(row, 0);
+	}
+
+	public double getLowestFitness(int row) {
+		return getLowestFitness(row, 0);
+	}
+
+	public double getHighestFitness(int row, int population) {
+		return getValue(row, population, 0);
+	}
+
+	public double getAverageFitness(int row, int population) {
+		return getValue(row, population, 1);
+	}
+
+	public double getLowestFitness(int row, int population) {
+		return getValue(row, population, 2);
+	}
+
+	public double getFitness(int row, int population, int chromosome) {
+		if(population < 0 || population >= populations)
+			throw new IndexOutOfBoundsException("Population "+population+" of "+populations);
+		if(chromosome < 0 || chromosome >= chromosomes)
+			throw new IndexOutOfBoundsException("Chromosome "+chromosome+" of "+chromosomes);
+		return buffer.getDouble((int)getFitnessBlock() + ((check(row) * populations + population) * chromosomes + chromosome) * 8);
+	}
+
+	private double getValue(int row, int population, int value) {
+		if(population < 0 || population >= populations)
+			throw new IndexOutOfBoundsException("Population "+population+" of "+populations);
+		return buffer.getDouble((int)getColumn(population, value) + check(row) * 8);
+	}
+
+	private int check(int row) {
+		if(row < 0 || row >= rows)
+			throw new IndexOutOfBoundsException("Row "+row+" of "+rows);
+		return row;
+	}
+
+	private long getWallTimes() {
+		//the column of the generations is padded to 8 bytes
+		return HEADER + ((capacity * 4L + 7) & ~7L);
+	}
+
+	/**
+	 * @param value 0 for the highest fitness, 1 for the average and 2 for the lowest
+	 */
+	private long getColumn(int population, int value) {
+		return getWallTimes() + capacity * 8L + (population * 3L + value) * capacity * 8;
+	}
+
+	private long getFitnessBlock() {
+		return getColumn(populations, 0);
+	}
+
+	private long getSize() {
+		return getFitnessBlock() + (long)capacity * populations * chromosomes * 8;
+	}
+}
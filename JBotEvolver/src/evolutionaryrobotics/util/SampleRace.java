@@ -0,0 +1,144 @@
+package evolutionaryrobotics.util;
+
+import java.util.ArrayList;
+
+/**
+ * Racing of the samples of the chromosomes of a generation. Each chromosome
+ * gets one sample, and then more samples only while its confidence interval
+ * does not show on which side of each selection boundary it is: a chromosome
+ * is above a boundary of k chromosomes if its lower bound is higher than the
+ * upper bounds of the other n-k chromosomes, and below it if its upper bound
+ * is lower than the lower bounds of k other chromosomes.
+ *
+ * The intervals are given by the Hoeffding or the empirical Bernstein bound,
+ * and the confidence is split among all the intervals that can be computed.
+ * When the range of the fitness of a sample is given, and no sample falls
+ * outside of it, all the chromosomes are on the right side of the boundaries
+ * with a probability of at least 1-delta. Otherwise the range is estimated as
+ * the range of the samples of the generation seen so far, which can be too
+ * narrow, so delta is only a heuristic.
+ */
+public class SampleRace {
+
+	private int maxSamples;
+	private int[] boundaries;
+	private boolean hoeffding;
+	private double logTerm;
+	private double range;
+
+	private int[] samples;
+	private double[] sum;
+	private double[] sumOfSquares;
+	private double lowest = Double.POSITIVE_INFINITY;
+	private double highest = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * @param boundaries the number of chromosomes above each selection boundary
+	 * @param hoeffding true to use the Hoeffding bound instead of the empirical Bernstein bound
+	 * @param range the difference between the highest and the lowest fitness of
+	 * a sample, or 0 to estimate it from the samples
+	 */
+	public SampleRace(int chromosomes, int maxSamples, int[] boundaries, double delta, boolean hoeffding, double range) {
+		if(range < 0)
+			throw new IllegalArgumentException("Negative range of the fitness: "+range);
+
+		this.maxSamples = maxSamples;
+		this.boundaries = boundaries;
+		this.hoeffding = hoeffding;
+		this.range = range;
+
+		double deltaPerInterval = delta / ((double)chromosomes * maxSamples);
+		logTerm = Math.log((hoeffding ? 2 : 3) / deltaPerInterval);
+
+		samples = new int[chromosomes];
+		sum = new double[chromosomes];
+		sumOfSquares = new double[chromosomes];
+	}
+
+	public void addSamples(int chromosome, double[] fitness) {
+		for(double f : fitness) {
+			if(range > 0 && Math.max(highest, f) - Math.min(lowest, f) > range)
+				throw new IllegalStateException("Fitness "+f+" is outside of the range "+range+" of the samples");
+			samples[chromosome]++;
+			sum[chromosome]+= f;
+			sumOfSquares[chromosome]+= f * f;
+			lowest = Math.min(lowest, f);
+			highest = Math.max(highest, f);
+		}
+	}
+
+	public int getNumberOfSamples(int chromosome) {
+		return samples[chromosome];
+	}
+
+	public int getTotalNumberOfSamples() {
+		int total = 0;
+		for(int n : samples)
+			total+= n;
+		return total;
+	}
+
+	public double getMean(int chromosome) {
+		return sum[chromosome] / samples[chromosome];
+	}
+
+	private double getWidth(int chromosome) {
+		int n = samples[chromosome];
+
+		if(n >= maxSamples)
+			return 0;
+
+		double range = this.range > 0 ? this.range : highest - lowest;
+
+		if(hoeffding)
+			return range * Math.sqrt(logTerm / (2 * n));
+
+		double mean = getMean(chromosome);
+		double variance = Math.max(0, sumOfSquares[chromosome] / n - mean * mean);
+		return Math.sqrt(2 * variance * logTerm / n) + 3 * range * logTerm / n;
+	}
+
+	/**
+	 * @return the chromosomes that need another sample to be placed on a side
+	 * of every selection boundary
+	 */
+	public ArrayList<Integer> getUndecided() {
+		int n = samples.length;
+		double[] lower = new double[n];
+		double[] upper = new double[n];
+
+		for(int i = 0 ; i < n ; i++) {
+			double mean = getMean(i);
+			double width = getWidth(i);
+			lower[i] = mean - width;
+			upper[i] = mean + width;
+		}
+
+		ArrayList<Integer> undecided = new ArrayList<Integer>();
+
+		for(int i = 0 ; i < n ; i++) {
+			if(samples[i] >= maxSamples)
+				continue;
+
+			int surelyBelow = 0;
+			int surelyAbove = 0;
+
+			for(int j = 0 ; j < n ; j++) {
+				if(j == i)
+					continue;
+				if(upper[j] < lower[i])
+					surelyBelow++;
+				if(lower[j] > upper[i])
+					surelyAbove++;
+			}
+
+			for(int k : boundaries) {
+				if(surelyBelow < n - k && surelyAbove < k) {
+					undecided.add(i);
+					break;
+				}
+			}
+		}
+		return undecided;
+	}
+}
@@ -0,0 +1,34 @@
+package evolutionaryrobotics.util;
+
+import java.io.Serializable;
+
+/**
+ * Lowest fitness that a chromosome of the current generation can still have
+ * to be selected, shared by the evolution and the tasks of the generation
+ * when racing is enabled. The threshold only rises while the generation is
+ * evaluated, so a task that sees an older value aborts fewer evaluations, but
+ * never one that could be selected.
+ */
+public class SelectionThreshold implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private volatile double value;
+
+	public SelectionThreshold() {
+		this(Double.NEGATIVE_INFINITY);
+	}
+
+	public SelectionThreshold(double value) {
+		this.value = value;
+	}
+
+	public double get() {
+		return value;
+	}
+
+	public synchronized void raise(double value) {
+		if(value > this.value)
+			this.value = value;
+	}
+}
@@ -0,0 +1,134 @@
+package evolutionaryrobotics.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import comm.FileProvider;
+import evolutionaryrobotics.JBotEvolver;
+import evolutionaryrobotics.neuralnetworks.Chromosome;
+import simulation.JBotSim;
+import simulation.Simulator;
+import simulation.robot.Robot;
+
+/**
+ * Simulator of a worker thread that is reused by all the samples evaluated in
+ * the thread, instead of creating the simulator, the environment and the
+ * robots for each sample. Between samples the simulator is reset with the
+ * seed of the next sample (see {@link Simulator#reset(long)}) and the weights
+ * of the next chromosome are set in the controllers.
+ *
+ * The simulator is only reused if it is resettable, if creating the robots
+ * does not draw random numbers and if the chromosome sets up the robots in
+ * the default way. Otherwise a new simulator is created for each sample, as
+ * before.
+ */
+public class SimulationContext {
+
+	private static ThreadLocal<SimulationContext> contexts = new ThreadLocal<SimulationContext>();
+
+	private String fingerprint;
+	private Simulator simulator;
+	private boolean reusable = true;
+	private int reuses = 0;
+
+	private SimulationContext(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Returns the context of the current thread for the evaluations with the
+	 * given fingerprint (see {@link FitnessCache#getFingerprint}), replacing
+	 * the previous one if the arguments changed.
+	 */
+	public static SimulationContext getInstance(String fingerprint) {
+		SimulationContext context = contexts.get();
+		if(context == null || !context.fingerprint.equals(fingerprint)) {
+			context = new SimulationContext(fingerprint);
+			contexts.set(context);
+		}
+		return context;
+	}
+
+	/**
+	 * Returns a simulator, with the robots set up with the chromosome, that is
+	 * ready to simulate the sample with the given seed.
+	 */
+	public Simulator getSimulator(JBotEvolver jBotEvolver, Chromosome chromosome, long seed, FileProvider fileProvider) {
+
+		if(simulator != null) {
+			simulator.reset(seed);
+			simulator.setFileProvider(fileProvider);
+			jBotEvolver.setChromosome(simulator.getRobots(), chromosome);
+			reuses++;
+			return simulator;
+		}
+
+		if(reusable && setsUpRobotsByDefault(chromosome)) {
+			Simulator candidate = jBotEvolver.createSimulator(seed);
+			candidate.setFileProvider(fileProvider);
+			candidate.addRobots(jBotEvolver.createRobots(candidate));
+
+			//creating the robots must not depend on the seed, so no random numbers can have been drawn
+			if(candidate.isResettable() && isUnused(candidate.getRandom(), candidate.getRandomSeed())) {
+				simulator = candidate;
+				simulator.reset(seed);
+				jBotEvolver.setChromosome(simulator.getRobots(), chromosome);
+				return simulator;
+			}
+			reusable = false;
+		}
+
+		Simulator s = jBotEvolver.createSimulator(seed);
+		s.setFileProvider(fileProvider);
+		ArrayList<Robot> robots = jBotEvolver.createRobots(s, chromosome);
+		s.addRobots(robots);
+		return s;
+	}
+
+	/**
+	 * Compares the state of the generator with the state of a new generator
+	 * with the seed, without drawing a number from it. The seed is the one of
+	 * the simulator, which is not the seed of the sample if fixedseed is set.
+	 */
+	private boolean isUnused(Random random, long seed) {
+		return Arrays.equals(getState(random), getState(new Random(seed)));
+	}
+
+	private static byte[] getState(Random random) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(random);
+			out.close();
+			return bytes.toByteArray();
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private boolean setsUpRobotsByDefault(Chromosome chromosome) {
+		try {
+			return chromosome.getClass().getMethod("setupRobots", JBotSim.class, Simulator.class).getDeclaringClass() == Chromosome.class;
+		} catch(NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the simulator of this context is reused between samples
+	 */
+	public boolean isReusable() {
+		return reusable;
+	}
+
+	/**
+	 * @return the number of samples that reused the simulator
+	 */
+	public int getReuses() {
+		return reuses;
+	}
+}
@@ -59,6 +59,7 @@ import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
 import evolutionaryrobotics.neuralnetworks.CTRNNMultilayer;
 import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.NeuralNetworkController;
+import evolutionaryrobotics.util.FitnessHistory;
 import gui.renderer.Renderer;
 import gui.util.Editor;
 import gui.util.GraphPlotter;
@@ -725,7 +726,10 @@ public class ResultViewerGui extends Gui implements Updatable {
 
 	protected String getFitnessFiles(String folder) {
 
-		File f = new File(folder + "/_fitness.log");
+		File f = new File(folder + "/" + FitnessHistory.FILENAME);
+
+		if (!f.exists())
+			f = new File(folder + "/_fitness.log");
 
 		try {
 			if (f.exists()) {
@@ -843,12 +847,18 @@ public class ResultViewerGui extends Gui implements Updatable {
 				return postDataList;
 			}
 		} else {
-			File f = new File(folder + "/_fitness.log");
+			File f = new File(folder + "/" + FitnessHistory.FILENAME);
 			ArrayList<PostEvaluationData> postDataList = new ArrayList<PostEvaluationData>();
 
+			if (!f.exists())
+				f = new File(folder + "/_fitness.log");
+
 			if (f.exists()) {
 				try {
-					postDataList.add(getDataFromFitnessLog(f));
+					if (f.getName().equals(FitnessHistory.FILENAME))
+						postDataList.add(getDataFromFitnessHistory(f));
+					else
+						postDataList.add(getDataFromFitnessLog(f));
 					return postDataList;
 				} catch (IOException e) {
 					e.printStackTrace();
@@ -909,6 +919,18 @@ public class ResultViewerGui extends Gui implements Updatable {
 		return new PostEvaluationData(setupName, Integer.valueOf(number), chromosomeFitness, overall);
 	}
 
+	protected PostEvaluationData getDataFromFitnessHistory(File f) throws IOException {
+		FitnessHistory history = FitnessHistory.open(f);
+		String setupName = f.getAbsoluteFile().getParentFile().getName();
+		int last = history.getNumberOfRows() - 1;
+
+		if (last < 0)
+			throw new IOException("No generations in " + f);
+
+		return new PostEvaluationData(setupName, history.getGeneration(last), history.getHighestFitness(last),
+				history.getAverageFitness(last));
+	}
+
 	protected PostEvaluationData getDataFromFitnessLog(File f) throws IOException {
 		BufferedReader reader = new BufferedReader(new FileReader(f));
 		String line = reader.readLine();
@@ -23,6 +23,7 @@ import javax.swing.JTextField;
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evolution.Evolution;
 import evolutionaryrobotics.populations.Population;
+import evolutionaryrobotics.util.FitnessHistory;
 import gui.Gui;
 import gui.renderer.Renderer;
 import gui.util.Graph;
@@ -338,6 +339,19 @@ public class EvolutionGui extends Gui {
 		}
 
 		private double[] getFitnessFromFile() {
+			File historyFile = new File(configName + "/" + FitnessHistory.FILENAME);
+			
+			if(historyFile.exists()) {
+				try {
+					FitnessHistory history = FitnessHistory.open(historyFile);
+					int last = history.getNumberOfRows() - 1;
+					if(last >= 0)
+						return new double[]{history.getHighestFitness(last), history.getAverageFitness(last), history.getLowestFitness(last)};
+				} catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+			
 			Scanner scanner = null;
 			try {
 				scanner = new Scanner(new File(configName + "/_fitness.log"));
@@ -6,8 +6,8 @@ import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,6 +32,7 @@ import evolutionaryrobotics.neuralnetworks.NeuralNetwork;
 import evolutionaryrobotics.neuralnetworks.NeuralNetworkController;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
 import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
+import evolutionaryrobotics.util.FitnessHistory;
 import simulation.Simulator;
 import simulation.Updatable;
 import simulation.robot.Robot;
@@ -164,8 +165,8 @@ public class GraphPlotter extends JFrame implements Updatable {
 	}
 	
 	/**
-	 * This constructor receives a list of fitness.log files
-	 * @param files list of file names of the fitness.log files to plot
+	 * This constructor receives a list of fitness.log or {@link FitnessHistory} files
+	 * @param files list of file names of the fitness files to plot
 	 */
 	public GraphPlotter(String[] files) {
 		
@@ -185,6 +186,23 @@ public class GraphPlotter extends JFrame implements Updatable {
 			try {
 				
 				File fitnessFile = new File(file);
+				
+				if(fitnessFile.getName().equals(FitnessHistory.FILENAME)) {
+					FitnessHistory history = FitnessHistory.open(fitnessFile);
+					int rows = history.getNumberOfRows();
+					
+					if(rows > 0)
+						totalGenerations = Math.max(history.getGeneration(rows - 1) + 1, totalGenerations);
+					
+					Double[] dataList = new Double[totalGenerations];
+					for(int i = 0 ; i < rows ; i++)
+						dataList[history.getGeneration(i)] = history.getHighestFitness(i);
+					
+					graph.addDataList(dataList);
+					graph.addLegend(fitnessFile.getAbsolutePath());
+					continue;
+				}
+				
 				File generationsFile = new File(fitnessFile.getParent() + folderSeparator +"_generationnumber");
 				
 				Scanner sc = new Scanner(generationsFile);
@@ -218,7 +236,7 @@ public class GraphPlotter extends JFrame implements Updatable {
 		        graph.addDataList(dataList);
 		        graph.addLegend(fitnessFile.getAbsolutePath());
 		    } 
-		    catch (FileNotFoundException e) {
+		    catch (IOException e) {
 		        e.printStackTrace();
 		    }
 		}
@@ -13,6 +13,7 @@ import net.jafama.FastMath;
 import result.Result;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import taskexecutor.tasks.GenerationalTask;
 import taskexecutor.tasks.JBotEvolverTask;
 import tasks.Task;
 import client.Client;
@@ -220,6 +221,15 @@ public class ConillonTaskExecutor extends TaskExecutor {
 	}
 	
 	private Task copy(Task t) {
+		//generational tasks are copied through the compact format, sharing the
+		//JBotEvolver of the task, which is neither serialized nor created again
+		if(t instanceof GenerationalTask) {
+			try {
+				return ((GenerationalTask)t).copy();
+			} catch(IOException e) {
+				//chromosomes or configurations that the format cannot write
+			}
+		}
 		try {
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			ObjectOutputStream oos = new ObjectOutputStream(baos);
@@ -0,0 +1,295 @@
+package taskexecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import evolutionaryrobotics.JBotEvolver;
+import result.Result;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.tasks.GenerationalTask;
+import tasks.Task;
+
+/**
+ * Runs the tasks in worker JVMs on the same host (see
+ * {@link ForkedProcessWorker}), so that the garbage collection of each worker
+ * does not stop the others. The tasks and the results are exchanged in the
+ * {@link TaskWireFormat} through a pair of {@link SharedMemoryRing}s per
+ * worker, in a temporary memory-mapped file, without sockets or Java
+ * serialization.
+ *
+ * A worker that dies is started again and its tasks are submitted again. A
+ * task that was being run by <code>retries</code> workers that died stops the
+ * evolution. Only {@link GenerationalTask}s can be run.
+ */
+public class ForkedProcessTaskExecutor extends TaskExecutor {
+
+	@ArgumentsAnnotation(name="processes", defaultValue="number of processors", help="Number of worker processes")
+	private int numberOfProcesses;
+	@ArgumentsAnnotation(name="ringsize", defaultValue="1024", help="Size in KB of the buffer of tasks and of the buffer of results of each worker")
+	private int ringSize = 1024;
+	@ArgumentsAnnotation(name="jvmoptions", defaultValue="", help="Options of the worker JVMs, separated by spaces, such as -Xmx1g")
+	private String jvmOptions = "";
+	@ArgumentsAnnotation(name="retries", defaultValue="3", help="Number of times a task is submitted again after its worker died")
+	private int retries = 3;
+	@ArgumentsAnnotation(name="tasksperprocess", defaultValue="2", help="Number of tasks submitted to each worker at a time")
+	private int tasksPerProcess = 2;
+
+	private File file;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private Worker[] workers;
+	private LinkedList<Task> pending = new LinkedList<Task>();
+	private HashMap<Integer, Integer> failures = new HashMap<Integer, Integer>();
+	private LinkedBlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+	private volatile RuntimeException error;
+	private volatile boolean stopped = false;
+
+	public ForkedProcessTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
+		super(jBotEvolver, args);
+		numberOfProcesses = args.getArgumentAsIntOrSetDefault("processes", Runtime.getRuntime().availableProcessors());
+		ringSize = args.getArgumentAsIntOrSetDefault("ringsize", ringSize);
+		jvmOptions = args.getArgumentAsStringOrSetDefault("jvmoptions", jvmOptions);
+		retries = args.getArgumentAsIntOrSetDefault("retries", retries);
+		tasksPerProcess = args.getArgumentAsIntOrSetDefault("tasksperprocess", tasksPerProcess);
+
+		int size = SharedMemoryRing.getSize(ringSize * 1024);
+
+		try {
+			file = File.createTempFile("jbotevolver", ".ring");
+			file.deleteOnExit();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.setLength(2L * size * numberOfProcesses);
+			//the file stays open, the rings lock it
+			channel = raf.getChannel();
+			buffer = channel.map(MapMode.READ_WRITE, 0, raf.length());
+		} catch(IOException e) {
+			throw new RuntimeException("Could not create the buffers of the worker processes: "+e.getMessage(), e);
+		}
+
+		workers = new Worker[numberOfProcesses];
+		for(int i = 0 ; i < numberOfProcesses ; i++)
+			workers[i] = new Worker(2 * size * i, size);
+	}
+
+	@Override
+	public void addTask(Task t) {
+		if(!(t instanceof GenerationalTask))
+			throw new RuntimeException("ForkedProcessTaskExecutor can only run GenerationalTasks: "+t.getClass().getName());
+
+		synchronized(this) {
+			pending.add(t);
+		}
+	}
+
+	@Override
+	public Result getResult() {
+		Result r = null;
+		while(r == null && !stopped)
+			r = getResult(1, TimeUnit.SECONDS);
+		return r;
+	}
+
+	@Override
+	public Result getResult(long timeout, TimeUnit unit) {
+		if(error != null)
+			throw error;
+		try {
+			return results.poll(timeout, unit);
+		} catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Starts the workers, then submits the pending tasks to the workers that
+	 * have room for them and collects the results.
+	 */
+	@Override
+	public void run() {
+		try {
+			synchronized(this) {
+				for(Worker w : workers)
+					if(!stopped)
+						w.start();
+			}
+
+			int idle = 0;
+			while(!stopped) {
+				boolean busy = false;
+				synchronized(this) {
+					for(Worker w : workers) {
+						busy|= w.collect();
+						busy|= w.submit();
+					}
+				}
+				if(busy)
+					idle = 0;
+				else
+					SharedMemoryRing.idle(idle++);
+			}
+		} catch(RuntimeException e) {
+			error = e;
+			stopTasks();
+		}
+	}
+
+	@Override
+	public void stopTasks() {
+		stopped = true;
+		synchronized(this) {
+			for(Worker w : workers)
+				if(w.process != null)
+					w.process.destroy();
+		}
+		file.delete();
+	}
+
+	/**
+	 * Called by the thread that waits for the process of a worker when the
+	 * process ends. The tasks of the worker are submitted again and a new
+	 * process is started.
+	 */
+	private synchronized void restart(Worker w) {
+		if(stopped)
+			return;
+
+		w.collect();
+
+		ArrayList<Task> lost = new ArrayList<Task>(w.tasks.values());
+		w.tasks.clear();
+
+		for(Task t : lost) {
+			Integer n = failures.get(t.getId());
+			n = n == null ? 1 : n + 1;
+			failures.put(t.getId(), n);
+			if(n > retries) {
+				error = new RuntimeException("Task "+t.getId()+" was running in "+n+" worker processes that died");
+				stopTasks();
+				return;
+			}
+		}
+
+		pending.addAll(0, lost);
+
+		System.err.println("Worker process exited with code "+w.process.exitValue()+", restarting it and submitting its "+lost.size()+" tasks again");
+		w.start();
+	}
+
+	private class Worker {
+
+		private long offset;
+		private int size;
+		private SharedMemoryRing taskRing;
+		private SharedMemoryRing resultRing;
+		private TaskWireFormat format;
+		private Process process;
+		private LinkedHashMap<Integer, Task> tasks = new LinkedHashMap<Integer, Task>();
+
+		public Worker(long offset, int size) {
+			this.offset = offset;
+			this.size = size;
+			taskRing = new SharedMemoryRing(channel, offset, ForkedProcessWorker.slice(buffer, (int)offset, size));
+			resultRing = new SharedMemoryRing(channel, offset + size, ForkedProcessWorker.slice(buffer, (int)offset + size, size));
+		}
+
+		public void start() {
+			try {
+				taskRing.clear();
+				resultRing.clear();
+			} catch(IOException e) {
+				throw new RuntimeException("Could not clear the buffers of a worker process: "+e.getMessage(), e);
+			}
+			format = new TaskWireFormat();
+
+			ArrayList<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+			for(String option : jvmOptions.trim().split("\\s+"))
+				if(!option.isEmpty())
+					command.add(option);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(ForkedProcessWorker.class.getName());
+			command.add(file.getAbsolutePath());
+			command.add(String.valueOf(offset));
+			command.add(String.valueOf(size - SharedMemoryRing.getSize(0)));
+
+			try {
+				//the standard input is not redirected: the worker exits when it is closed
+				process = new ProcessBuilder(command).redirectOutput(Redirect.INHERIT).redirectError(Redirect.INHERIT).start();
+			} catch(IOException e) {
+				throw new RuntimeException("Could not start a worker process: "+e.getMessage(), e);
+			}
+
+			final Process p = process;
+			Thread waiter = new Thread() {
+				@Override
+				public void run() {
+					try {
+						p.waitFor();
+					} catch(InterruptedException e) {
+						return;
+					}
+					restart(Worker.this);
+				}
+			};
+			waiter.setDaemon(true);
+			waiter.start();
+		}
+
+		public boolean submit() {
+			boolean submitted = false;
+			while(tasks.size() < tasksPerProcess && !pending.isEmpty()) {
+				GenerationalTask t = (GenerationalTask)pending.peekFirst();
+				try {
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					format.writeTask(new DataOutputStream(out), t);
+					if(!taskRing.offer(out.toByteArray())) {
+						//the configuration has to be sent again with the task
+						format.reset();
+						break;
+					}
+				} catch(IOException e) {
+					throw new RuntimeException("Could not submit task "+t.getId()+": "+e.getMessage(), e);
+				}
+				pending.removeFirst();
+				tasks.put(t.getId(), t);
+				submitted = true;
+			}
+			return submitted;
+		}
+
+		public boolean collect() {
+			boolean collected = false;
+			try {
+				byte[] message;
+				while((message = resultRing.poll()) != null) {
+					Result r = (Result)format.read(new DataInputStream(new ByteArrayInputStream(message)));
+					tasks.remove(r.getTaskId());
+					failures.remove(r.getTaskId());
+					results.add(r);
+					collected = true;
+				}
+			} catch(IOException e) {
+				throw new RuntimeException("Could not read a result: "+e.getMessage(), e);
+			}
+			return collected;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package taskexecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Worker process of the {@link ForkedProcessTaskExecutor}. It reads the tasks
+ * from a ring of a memory-mapped file, runs them one at a time and writes the
+ * results to a second ring, both in the {@link TaskWireFormat}.
+ *
+ * Usage: <code>ForkedProcessWorker file offset capacity</code>. The worker
+ * exits when its standard input is closed, which happens when the process that
+ * started it dies.
+ */
+public class ForkedProcessWorker {
+
+	private SharedMemoryRing tasks;
+	private SharedMemoryRing results;
+	private TaskWireFormat format = new TaskWireFormat();
+
+	public ForkedProcessWorker(String file, long offset, int capacity) throws IOException {
+		int size = SharedMemoryRing.getSize(capacity);
+		//the file stays open, the rings lock it
+		FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+		MappedByteBuffer buffer = channel.map(MapMode.READ_WRITE, offset, 2 * size);
+
+		tasks = new SharedMemoryRing(channel, offset, slice(buffer, 0, size));
+		results = new SharedMemoryRing(channel, offset + size, slice(buffer, size, size));
+	}
+
+	static ByteBuffer slice(ByteBuffer buffer, int offset, int size) {
+		ByteBuffer b = buffer.duplicate();
+		b.position(offset);
+		b.limit(offset + size);
+		return b.slice();
+	}
+
+	public void execute() throws IOException {
+		int idle = 0;
+		while(true) {
+			byte[] message = tasks.poll();
+
+			if(message == null) {
+				SharedMemoryRing.idle(idle++);
+				continue;
+			}
+			idle = 0;
+
+			GenerationalTask task = (GenerationalTask)format.read(new DataInputStream(new ByteArrayInputStream(message)));
+			task.run();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			format.writeResult(new DataOutputStream(out), (SimpleFitnessResult)task.getResult());
+			byte[] result = out.toByteArray();
+
+			while(!results.offer(result))
+				SharedMemoryRing.idle(idle++);
+			idle = 0;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Thread parentWatcher = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while(System.in.read() >= 0);
+				} catch(IOException e) {}
+				System.exit(0);
+			}
+		};
+		parentWatcher.setDaemon(true);
+		parentWatcher.start();
+
+		try {
+			new ForkedProcessWorker(args[0], Long.parseLong(args[1]), Integer.parseInt(args[2])).execute();
+		} catch(Throwable e) {
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -1,47 +1,75 @@
 package taskexecutor;
 
-import java.util.LinkedList;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import evolutionaryrobotics.JBotEvolver;
 import result.Result;
 import simulation.util.Arguments;
 import tasks.Task;
 
+/**
+ * Runs the tasks in a fixed pool of threads. The results are returned in the
+ * order in which the tasks finish, not in the order in which they were added,
+ * so a slow task does not hold back the results of the tasks after it.
+ */
 public class ParallelTaskExecutor extends TaskExecutor {
 	
 	private ExecutorService executor;
-	private LinkedList<Future<Result>> list = new LinkedList<Future<Result>>();
+	private CompletionService<Result> completionService;
 	
 	public ParallelTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
 		super(jBotEvolver, args);
 		int numberThreads = args.getArgumentAsIntOrSetDefault("threads", Runtime.getRuntime().availableProcessors());
 		executor = Executors.newFixedThreadPool(numberThreads);
+		completionService = new ExecutorCompletionService<Result>(executor);
 	}
 
 	@Override
 	public void addTask(Task t) {
-		synchronized(list) {
-			Future<Result> submit = executor.submit(new JBotCallable(t));
-			list.add(submit);
-		}
+		completionService.submit(new JBotCallable(t));
 	}
 
 	@Override
-	public synchronized Result getResult() {
-		
-		Result obj = null;
-		Future<Result> callable;
-		
-		synchronized(list) {
-			callable = list.pop();
+	public Result getResult() {
+		try {
+			return getResult(completionService.take());
+		} catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+	
+	@Override
+	public Result getResult(long timeout, TimeUnit unit) {
+		try {
+			Future<Result> future = completionService.poll(timeout, unit);
+			if(future != null)
+				return getResult(future);
+		} catch(InterruptedException e) {
+			e.printStackTrace();
 		}
+		return null;
+	}
+	
+	/**
+	 * @throws RuntimeException if the task failed, so that a failed task is not
+	 * mistaken for a result that is not available yet
+	 */
+	private Result getResult(Future<Result> future) {
 		try {
-			obj = callable.get();
-		} catch(Exception e) {e.printStackTrace();}
-		return obj;
+			return future.get();
+		} catch(InterruptedException e) {
+			e.printStackTrace();
+		} catch(ExecutionException e) {
+			throw new RuntimeException("Task failed", e.getCause());
+		}
+		return null;
 	}
 
 	@Override
@@ -1,6 +1,7 @@
 package taskexecutor;
 
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 import evolutionaryrobotics.JBotEvolver;
 import result.Result;
 import simulation.util.Arguments;
@@ -37,6 +38,23 @@ public class SequentialTaskExecutor extends TaskExecutor {
 			return t.getResult();
 		}
 	}
+	
+	@Override
+	public Result getResult(long timeout, TimeUnit unit) {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (tasksDone) {
+			long remaining;
+			while (tasksDone.isEmpty() && (remaining = end - System.nanoTime()) > 0) {
+				try {
+					TimeUnit.NANOSECONDS.timedWait(tasksDone, remaining);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			Task t = tasksDone.pollFirst();
+			return t == null ? null : t.getResult();
+		}
+	}
 
 	@Override
 	public void run() {
@@ -0,0 +1,181 @@
+package taskexecutor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ring buffer of messages in a region of a memory-mapped file, written by one
+ * process and read by another. The region starts with the positions of the
+ * writer and of the reader, which only grow, followed by the messages: the
+ * length of each message, its bytes, and padding to 8 bytes. A negative length
+ * marks the end of the region, where a message did not fit.
+ *
+ * The accesses to a mapped buffer are plain memory accesses, which Java does
+ * not order between processes, so the positions are only read and written
+ * while holding a lock of the file region where they are. The system calls
+ * that take and release the lock order the accesses of each process, so that
+ * a message is in the memory before the other process sees the position that
+ * includes it, and is not overwritten before the reader has copied it.
+ *
+ * There must be a single writer and a single reader, and each process may use
+ * a ring from only one thread at a time.
+ */
+public class SharedMemoryRing {
+
+	private static final int WRITE = 0;
+	private static final int READ = 8;
+	private static final int DATA = 64;
+
+	private FileChannel channel;
+	private long offset;
+	private ByteBuffer buffer;
+	private int capacity;
+
+	/**
+	 * @param channel the mapped file, which must stay open while the ring is used
+	 * @param offset the position of the region of the ring in the file
+	 * @param buffer the region of the ring, with the size given by
+	 * {@link #getSize(int)}
+	 */
+	public SharedMemoryRing(FileChannel channel, long offset, ByteBuffer buffer) {
+		this.channel = channel;
+		this.offset = offset;
+		this.buffer = buffer.order(ByteOrder.nativeOrder());
+		this.capacity = buffer.capacity() - DATA;
+	}
+
+	/**
+	 * @return the size of the region of a ring that can hold the given number
+	 * of bytes, rounded to a multiple of 8
+	 */
+	public static int getSize(int capacity) {
+		return DATA + align(capacity);
+	}
+
+	/**
+	 * Empties the ring. Neither the writer nor the reader may be using it.
+	 */
+	public void clear() throws IOException {
+		FileLock lock = lock();
+		try {
+			buffer.putLong(WRITE, 0);
+			buffer.putLong(READ, 0);
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Adds a message to the ring.
+	 *
+	 * @return false if the ring is too full for the message
+	 * @throws IOException if the message is larger than the ring
+	 */
+	public boolean offer(byte[] message) throws IOException {
+		int needed = align(4 + message.length);
+
+		if(needed > capacity)
+			throw new IOException("Message of "+message.length+" bytes does not fit in a ring of "+capacity+" bytes");
+
+		long write;
+		long read;
+		FileLock lock = lock();
+		try {
+			write = buffer.getLong(WRITE);
+			read = buffer.getLong(READ);
+		} finally {
+			lock.release();
+		}
+
+		int position = (int)(write % capacity);
+		int padding = position + needed > capacity ? capacity - position : 0;
+
+		if(write + padding + needed - read > capacity)
+			return false;
+
+		if(padding > 0) {
+			buffer.putInt(DATA + position, -1);
+			write+= padding;
+			position = 0;
+		}
+
+		buffer.putInt(DATA + position, message.length);
+		ByteBuffer b = buffer.duplicate();
+		b.position(DATA + position + 4);
+		b.put(message);
+
+		setPosition(WRITE, write + needed);
+		return true;
+	}
+
+	/**
+	 * @return the next message, or null if the ring is empty
+	 */
+	public byte[] poll() throws IOException {
+		long read;
+		long write;
+		FileLock lock = lock();
+		try {
+			read = buffer.getLong(READ);
+			write = buffer.getLong(WRITE);
+		} finally {
+			lock.release();
+		}
+
+		if(read == write)
+			return null;
+
+		int position = (int)(read % capacity);
+		int length = buffer.getInt(DATA + position);
+
+		if(length < 0) {
+			read+= capacity - position;
+			position = 0;
+			length = buffer.getInt(DATA);
+		}
+
+		byte[] message = new byte[length];
+		ByteBuffer b = buffer.duplicate();
+		b.position(DATA + position + 4);
+		b.get(message);
+
+		setPosition(READ, read + align(4 + length));
+		return message;
+	}
+
+	/**
+	 * Waits a little before polling a ring again: it spins at first, then
+	 * yields, then sleeps up to a millisecond.
+	 *
+	 * @param idle the number of consecutive polls that found nothing
+	 */
+	public static void idle(int idle) {
+		if(idle < 100)
+			return;
+		if(idle < 200)
+			Thread.yield();
+		else
+			LockSupport.parkNanos(Math.min(1000000, 1000L << Math.min(10, (idle - 200) / 10)));
+	}
+
+	private static int align(int size) {
+		return (size + 7) & ~7;
+	}
+
+	private FileLock lock() throws IOException {
+		return channel.lock(offset, DATA, false);
+	}
+
+	private void setPosition(int index, long position) throws IOException {
+		FileLock lock = lock();
+		try {
+			buffer.putLong(index, position);
+		} finally {
+			lock.release();
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package taskexecutor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import evolutionaryrobotics.JBotEvolver;
+import result.Result;
+import simulation.util.Arguments;
+import simulation.util.ArgumentsAnnotation;
+import taskexecutor.tasks.GenerationalTask;
+import tasks.Task;
+
+/**
+ * Submits the tasks to a {@link TaskCoordinator}, which leases them to the
+ * {@link SocketWorker}s that are connected to it. With
+ * <code>coordinator=1</code> the coordinator is started in this process, so
+ * that only the workers have to be started, for instance on localhost. The
+ * secret shared with the coordinator is the <code>secret</code> argument, or
+ * else the <code>JBOT_TASK_SECRET</code> environment variable.
+ *
+ * As in the {@link ConillonTaskExecutor}, the tasks are kept in a buffer until
+ * their results arrive. If the connection to the coordinator fails, the
+ * executor connects again and submits the tasks in the buffer again. Only
+ * {@link GenerationalTask}s can be run.
+ */
+public class SocketTaskExecutor extends TaskExecutor {
+
+	@ArgumentsAnnotation(name="server", defaultValue="localhost")
+	private String serverName = "localhost";
+	@ArgumentsAnnotation(name="port", defaultValue="7070")
+	private int port = TaskCoordinator.DEFAULT_PORT;
+	@ArgumentsAnnotation(name="coordinator", values={"0","1"}, defaultValue="0", help="Set to 1 to start the coordinator in this process, listening on the given port")
+	private boolean startCoordinator = false;
+	@ArgumentsAnnotation(name="timeout", defaultValue="10000", help="Time in ms after which a worker that did not send a heartbeat is considered dead, if the coordinator is started in this process")
+	private long timeout = TaskCoordinator.DEFAULT_TIMEOUT;
+	@ArgumentsAnnotation(name="bind", defaultValue="localhost", help="Address on which the coordinator started in this process listens. Listening on other addresses than the loopback requires a secret.")
+	private String bindAddress = "localhost";
+	@ArgumentsAnnotation(name="secret", defaultValue="", help="Secret shared with the coordinator and the workers. The JBOT_TASK_SECRET environment variable is used if it is not given.")
+	private String secret = "";
+
+	private TaskCoordinator coordinator;
+	private Socket socket;
+	private DataOutputStream out;
+	private TaskWireFormat format;
+	private boolean connected = false;
+	private volatile boolean stopped = false;
+
+	private LinkedHashMap<Integer, Task> taskBuffer = new LinkedHashMap<Integer, Task>();
+	private LinkedBlockingQueue<Result> results = new LinkedBlockingQueue<Result>();
+
+	public SocketTaskExecutor(JBotEvolver jBotEvolver, Arguments args) {
+		super(jBotEvolver, args);
+		serverName = args.getArgumentAsStringOrSetDefault("server", serverName);
+		port = args.getArgumentAsIntOrSetDefault("port", port);
+		startCoordinator = args.getArgumentAsIntOrSetDefault("coordinator", 0) == 1;
+		timeout = args.getArgumentAsIntOrSetDefault("timeout", (int)timeout);
+		bindAddress = args.getArgumentAsStringOrSetDefault("bind", bindAddress);
+		//the secret from the environment is not added to the arguments, which are saved with the results
+		secret = args.getArgumentIsDefined("secret") ? args.getArgumentAsString("secret") : TaskCoordinator.getDefaultSecret();
+
+		if(startCoordinator) {
+			try {
+				coordinator = new TaskCoordinator(InetAddress.getByName(bindAddress), port, timeout, secret);
+				coordinator.start();
+			} catch(IOException e) {
+				throw new RuntimeException("Could not start the coordinator on port "+port+": "+e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Connects to the coordinator, trying again every 5 seconds, and submits
+	 * the tasks in the buffer again.
+	 */
+	private synchronized void connect() {
+		while(!connected && !stopped) {
+			try {
+				if(socket != null)
+					socket.close();
+
+				socket = new Socket(serverName, port);
+				socket.setTcpNoDelay(true);
+				out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+				format = new TaskWireFormat();
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				TaskCoordinator.hello(in, out, TaskCoordinator.HELLO_CLIENT, TaskCoordinator.getKey(secret));
+
+				new ResultReader(socket, in).start();
+				connected = true;
+
+				for(Task t : new ArrayList<Task>(taskBuffer.values()))
+					format.writeTask(out, (GenerationalTask)t);
+
+			} catch(IOException e) {
+				System.err.println("Could not connect to the coordinator at "+serverName+":"+port+": "+e);
+				connected = false;
+				try {
+					Thread.sleep(5000);
+				} catch(InterruptedException e1) {
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void addTask(Task t) {
+		if(!(t instanceof GenerationalTask))
+			throw new RuntimeException("SocketTaskExecutor can only run GenerationalTasks: "+t.getClass().getName());
+
+		//the task is added to the buffer first, so that it is submitted
+		//again if the connection fails
+		taskBuffer.put(t.getId(), t);
+
+		if(!connected) {
+			connect();
+			return;
+		}
+
+		try {
+			format.writeTask(out, (GenerationalTask)t);
+		} catch(IOException e) {
+			connectionLost(socket);
+		}
+	}
+
+	private synchronized void connectionLost(Socket s) {
+		//the reader and the writer can both notice that the same connection failed
+		if(s != socket || stopped)
+			return;
+		connected = false;
+		connect();
+	}
+
+	@Override
+	public Result getResult() {
+		Result r = null;
+		while(r == null && !stopped)
+			r = getResult(1, TimeUnit.SECONDS);
+		return r;
+	}
+
+	@Override
+	public Result getResult(long timeout, TimeUnit unit) {
+		try {
+			Result r = results.poll(timeout, unit);
+			if(r != null && r.getException() != null)
+				throw new RuntimeException("Task "+r.getTaskId()+" failed in a worker", r.getException());
+			return r;
+		} catch(InterruptedException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	@Override
+	public void stopTasks() {
+		stopped = true;
+		synchronized(this) {
+			try {
+				if(socket != null)
+					socket.close();
+			} catch(IOException e) {}
+		}
+		if(coordinator != null)
+			coordinator.shutdown();
+	}
+
+	private class ResultReader extends Thread {
+
+		private Socket socket;
+		private DataInputStream in;
+
+		public ResultReader(Socket socket, DataInputStream in) {
+			this.socket = socket;
+			this.in = in;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			TaskWireFormat reader = new TaskWireFormat();
+			try {
+				while(true) {
+					Result r = (Result)reader.read(in);
+					synchronized(SocketTaskExecutor.this) {
+						//results of tasks that were submitted twice are only returned once
+						if(taskBuffer.remove(r.getTaskId()) != null)
+							results.add(r);
+					}
+				}
+			} catch(IOException e) {
+				if(!stopped) {
+					System.err.println("Connection to the coordinator lost: "+e);
+					connectionLost(socket);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package taskexecutor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Worker daemon of the {@link TaskCoordinator}. It leases as many tasks as it
+ * has threads, and one more task each time it returns a result, and sends a
+ * heartbeat periodically. If the connection fails, the worker connects again.
+ *
+ * Usage: <code>SocketWorker host [port] [threads] [heartbeat in ms]</code>,
+ * with the secret of the coordinator in the <code>JBOT_TASK_SECRET</code>
+ * environment variable.
+ */
+public class SocketWorker {
+
+	private String host;
+	private int port;
+	private int threads;
+	private long heartbeat;
+	private byte[] key;
+	private ExecutorService executor;
+
+	public SocketWorker(String host, int port, int threads, long heartbeat, String secret) {
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+		this.heartbeat = heartbeat;
+		this.key = TaskCoordinator.getKey(secret);
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	public void execute() {
+		while(true) {
+			try {
+				new Connection().execute();
+			} catch(IOException e) {
+				System.err.println("Connection to the coordinator at "+host+":"+port+" failed: "+e);
+			}
+			try {
+				Thread.sleep(5000);
+			} catch(InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	private class Connection {
+
+		private Socket socket;
+		private DataOutputStream out;
+		private TaskWireFormat format = new TaskWireFormat();
+		private volatile boolean closed = false;
+
+		public void execute() throws IOException {
+			socket = new Socket(host, port);
+			socket.setTcpNoDelay(true);
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+			try {
+				TaskCoordinator.hello(in, out, TaskCoordinator.HELLO_WORKER, key);
+				lease(threads);
+
+				Thread heartbeats = new Thread() {
+					@Override
+					public void run() {
+						while(!closed) {
+							try {
+								Thread.sleep(heartbeat);
+								send(TaskCoordinator.HEARTBEAT, new byte[0]);
+							} catch(Exception e) {
+								return;
+							}
+						}
+					}
+				};
+				heartbeats.setDaemon(true);
+				heartbeats.start();
+
+				while(true) {
+					final GenerationalTask task = (GenerationalTask)format.read(in);
+					executor.submit(new Runnable() {
+						@Override
+						public void run() {
+							//the task was leased again when the connection failed
+							if(closed)
+								return;
+
+							SimpleFitnessResult result;
+							try {
+								task.run();
+								result = (SimpleFitnessResult)task.getResult();
+							} catch(Throwable t) {
+								//errors are returned too, otherwise the task would stay leased while the heartbeats go on
+								t.printStackTrace();
+								result = (SimpleFitnessResult)task.getResult();
+								result.setException(t instanceof RuntimeException ? (RuntimeException)t : new RuntimeException(t));
+							}
+							try {
+								synchronized(out) {
+									format.writeResult(out, result);
+								}
+								lease(1);
+							} catch(IOException e) {
+								//the coordinator leases the task again
+							}
+						}
+					});
+				}
+			} finally {
+				closed = true;
+				socket.close();
+			}
+		}
+
+		private void lease(int n) throws IOException {
+			send(TaskCoordinator.LEASE, ByteBuffer.allocate(4).putInt(n).array());
+		}
+
+		private void send(byte type, byte[] body) throws IOException {
+			synchronized(out) {
+				TaskWireFormat.writeMessage(out, type, body);
+			}
+		}
+	}
+
+	public static void main(String[] args) {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : TaskCoordinator.DEFAULT_PORT;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long heartbeat = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+
+		new SocketWorker(host, port, threads, heartbeat, TaskCoordinator.getDefaultSecret()).execute();
+	}
+}
@@ -0,0 +1,450 @@
+package taskexecutor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import taskexecutor.TaskWireFormat.Message;
+
+/**
+ * Coordinator of the {@link SocketTaskExecutor}s (the clients) and of the
+ * {@link SocketWorker}s, which connect to it over TCP. The clients submit
+ * tasks in the {@link TaskWireFormat}, and the workers lease them in batches:
+ * a worker asks for as many tasks as it has room for, and asks for more as it
+ * returns the results. The coordinator forwards each result to the client of
+ * the task.
+ *
+ * The workers send heartbeats. A worker that is silent for longer than the
+ * timeout is disconnected, and the tasks it leased are leased again to the
+ * other workers, as are the tasks of a worker whose connection fails.
+ *
+ * The coordinator does not decode the tasks: it only reads the headers of the
+ * messages, and replaces the ids of the tasks by ids of its own, so that the
+ * tasks of different clients can have the same id. The messages are sent by a
+ * writer thread of each connection, so a peer that does not read does not
+ * hold back the others.
+ *
+ * The workers instantiate the classes named in the configurations, so every
+ * connection starts with a challenge-response handshake: the coordinator and
+ * the peer prove to each other that they know the shared secret, which is
+ * never sent. The coordinator listens only on the loopback interface unless
+ * another address is given, which requires a secret.
+ *
+ * Usage: <code>TaskCoordinator [port] [timeout in ms] [bind address]</code>,
+ * with the secret in the <code>JBOT_TASK_SECRET</code> environment variable.
+ */
+public class TaskCoordinator extends Thread {
+
+	public static final byte HELLO_CLIENT = 16;
+	public static final byte HELLO_WORKER = 17;
+	public static final byte LEASE = 18;
+	public static final byte HEARTBEAT = 19;
+	public static final byte CHALLENGE = 20;
+	public static final byte WELCOME = 21;
+
+	public static final int DEFAULT_PORT = 7070;
+	public static final long DEFAULT_TIMEOUT = 10000;
+	public static final String SECRET_VARIABLE = "JBOT_TASK_SECRET";
+
+	private static final int NONCE_LENGTH = 16;
+	private static final int MAC_LENGTH = 32;
+	private static final SecureRandom nonces = new SecureRandom();
+
+	private ServerSocket serverSocket;
+	private long timeout;
+	private byte[] key;
+	private LinkedList<LeasedTask> queue = new LinkedList<LeasedTask>();
+	private HashMap<Integer, LeasedTask> leased = new HashMap<Integer, LeasedTask>();
+	private HashMap<Long, byte[]> configurations = new HashMap<Long, byte[]>();
+	private ArrayList<Connection> connections = new ArrayList<Connection>();
+	private int nextId = 0;
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param bindAddress the address to listen on, or null for the loopback
+	 * address
+	 * @param secret the secret shared with the clients and the workers, which
+	 * can only be empty when listening on the loopback address
+	 */
+	public TaskCoordinator(InetAddress bindAddress, int port, long timeout, String secret) throws IOException {
+		super("TaskCoordinator");
+		if(secret == null)
+			secret = "";
+		if(bindAddress == null)
+			bindAddress = InetAddress.getLoopbackAddress();
+		if(!bindAddress.isLoopbackAddress() && secret.isEmpty())
+			throw new IllegalArgumentException("A secret is needed to listen on "+bindAddress+", set "+SECRET_VARIABLE);
+		this.serverSocket = new ServerSocket(port, 50, bindAddress);
+		this.timeout = timeout;
+		this.key = getKey(secret);
+		setDaemon(true);
+	}
+
+	/**
+	 * @return the secret in the environment variable, or an empty secret
+	 */
+	public static String getDefaultSecret() {
+		String secret = System.getenv(SECRET_VARIABLE);
+		return secret == null ? "" : secret;
+	}
+
+	static byte[] getKey(String secret) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+		} catch(GeneralSecurityException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] nonce() {
+		byte[] nonce = new byte[NONCE_LENGTH];
+		nonces.nextBytes(nonce);
+		return nonce;
+	}
+
+	private static byte[] mac(byte[] key, byte type, byte[] first, byte[] second) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(key, "HmacSHA256"));
+			mac.update(type);
+			mac.update(first);
+			mac.update(second);
+			return mac.doFinal();
+		} catch(GeneralSecurityException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Handshake of a client or a worker: answers the challenge of the
+	 * coordinator and checks that the coordinator knows the secret too.
+	 *
+	 * @param type {@link #HELLO_CLIENT} or {@link #HELLO_WORKER}
+	 */
+	static void hello(DataInputStream in, DataOutputStream out, byte type, byte[] key) throws IOException {
+		Message challenge = TaskWireFormat.readMessage(in, NONCE_LENGTH);
+		if(challenge.type != CHALLENGE || challenge.body.length != NONCE_LENGTH)
+			throw new IOException("Not a task coordinator");
+
+		byte[] nonce = nonce();
+		ByteBuffer body = ByteBuffer.allocate(NONCE_LENGTH + MAC_LENGTH);
+		body.put(nonce).put(mac(key, type, challenge.body, nonce));
+		TaskWireFormat.writeMessage(out, type, body.array());
+
+		Message welcome = TaskWireFormat.readMessage(in, MAC_LENGTH);
+		if(welcome.type != WELCOME || !MessageDigest.isEqual(welcome.body, mac(key, WELCOME, nonce, challenge.body)))
+			throw new IOException("The coordinator does not know the secret");
+	}
+
+	@Override
+	public void run() {
+		Thread reaper = new Thread() {
+			@Override
+			public void run() {
+				while(!stopped) {
+					try {
+						Thread.sleep(Math.max(1, timeout / 4));
+					} catch(InterruptedException e) {
+						return;
+					}
+					disconnectSilentWorkers();
+				}
+			}
+		};
+		reaper.setDaemon(true);
+		reaper.start();
+
+		while(!stopped) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				Connection c = new Connection(socket);
+				synchronized(this) {
+					connections.add(c);
+				}
+				c.start();
+			} catch(IOException e) {
+				if(!stopped)
+					e.printStackTrace();
+			}
+		}
+	}
+
+	public void shutdown() {
+		stopped = true;
+		try {
+			serverSocket.close();
+		} catch(IOException e) {}
+		synchronized(this) {
+			for(Connection c : connections)
+				c.close();
+		}
+	}
+
+	/**
+	 * @return the number of tasks that are waiting for a worker
+	 */
+	public synchronized int getNumberOfQueuedTasks() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of tasks that were leased to a worker and whose
+	 * result was not received yet
+	 */
+	public synchronized int getNumberOfLeasedTasks() {
+		return leased.size();
+	}
+
+	private synchronized void disconnectSilentWorkers() {
+		long now = System.currentTimeMillis();
+		for(Connection c : connections) {
+			if(c.worker && !c.closed && now - c.lastHeard > timeout) {
+				System.err.println("Worker "+c.socket.getRemoteSocketAddress()+" did not send a heartbeat for "+(now - c.lastHeard)+" ms, leasing its "+c.leases.size()+" tasks again");
+				//the thread of the connection releases the tasks when its socket is closed
+				c.close();
+			}
+		}
+	}
+
+	private synchronized void addConfiguration(byte[] body) {
+		configurations.put(ByteBuffer.wrap(body).getLong(0), body);
+	}
+
+	private synchronized void addTask(Connection client, byte[] body) {
+		LeasedTask t = new LeasedTask();
+		t.client = client;
+		t.hash = ByteBuffer.wrap(body).getLong(0);
+		t.taskId = ByteBuffer.wrap(body).getInt(8);
+		t.body = body;
+		queue.add(t);
+		dispatch();
+	}
+
+	private synchronized void addLeases(Connection worker, int n) {
+		worker.credits+= n;
+		dispatch();
+	}
+
+	private synchronized void addResult(Connection worker, byte[] body) {
+		int id = ByteBuffer.wrap(body).getInt(0);
+		LeasedTask t = leased.get(id);
+
+		//a result of a task that was leased again, or whose client is gone
+		if(t == null || t.worker != worker)
+			return;
+
+		leased.remove(id);
+		worker.leases.remove(id);
+
+		if(!t.client.closed) {
+			ByteBuffer.wrap(body).putInt(0, t.taskId);
+			t.client.send(TaskWireFormat.FITNESS_RESULT, body);
+		}
+	}
+
+	/**
+	 * Leases the queued tasks to the workers that asked for them.
+	 */
+	private synchronized void dispatch() {
+		for(Connection w : connections) {
+			while(w.worker && !w.closed && w.credits > 0 && !queue.isEmpty()) {
+				LeasedTask t = queue.removeFirst();
+
+				if(t.client.closed)
+					continue;
+
+				t.id = nextId++;
+				t.worker = w;
+				ByteBuffer.wrap(t.body).putInt(8, t.id);
+				leased.put(t.id, t);
+				w.leases.put(t.id, t);
+				w.credits--;
+
+				if(w.configurations.add(t.hash))
+					w.send(TaskWireFormat.CONFIGURATION, configurations.get(t.hash));
+				w.send(TaskWireFormat.GENERATIONAL_TASK, t.body);
+			}
+		}
+	}
+
+	private synchronized void disconnected(Connection c) {
+		c.close();
+		connections.remove(c);
+
+		if(c.worker) {
+			ArrayList<LeasedTask> lost = new ArrayList<LeasedTask>(c.leases.values());
+			for(LeasedTask t : lost)
+				leased.remove(t.id);
+			queue.addAll(0, lost);
+		} else {
+			Iterator<LeasedTask> i = queue.iterator();
+			while(i.hasNext())
+				if(i.next().client == c)
+					i.remove();
+		}
+		dispatch();
+	}
+
+	private static class LeasedTask {
+		private Connection client;
+		private Connection worker;
+		private int taskId;
+		private int id;
+		private long hash;
+		private byte[] body;
+	}
+
+	private class Connection extends Thread {
+
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+		private LinkedBlockingQueue<byte[]> outbox = new LinkedBlockingQueue<byte[]>();
+		private Thread writer;
+		private boolean worker = false;
+		private volatile boolean closed = false;
+		private volatile long lastHeard = System.currentTimeMillis();
+		private int credits = 0;
+		private HashSet<Long> configurations = new HashSet<Long>();
+		private HashMap<Integer, LeasedTask> leases = new HashMap<Integer, LeasedTask>();
+
+		public Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			setDaemon(true);
+
+			writer = new Thread("TaskCoordinator writer") {
+				@Override
+				public void run() {
+					try {
+						while(!closed) {
+							byte[] message = outbox.take();
+							if(closed)
+								break;
+							out.write(message);
+							if(outbox.isEmpty())
+								out.flush();
+						}
+					} catch(InterruptedException e) {
+						//closed
+					} catch(IOException e) {
+						//the thread of the connection releases the tasks when its socket is closed
+					} finally {
+						Connection.this.close();
+					}
+				}
+			};
+			writer.setDaemon(true);
+		}
+
+		/**
+		 * Challenges the peer to prove that it knows the secret, and then
+		 * proves it to the peer.
+		 */
+		private void handshake() throws IOException {
+			socket.setSoTimeout((int)Math.min(Integer.MAX_VALUE, Math.max(1, timeout)));
+
+			byte[] challenge = nonce();
+			TaskWireFormat.writeMessage(out, CHALLENGE, challenge);
+
+			Message hello = TaskWireFormat.readMessage(in, NONCE_LENGTH + MAC_LENGTH);
+			if(hello.type != HELLO_WORKER && hello.type != HELLO_CLIENT)
+				throw new IOException("Unknown type of connection: "+hello.type);
+			if(hello.body.length != NONCE_LENGTH + MAC_LENGTH)
+				throw new IOException("Authentication failed");
+
+			ByteBuffer body = ByteBuffer.wrap(hello.body);
+			byte[] nonce = new byte[NONCE_LENGTH];
+			byte[] response = new byte[MAC_LENGTH];
+			body.get(nonce).get(response);
+
+			if(!MessageDigest.isEqual(response, mac(key, hello.type, challenge, nonce)))
+				throw new IOException("Authentication failed");
+
+			TaskWireFormat.writeMessage(out, WELCOME, mac(key, WELCOME, nonce, challenge));
+			socket.setSoTimeout(0);
+			worker = hello.type == HELLO_WORKER;
+		}
+
+		@Override
+		public void run() {
+			try {
+				handshake();
+				writer.start();
+
+				while(!closed) {
+					Message m = TaskWireFormat.readMessage(in);
+					lastHeard = System.currentTimeMillis();
+
+					if(worker && m.type == LEASE)
+						addLeases(this, ByteBuffer.wrap(m.body).getInt(0));
+					else if(worker && m.type == TaskWireFormat.FITNESS_RESULT)
+						addResult(this, m.body);
+					else if(!worker && m.type == TaskWireFormat.CONFIGURATION)
+						addConfiguration(m.body);
+					else if(!worker && m.type == TaskWireFormat.GENERATIONAL_TASK)
+						addTask(this, m.body);
+					else if(m.type != HEARTBEAT)
+						throw new IOException("Unexpected message: "+m.type);
+				}
+			} catch(IOException e) {
+				if(!closed && !stopped)
+					System.err.println("Connection to "+socket.getRemoteSocketAddress()+" lost: "+e);
+			} catch(RuntimeException e) {
+				System.err.println("Invalid message from "+socket.getRemoteSocketAddress()+": "+e);
+			} finally {
+				disconnected(this);
+			}
+		}
+
+		/**
+		 * Queues a message for the writer thread, which closes the connection
+		 * if it fails. The tasks leased to a worker are then released by the
+		 * thread of the connection.
+		 */
+		public void send(byte type, byte[] body) {
+			if(!closed)
+				outbox.add(TaskWireFormat.toMessage(type, body));
+		}
+
+		public void close() {
+			closed = true;
+			//wakes up the writer
+			outbox.add(new byte[0]);
+			try {
+				socket.close();
+			} catch(IOException e) {}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		long timeout = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_TIMEOUT;
+		InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2]) : null;
+
+		TaskCoordinator coordinator = new TaskCoordinator(bindAddress, port, timeout, getDefaultSecret());
+		System.out.println("Coordinator listening on "+coordinator.serverSocket.getLocalSocketAddress());
+		coordinator.run();
+	}
+}
@@ -1,6 +1,7 @@
 package taskexecutor;
 
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 import evolutionaryrobotics.JBotEvolver;
 import result.Result;
 import simulation.util.Arguments;
@@ -16,6 +17,15 @@ public abstract class TaskExecutor extends Thread {
 
 	public abstract Result getResult();
 	
+	/**
+	 * Returns the next available result, waiting at most the given time, or
+	 * null if no result became available. Executors that cannot wait with a
+	 * timeout block until a result is available.
+	 */
+	public Result getResult(long timeout, TimeUnit unit) {
+		return getResult();
+	}
+	
 	public void setTotalNumberOfTasks(int nTasks) {}
 	
 	public void setDescription(String desc) {}
@@ -0,0 +1,310 @@
+package taskexecutor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import evolutionaryrobotics.JBotEvolver;
+import simulation.util.Arguments;
+import taskexecutor.results.SimpleFitnessResult;
+import taskexecutor.tasks.GenerationalTask;
+
+/**
+ * Versioned binary format of the {@link GenerationalTask}s and their
+ * {@link SimpleFitnessResult}s, for the task executors that send them to
+ * another process. Instead of serializing the whole {@link JBotEvolver} of
+ * each task, the configuration (the arguments and the random seed) is sent
+ * once in a configuration message, and the tasks refer to it by its hash: a
+ * task only carries the alleles of the chromosome, the seed and the number of
+ * samples. The reader creates a new {@link JBotEvolver} for each task, which
+ * runs the <code>--init</code> executables again, so configurations with
+ * serializable objects cannot be written.
+ *
+ * Every message starts with a header with a magic number, the version of the
+ * format, the type of the message and the length of its body. The writer
+ * remembers the configurations that were already written, and the reader the
+ * configurations that were already read, so each side of a connection should
+ * use its own instance.
+ */
+public class TaskWireFormat {
+
+	public static final int MAGIC = 0x4A425746;
+	public static final int VERSION = 3;
+
+	public static final byte CONFIGURATION = 1;
+	public static final byte GENERATIONAL_TASK = 2;
+	public static final byte FITNESS_RESULT = 3;
+
+	/**
+	 * Longest body of a message that is read, so that a corrupt or hostile
+	 * header cannot make the reader allocate an arbitrary amount of memory.
+	 */
+	public static final int MAX_MESSAGE_LENGTH = 64 << 20;
+
+	private HashMap<Long, Configuration> configurations = new HashMap<Long, Configuration>();
+	private HashMap<String, Long> hashes = new HashMap<String, Long>();
+
+	/**
+	 * Writes a task, preceded by its configuration if the configuration was
+	 * not written by this instance before.
+	 */
+	public synchronized void writeTask(DataOutputStream out, GenerationalTask task) throws IOException {
+		JBotEvolver jBotEvolver = task.getJBotEvolver();
+		if(!jBotEvolver.getSerializableObjectHashMap().isEmpty())
+			throw new IOException("Cannot write the serializable objects of the configuration");
+		long hash = getConfigurationHash(jBotEvolver.getArguments(), jBotEvolver.getRandomSeed(), out);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(body);
+		data.writeLong(hash);
+		task.write(data);
+		writeMessage(out, GENERATIONAL_TASK, body);
+	}
+
+	public void writeResult(DataOutputStream out, SimpleFitnessResult result) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		result.write(new DataOutputStream(body));
+		writeMessage(out, FITNESS_RESULT, body);
+	}
+
+	/**
+	 * Reads the next task or result. The configuration messages are kept and
+	 * the next message is read, so the result is either a
+	 * {@link GenerationalTask}, with its own copy of the configuration, or a
+	 * {@link SimpleFitnessResult}.
+	 */
+	public synchronized Object read(DataInputStream in) throws IOException {
+		while(true) {
+			Message message = readMessage(in);
+			DataInputStream data = new DataInputStream(new ByteArrayInputStream(message.body));
+
+			switch(message.type) {
+				case CONFIGURATION:
+					Configuration configuration = Configuration.read(data);
+					configurations.put(configuration.hash, configuration);
+					break;
+				case GENERATIONAL_TASK:
+					long hash = data.readLong();
+					Configuration c = configurations.get(hash);
+					if(c == null)
+						throw new IOException("Task refers to an unknown configuration: "+Long.toHexString(hash));
+					return GenerationalTask.read(data, new JBotEvolver(c.getArgumentsCopy(), c.randomSeed));
+				case FITNESS_RESULT:
+					return SimpleFitnessResult.read(data);
+				default:
+					throw new IOException("Unknown type of task message: "+message.type);
+			}
+		}
+	}
+
+	/**
+	 * Forgets the configurations that were written, so that they are written
+	 * again, for instance after reconnecting to a worker.
+	 */
+	public synchronized void reset() {
+		configurations.clear();
+		hashes.clear();
+	}
+
+	/**
+	 * Encodes a task in a single array, with its configuration, so that the
+	 * array can be decoded with a new instance.
+	 */
+	public static byte[] encode(GenerationalTask task) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new TaskWireFormat().writeTask(new DataOutputStream(bytes), task);
+		return bytes.toByteArray();
+	}
+
+	public static GenerationalTask decode(byte[] bytes) throws IOException {
+		return (GenerationalTask)new TaskWireFormat().read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	private long getConfigurationHash(HashMap<String, Arguments> arguments, long randomSeed, DataOutputStream out) throws IOException {
+		TreeMap<String, String> sorted = new TreeMap<String, String>();
+		for(String name : arguments.keySet()) {
+			Arguments args = arguments.get(name);
+			sorted.put(name, args == null ? "" : args.getCompleteArgumentString());
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(randomSeed);
+		for(String name : sorted.keySet())
+			sb.append('\n').append(name).append(' ').append(sorted.get(name));
+		String text = sb.toString();
+
+		Long hash = hashes.get(text);
+		if(hash != null)
+			return hash;
+
+		Configuration configuration = new Configuration(hash(text), randomSeed, sorted);
+		hashes.put(text, configuration.hash);
+		configurations.put(configuration.hash, configuration);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		configuration.write(new DataOutputStream(body));
+		writeMessage(out, CONFIGURATION, body);
+
+		return configuration.hash;
+	}
+
+	private static long hash(String text) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for(int i = 0 ; i < 8 ; i++)
+				hash = (hash << 8) | (digest[i] & 0xff);
+			return hash;
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writeMessage(DataOutputStream out, byte type, ByteArrayOutputStream body) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(type);
+		out.writeInt(body.size());
+		body.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Writes a message with the given type and body, which can be a message
+	 * that was read with {@link #readMessage(DataInputStream)} or a message of
+	 * a protocol that uses the same header, such as the one of the
+	 * {@link TaskCoordinator}.
+	 */
+	public static void writeMessage(DataOutputStream out, byte type, byte[] body) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(type);
+		out.writeInt(body.length);
+		out.write(body);
+		out.flush();
+	}
+
+	/**
+	 * @return the header and the body of a message, as written by
+	 * {@link #writeMessage(DataOutputStream, byte, byte[])}
+	 */
+	public static byte[] toMessage(byte type, byte[] body) {
+		ByteBuffer message = ByteBuffer.allocate(10 + body.length);
+		message.putInt(MAGIC).put((byte)VERSION).put(type).putInt(body.length).put(body);
+		return message.array();
+	}
+
+	/**
+	 * Reads the header and the body of the next message, without decoding the
+	 * body.
+	 */
+	public static Message readMessage(DataInputStream in) throws IOException {
+		return readMessage(in, MAX_MESSAGE_LENGTH);
+	}
+
+	/**
+	 * @param maxLength longest body that is accepted
+	 */
+	public static Message readMessage(DataInputStream in, int maxLength) throws IOException {
+		int magic = in.readInt();
+		if(magic != MAGIC)
+			throw new IOException("Not a task message: "+Integer.toHexString(magic));
+
+		int version = in.readUnsignedByte();
+		if(version != VERSION)
+			throw new IOException("Unsupported version of the task format: "+version);
+
+		Message message = new Message();
+		message.type = in.readByte();
+		int length = in.readInt();
+		if(length < 0 || length > maxLength)
+			throw new IOException("Invalid length of a message of type "+message.type+": "+length);
+		message.body = new byte[length];
+		in.readFully(message.body);
+		return message;
+	}
+
+	/**
+	 * Reads the number of elements of an array in the body of a message,
+	 * checking that the rest of the body is long enough for them.
+	 *
+	 * @param in the body of a message, read from an array
+	 */
+	public static int readLength(DataInputStream in, int bytesPerElement) throws IOException {
+		int length = in.readInt();
+		if(length < 0 || (long)length * bytesPerElement > in.available())
+			throw new IOException("Invalid length of an array: "+length);
+		return length;
+	}
+
+	/**
+	 * A message that was not decoded. The body of a configuration and of a
+	 * task starts with the hash of the configuration, followed in a task by
+	 * the id of the task. The body of a result starts with the id of the task.
+	 */
+	public static class Message {
+		public byte type;
+		public byte[] body;
+	}
+
+	private static class Configuration {
+
+		private long hash;
+		private long randomSeed;
+		private TreeMap<String, String> arguments;
+
+		public Configuration(long hash, long randomSeed, TreeMap<String, String> arguments) {
+			this.hash = hash;
+			this.randomSeed = randomSeed;
+			this.arguments = arguments;
+		}
+
+		public HashMap<String, Arguments> getArgumentsCopy() {
+			HashMap<String, Arguments> copy = new HashMap<String, Arguments>();
+			for(String name : arguments.keySet())
+				copy.put(name, new Arguments(arguments.get(name), false));
+			return copy;
+		}
+
+		public void write(DataOutputStream out) throws IOException {
+			out.writeLong(hash);
+			out.writeLong(randomSeed);
+			out.writeInt(arguments.size());
+			for(String name : arguments.keySet()) {
+				writeString(out, name);
+				writeString(out, arguments.get(name));
+			}
+		}
+
+		public static Configuration read(DataInputStream in) throws IOException {
+			long hash = in.readLong();
+			long randomSeed = in.readLong();
+			int n = in.readInt();
+			TreeMap<String, String> arguments = new TreeMap<String, String>();
+			for(int i = 0 ; i < n ; i++)
+				arguments.put(readString(in), readString(in));
+			return new Configuration(hash, randomSeed, arguments);
+		}
+
+		//the arguments can be longer than the 64KB of writeUTF
+		private static void writeString(DataOutputStream out, String s) throws IOException {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		private static String readString(DataInputStream in) throws IOException {
+			byte[] bytes = new byte[readLength(in, 1)];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
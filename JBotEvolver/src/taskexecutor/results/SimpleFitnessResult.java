@@ -1,10 +1,18 @@
 package taskexecutor.results;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import result.Result;
 
 public class SimpleFitnessResult extends Result {
 	private int chromosomeId;
 	private double fitness = 0;
+	private int cacheHits = 0;
+	private int cacheMisses = 0;
+	private boolean aborted = false;
+	private double[] samplesFitness;
 	
 
 	public SimpleFitnessResult(int taskId, int chromosomeId, double fitness) {
@@ -21,5 +29,79 @@ public class SimpleFitnessResult extends Result {
 		return chromosomeId;
 	}
 	
+	public void setCacheStatistics(int cacheHits, int cacheMisses) {
+		this.cacheHits = cacheHits;
+		this.cacheMisses = cacheMisses;
+	}
+	
+	public int getCacheHits() {
+		return cacheHits;
+	}
+	
+	public int getCacheMisses() {
+		return cacheMisses;
+	}
+	
+	/**
+	 * @param aborted true if the evaluation was aborted by racing, in which
+	 * case the fitness is only an upper bound
+	 */
+	public void setAborted(boolean aborted) {
+		this.aborted = aborted;
+	}
+	
+	public boolean isAborted() {
+		return aborted;
+	}
+	
+	public void setSamplesFitness(double[] samplesFitness) {
+		this.samplesFitness = samplesFitness;
+	}
+	
+	/**
+	 * @return the fitness of each sample of the task, or null if the task was
+	 * aborted or did not run
+	 */
+	public double[] getSamplesFitness() {
+		return samplesFitness;
+	}
+	
+	/**
+	 * Writes the result in the format of the {@link taskexecutor.TaskWireFormat}.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		out.writeInt(getTaskId());
+		out.writeInt(chromosomeId);
+		out.writeDouble(fitness);
+		out.writeInt(cacheHits);
+		out.writeInt(cacheMisses);
+		out.writeBoolean(aborted);
+		out.writeInt(samplesFitness == null ? -1 : samplesFitness.length);
+		if(samplesFitness != null)
+			for(double f : samplesFitness)
+				out.writeDouble(f);
+		out.writeBoolean(getException() != null);
+		if(getException() != null)
+			out.writeUTF(String.valueOf(getException()));
+	}
+	
+	public static SimpleFitnessResult read(DataInputStream in) throws IOException {
+		SimpleFitnessResult result = new SimpleFitnessResult(in.readInt(), in.readInt(), in.readDouble());
+		result.setCacheStatistics(in.readInt(), in.readInt());
+		result.setAborted(in.readBoolean());
+		int samples = in.readInt();
+		if(samples >= 0) {
+			if((long)samples * 8 > in.available())
+				throw new IOException("Invalid number of samples: "+samples);
+			double[] samplesFitness = new double[samples];
+			for(int i = 0 ; i < samples ; i++)
+				samplesFitness[i] = in.readDouble();
+			result.setSamplesFitness(samplesFitness);
+		}
+		if(in.readBoolean())
+			result.setException(new RuntimeException(in.readUTF()));
+		return result;
+	}
+	
 	
 }
@@ -1,14 +1,24 @@
 package taskexecutor.tasks;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Random;
 
 import evolutionaryrobotics.JBotEvolver;
 import evolutionaryrobotics.evaluationfunctions.EvaluationFunction;
 import evolutionaryrobotics.neuralnetworks.Chromosome;
+import evolutionaryrobotics.util.FitnessCache;
+import evolutionaryrobotics.util.SelectionThreshold;
+import evolutionaryrobotics.util.SimulationContext;
 import result.Result;
 import simulation.Simulator;
+import simulation.Updatable;
 import simulation.robot.Robot;
+import taskexecutor.TaskWireFormat;
 import taskexecutor.results.SimpleFitnessResult;
 import tests.Cronometer;
 
@@ -17,42 +27,240 @@ public class GenerationalTask extends JBotEvolverTask {
 	private int samples;
 	private double fitness = 0;
 	private Chromosome chromosome;
+	private long seed;
 	private Random random;
+	private int fitnessCacheSize = 0;
+	private boolean reuseSimulator = false;
+	private int cacheHits = 0;
+	private int cacheMisses = 0;
+	private SelectionThreshold threshold;
+	private boolean aborted = false;
+	private double abortedFitness = 0;
+	private double sampleBound = 0;
+	private int firstSample = 0;
+	private double[] samplesFitness;
 	
 	public GenerationalTask(JBotEvolver jBotEvolver, int samples, Chromosome chromosome, long seed) {
+		this(jBotEvolver, samples, chromosome, seed, 0);
+	}
+	
+	/**
+	 * @param fitnessCacheSize maximum number of samples kept in the {@link FitnessCache}, or 0 to simulate all the samples
+	 */
+	public GenerationalTask(JBotEvolver jBotEvolver, int samples, Chromosome chromosome, long seed, int fitnessCacheSize) {
+		this(jBotEvolver, samples, chromosome, seed, fitnessCacheSize, false);
+	}
+	
+	/**
+	 * @param reuseSimulator true to reuse the simulator of the {@link SimulationContext} of the thread in all the samples
+	 */
+	public GenerationalTask(JBotEvolver jBotEvolver, int samples, Chromosome chromosome, long seed, int fitnessCacheSize, boolean reuseSimulator) {
 		super(jBotEvolver);
 		this.samples = samples;
 		this.chromosome = chromosome;
+		this.seed = seed;
 		this.random = new Random(seed);
+		this.fitnessCacheSize = fitnessCacheSize;
+		this.reuseSimulator = reuseSimulator;
+	}
+	
+	/**
+	 * Enables racing: the evaluation is aborted as soon as the bound of the
+	 * fitness given by the {@link EvaluationFunction} shows that the
+	 * chromosome cannot reach the threshold, and the remaining samples are
+	 * skipped. The fitness of an aborted evaluation is its bound, and the
+	 * result is marked as aborted.
+	 * 
+	 * The samples that were not started are assumed not to reach a higher
+	 * fitness than the highest bound, before any step was simulated, of the
+	 * samples started so far.
+	 */
+	public void setSelectionThreshold(SelectionThreshold threshold) {
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Runs the samples from <code>firstSample</code> on, with the same seeds
+	 * as when all the samples are run by a single task, so that the samples
+	 * of a chromosome can be split among several tasks.
+	 */
+	public void setFirstSample(int firstSample) {
+		this.firstSample = firstSample;
+	}
+	
+	/**
+	 * Writes the task, without its configuration, in the format of the
+	 * {@link taskexecutor.TaskWireFormat}. Only tasks that were not run yet
+	 * and whose chromosome is a plain {@link Chromosome} can be written.
+	 */
+	public void write(DataOutputStream out) throws IOException {
+		if(chromosome.getClass() != Chromosome.class)
+			throw new IOException("Cannot write chromosomes of type "+chromosome.getClass().getName());
+		
+		double[] alleles = chromosome.getAlleles();
+		
+		out.writeInt(getId());
+		out.writeInt(chromosome.getID());
+		out.writeInt(samples);
+		out.writeInt(firstSample);
+		out.writeLong(seed);
+		out.writeInt(fitnessCacheSize);
+		out.writeBoolean(reuseSimulator);
+		out.writeBoolean(threshold != null);
+		if(threshold != null)
+			out.writeDouble(threshold.get());
+		out.writeInt(alleles.length);
+		for(int i = 0 ; i < alleles.length ; i++)
+			out.writeDouble(alleles[i]);
+	}
+	
+	/**
+	 * Reads a task written by {@link #write(DataOutputStream)}, which will be
+	 * run with the given copy of the configuration.
+	 */
+	public static GenerationalTask read(DataInputStream in, JBotEvolver jBotEvolver) throws IOException {
+		int id = in.readInt();
+		int chromosomeId = in.readInt();
+		int samples = in.readInt();
+		int firstSample = in.readInt();
+		long seed = in.readLong();
+		int fitnessCacheSize = in.readInt();
+		boolean reuseSimulator = in.readBoolean();
+		SelectionThreshold threshold = in.readBoolean() ? new SelectionThreshold(in.readDouble()) : null;
+		double[] alleles = new double[TaskWireFormat.readLength(in, 8)];
+		for(int i = 0 ; i < alleles.length ; i++)
+			alleles[i] = in.readDouble();
+		
+		GenerationalTask task = new GenerationalTask(jBotEvolver, samples, new Chromosome(alleles, chromosomeId), seed, fitnessCacheSize, reuseSimulator);
+		task.id = id;
+		task.threshold = threshold;
+		task.firstSample = firstSample;
+		return task;
+	}
+	
+	/**
+	 * Copies a task that was not run yet through the format of
+	 * {@link #write(DataOutputStream)}. The copy shares the configuration of
+	 * this task instead of creating a new {@link JBotEvolver}.
+	 */
+	public GenerationalTask copy() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		write(new DataOutputStream(bytes));
+		return read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), jBotEvolver);
 	}
 	
 	@Override
 	public void run() {
 		
-		for(int i = 0 ; i < samples ; i++) {
+		FitnessCache cache = null;
+		SimulationContext context = null;
+		String fingerprint = null;
+		
+		if(fitnessCacheSize > 0 || reuseSimulator) {
+			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", 0);
+			fingerprint = FitnessCache.getFingerprint(jBotEvolver.getArguments(), jBotEvolver.getRandomSeed());
+		}
+		
+		if(fitnessCacheSize > 0)
+			cache = FitnessCache.getInstance(fitnessCacheSize);
+		
+		if(reuseSimulator)
+			context = SimulationContext.getInstance(fingerprint);
+		
+		samplesFitness = new double[samples];
+		
+		for(int i = 0 ; i < firstSample ; i++)
+			random.nextLong();
+		
+		for(int i = firstSample ; i < firstSample + samples ; i++) {
 			
-			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", i);
+			long seed = random.nextLong();
+			
+			if(cache != null) {
+				Double cached = cache.get(chromosome.getAlleles(), seed, i, fingerprint);
+				if(cached != null) {
+					fitness+= cached;
+					samplesFitness[i - firstSample] = cached;
+					cacheHits++;
+					continue;
+				}
+				cacheMisses++;
+			}
 			
-			Simulator simulator = jBotEvolver.createSimulator(random.nextLong());
+			jBotEvolver.getArguments().get("--environment").setArgument("fitnesssample", i);
 			
-			simulator.setFileProvider(getFileProvider());
+			Simulator simulator;
 			
-//			ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
-//			jBotEvolver.setChromosome(robots, chromosome);
-			ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
-			simulator.addRobots(robots);
+			if(context != null) {
+				simulator = context.getSimulator(jBotEvolver, chromosome, seed, getFileProvider());
+			} else {
+				simulator = jBotEvolver.createSimulator(seed);
+				
+				simulator.setFileProvider(getFileProvider());
+				
+//				ArrayList<Robot> robots = jBotEvolver.createRobots(simulator);
+//				jBotEvolver.setChromosome(robots, chromosome);
+				ArrayList<Robot> robots = jBotEvolver.createRobots(simulator, chromosome);
+				simulator.addRobots(robots);
+			}
 			
 			EvaluationFunction eval = EvaluationFunction.getEvaluationFunction(jBotEvolver.getArguments().get("--evaluation"));
 			simulator.addCallback(eval);
 			
+			if(threshold != null) {
+				//the bound of the whole sample, before its first step, not the
+				//bound after the first step, which includes the fitness it got
+				sampleBound = Math.max(sampleBound, eval.getFitnessUpperBound(simulator, simulator.getEnvironment().getSteps()));
+				simulator.addCallback(new Race(eval, firstSample + samples - i - 1));
+			}
+			
 			simulator.simulate();
 			
+			if(aborted)
+				return;
+			
 			fitness+= eval.getFitness();
+			samplesFitness[i - firstSample] = eval.getFitness();
+			
+			if(cache != null)
+				cache.put(chromosome.getAlleles(), seed, i, fingerprint, eval.getFitness());
 		}
 	}
 	@Override
 	public Result getResult() {
-		SimpleFitnessResult fr = new SimpleFitnessResult(getId(),chromosome.getID(),fitness/samples);
+		SimpleFitnessResult fr = new SimpleFitnessResult(getId(),chromosome.getID(),aborted ? abortedFitness : fitness/samples);
+		fr.setCacheStatistics(cacheHits, cacheMisses);
+		fr.setAborted(aborted);
+		if(!aborted)
+			fr.setSamplesFitness(samplesFitness);
 		return fr;
 	}
+	
+	/**
+	 * Checks after each step whether the chromosome can still reach the
+	 * selection threshold, and stops the simulation otherwise.
+	 */
+	private class Race implements Updatable {
+		
+		private EvaluationFunction eval;
+		private int remainingSamples;
+		
+		public Race(EvaluationFunction eval, int remainingSamples) {
+			this.eval = eval;
+			this.remainingSamples = remainingSamples;
+		}
+		
+		@Override
+		public void update(Simulator simulator) {
+			int remainingSteps = simulator.getEnvironment().getSteps() - simulator.getTime().intValue() - 1;
+			double bound = eval.getFitnessUpperBound(simulator, remainingSteps);
+			double chromosomeBound = (fitness + bound + remainingSamples * sampleBound) / samples;
+			
+			if(chromosomeBound < threshold.get()) {
+				aborted = true;
+				abortedFitness = chromosomeBound;
+				simulator.stopSimulation();
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -58,6 +58,10 @@ public abstract class Controller extends SimulatorObject {
 	 */
 	public void reset() {};
 	
+	public Robot getRobot() {
+		return robot;
+	}
+	
 	public static Controller getController(Simulator simulator, Robot robot, Arguments arguments) {
 
 		if (!arguments.getArgumentIsDefined("classname"))
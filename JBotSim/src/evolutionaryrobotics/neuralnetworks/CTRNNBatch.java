@@ -0,0 +1,208 @@
+package evolutionaryrobotics.neuralnetworks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import net.jafama.FastMath;
+import simulation.Simulator;
+import simulation.robot.Robot;
+
+/**
+ * Evaluates the {@link CTRNNMultilayer} networks of all the robots of a
+ * simulation in a single pass, when all of them have the same weights. The
+ * states of the networks are kept in flat matrices with one row per robot,
+ * and the activation of each hidden neuron is computed only once per step.
+ *
+ * The batch is computed by the first controller that is called in a step,
+ * after all the sensors have been updated. The other controllers only apply
+ * the outputs that were already computed for their robot. The results are
+ * the same as when each network is evaluated on its own.
+ */
+public class CTRNNBatch {
+
+	private ArrayList<NeuralNetworkController> controllers;
+	private CTRNNMultilayer reference;
+	private volatile boolean valid = true;
+
+	private int numberOfInputs;
+	private int numberOfHidden;
+	private int numberOfOutputs;
+
+	//[robots x neurons]
+	private double[] inputs;
+	private double[] hiddenStates;
+	private double[] hiddenDeltaStates;
+	private double[] hiddenActivations;
+	private double[] outputs;
+	private int[] rowOf;
+
+	private double lastTime = Double.NaN;
+
+	private CTRNNBatch(ArrayList<NeuralNetworkController> controllers) {
+		this.controllers = controllers;
+		this.reference = (CTRNNMultilayer)controllers.get(0).getNeuralNetwork();
+
+		numberOfInputs = reference.getNumberOfInputNeurons();
+		numberOfHidden = reference.getNumberOfHiddenNodes();
+		numberOfOutputs = reference.getNumberOfOutputNeurons();
+
+		int n = controllers.size();
+		inputs = new double[n * numberOfInputs];
+		hiddenStates = new double[n * numberOfHidden];
+		hiddenDeltaStates = new double[n * numberOfHidden];
+		hiddenActivations = new double[n * numberOfHidden];
+		outputs = new double[n * numberOfOutputs];
+		rowOf = new int[n];
+	}
+
+	/**
+	 * Creates a batch with the controllers of all the robots of the simulator,
+	 * or returns null if they cannot be evaluated together.
+	 */
+	public static CTRNNBatch create(Simulator simulator) {
+		ArrayList<Robot> robots = simulator.getEnvironment().getRobots();
+		ArrayList<NeuralNetworkController> controllers = new ArrayList<NeuralNetworkController>(robots.size());
+
+		double[] weights = null;
+
+		for(Robot r : robots) {
+			if(r.getController() == null || r.getController().getClass() != NeuralNetworkController.class)
+				return null;
+
+			NeuralNetworkController controller = (NeuralNetworkController)r.getController();
+			NeuralNetwork network = controller.getNeuralNetwork();
+
+			if(network == null || network.getClass() != CTRNNMultilayer.class || network.printValues || network.getWeights() == null)
+				return null;
+
+			if(weights == null)
+				weights = network.getWeights();
+			else if(network.getWeights() != weights && !Arrays.equals(network.getWeights(), weights))
+				return null;
+
+			controllers.add(controller);
+		}
+
+		if(controllers.size() < 2)
+			return null;
+
+		return new CTRNNBatch(controllers);
+	}
+
+	public boolean isValid() {
+		return valid;
+	}
+
+	/**
+	 * Called when the weights or the network of one of the controllers
+	 * change, so that a new batch is created in the next step.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Applies the outputs of the network of the controller, computing the
+	 * networks of all the robots if this is the first controller of the step.
+	 */
+	public void controlStep(NeuralNetworkController controller, double time) {
+		synchronized(this) {
+			if(time != lastTime) {
+				propagate();
+				lastTime = time;
+			}
+		}
+		controller.getNeuralNetwork().applyOutputs();
+	}
+
+	private void propagate() {
+
+		int A = numberOfInputs;
+		int B = numberOfHidden;
+		int C = numberOfOutputs;
+
+		double[] inputToHiddenWeights = reference.getInputToHiddenWeights();
+		double[] hiddenToHiddenWeights = reference.getHiddenToHiddenWeights();
+		double[] hiddenBiases = reference.getHiddenBiases();
+		double[] hiddenTaus = reference.getHiddenTaus();
+		double[] hiddenToOutputWeights = reference.getHiddenToOutputWeights();
+		double[] outputBiases = reference.getOutputBiases();
+		double timeStep = reference.getTimeStep();
+
+		//the state of disabled robots is left untouched, like when their controllers are not called
+		int rows = 0;
+
+		for(int r = 0 ; r < controllers.size() ; r++) {
+			NeuralNetworkController controller = controllers.get(r);
+			if(!controller.getRobot().isEnabled()) {
+				rowOf[r] = -1;
+				continue;
+			}
+			CTRNNMultilayer network = (CTRNNMultilayer)controller.getNeuralNetwork();
+			network.readInputs();
+			System.arraycopy(network.getInputNeuronStates(), 0, inputs, rows * A, A);
+			System.arraycopy(network.getHiddenStates(), 0, hiddenStates, rows * B, B);
+			System.arraycopy(network.getOutputNeuronStates(), 0, outputs, rows * C, C);
+			rowOf[r] = rows++;
+		}
+
+		// Update delta state of hidden layer from inputs:
+		for(int r = 0 ; r < rows ; r++) {
+			int in = r * A;
+			int hidden = r * B;
+			for (int i = 0; i < B; i++) {
+				double delta = -hiddenStates[hidden + i];
+				int w = i * A;
+				for (int j = 0; j < A; j++)
+					delta += inputToHiddenWeights[w + j] * inputs[in + j];
+				hiddenDeltaStates[hidden + i] = delta;
+			}
+		}
+
+		computeHiddenActivations(rows, hiddenBiases);
+
+		// Update delta state from hidden layer, self-recurrent connections:
+		for(int r = 0 ; r < rows ; r++) {
+			int hidden = r * B;
+			for (int i = 0; i < B; i++) {
+				double delta = hiddenDeltaStates[hidden + i];
+				int w = i * B;
+				for (int j = 0; j < B; j++)
+					delta += hiddenToHiddenWeights[w + j] * hiddenActivations[hidden + j];
+				hiddenStates[hidden + i] += delta * timeStep / hiddenTaus[i];
+			}
+		}
+
+		computeHiddenActivations(rows, hiddenBiases);
+
+		// Update the outputs layer:
+		for(int r = 0 ; r < rows ; r++) {
+			int hidden = r * B;
+			int out = r * C;
+			for (int i = 0; i < C; i++) {
+				double state = outputs[out + i];
+				int w = i * B;
+				for (int j = 0; j < B; j++)
+					state += hiddenToOutputWeights[w + j] * hiddenActivations[hidden + j];
+				outputs[out + i] = ((1.0) / (FastMath.expQuick(-(state + outputBiases[i])) + 1.0));
+			}
+		}
+
+		for(int r = 0 ; r < controllers.size() ; r++) {
+			if(rowOf[r] < 0)
+				continue;
+			CTRNNMultilayer network = (CTRNNMultilayer)controllers.get(r).getNeuralNetwork();
+			System.arraycopy(hiddenStates, rowOf[r] * B, network.getHiddenStates(), 0, B);
+			System.arraycopy(outputs, rowOf[r] * C, network.getOutputNeuronStates(), 0, C);
+		}
+	}
+
+	private void computeHiddenActivations(int rows, double[] hiddenBiases) {
+		int B = numberOfHidden;
+		for(int r = 0 ; r < rows ; r++) {
+			int hidden = r * B;
+			for (int j = 0; j < B; j++)
+				hiddenActivations[hidden + j] = 1.0 / (FastMath.expQuick(-(hiddenStates[hidden + j] + hiddenBiases[j])) + 1.0);
+		}
+	}
+}
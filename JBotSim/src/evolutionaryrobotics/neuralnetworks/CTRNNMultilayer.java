@@ -11,7 +11,9 @@ import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
 import net.jafama.FastMath;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class CTRNNMultilayer extends NeuralNetwork {
 	protected double timeStep = 0.2;
 	protected double tau = 2.5;
@@ -20,6 +22,7 @@ public class CTRNNMultilayer extends NeuralNetwork {
 	protected int numberOfHiddenNodes;
 	protected double[] hiddenDeltaStates;
 	protected double[] hiddenStates;
+	protected double[] hiddenActivations;
 	protected double[] inputToHiddenWeights;
 	protected double[] hiddenBiases;
 	protected double[] hiddenToHiddenWeights;
@@ -45,10 +48,13 @@ public class CTRNNMultilayer extends NeuralNetwork {
 		}
 
 		// Update delta state from hidden layer, self-recurrent connections:
+		for (int j = 0; j < numberOfHiddenNodes; j++) {
+			hiddenActivations[j] = 1.0 / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0);
+		}
+
 		for (int i = 0; i < numberOfHiddenNodes; i++) {
 			for (int j = 0; j < numberOfHiddenNodes; j++) {
-				double z = 1.0 / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0);
-				hiddenDeltaStates[i] += hiddenToHiddenWeights[i * numberOfHiddenNodes + j] * z;
+				hiddenDeltaStates[i] += hiddenToHiddenWeights[i * numberOfHiddenNodes + j] * hiddenActivations[j];
 			}
 		}
 
@@ -57,10 +63,13 @@ public class CTRNNMultilayer extends NeuralNetwork {
 		}
 
 		// Update the outputs layer::
+		for (int j = 0; j < numberOfHiddenNodes; j++) {
+			hiddenActivations[j] = ((1.0) / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0));
+		}
+
 		for (int i = 0; i < numberOfOutputNeurons; i++) {
 			for (int j = 0; j < numberOfHiddenNodes; j++) {
-				double z = ((1.0) / (FastMath.expQuick(-(hiddenStates[j] + hiddenBiases[j])) + 1.0));
-				outputNeuronStates[i] += hiddenToOutputWeights[i * numberOfHiddenNodes + j] * z;
+				outputNeuronStates[i] += hiddenToOutputWeights[i * numberOfHiddenNodes + j] * hiddenActivations[j];
 			}
 
 			// Compute the activation function immediately, since this is
@@ -156,11 +165,16 @@ public class CTRNNMultilayer extends NeuralNetwork {
 
 			hiddenDeltaStates = new double[B];
 			hiddenStates = new double[B];
+			hiddenActivations = new double[B];
 
 			for (int i = 0; i < B; i++) {
 				hiddenStates[i] = 0;
 			}
 
+			// the outputs are accumulated in propagateInputs
+			for (int i = 0; i < C; i++) {
+				outputNeuronStates[i] = 0;
+			}
 		}
 	}
 
@@ -168,6 +182,30 @@ public class CTRNNMultilayer extends NeuralNetwork {
 		return hiddenStates;
 	}
 
+	public double[] getHiddenBiases() {
+		return hiddenBiases;
+	}
+
+	public double[] getInputToHiddenWeights() {
+		return inputToHiddenWeights;
+	}
+
+	public double[] getHiddenToHiddenWeights() {
+		return hiddenToHiddenWeights;
+	}
+
+	public double[] getHiddenToOutputWeights() {
+		return hiddenToOutputWeights;
+	}
+
+	public double[] getOutputBiases() {
+		return outputBiases;
+	}
+
+	public double getTimeStep() {
+		return timeStep;
+	}
+
 	public double[] getHiddenTaus() {
 		return hiddenTaus;
 	}
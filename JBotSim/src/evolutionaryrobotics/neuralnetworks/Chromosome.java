@@ -18,6 +18,7 @@ public class Chromosome implements Serializable, Cloneable {
 	protected double   fitness;
 	protected int      id;
 	protected boolean  fitnessSet = false;
+	protected boolean  fitnessAborted = false;
 		
 	public Chromosome(double[] alleles, int id) {
 		this.alleles = alleles;
@@ -48,10 +49,25 @@ public class Chromosome implements Serializable, Cloneable {
 	public boolean getFitnessSet() {
 		return fitnessSet;
 	}
+	
+	/**
+	 * Marks the fitness as an upper bound of an evaluation that was aborted
+	 * because the chromosome could not be selected.
+	 */
+	public void setFitnessAborted(boolean fitnessAborted) {
+		this.fitnessAborted = fitnessAborted;
+	}
+	
+	public boolean getFitnessAborted() {
+		return fitnessAborted;
+	}
 
-	// Compare to get the chromosome in descending order
+	// Compare to get the chromosome in descending order, with the aborted evaluations last
 	public static class CompareChromosomeFitness implements Comparator<Chromosome> {
 		public int compare(Chromosome arg0, Chromosome arg1) {			
+			if (arg0.getFitnessAborted() != arg1.getFitnessAborted())
+				return arg0.getFitnessAborted() ? 1 : -1;
+			
 			if (arg0.getFitness() < arg1.getFitness())
 				return 1;
 			if (arg0.getFitness() > arg1.getFitness())
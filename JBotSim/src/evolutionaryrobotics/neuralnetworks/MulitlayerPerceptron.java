@@ -5,10 +5,12 @@ import java.util.Vector;
 import net.jafama.FastMath;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 import evolutionaryrobotics.neuralnetworks.inputs.NNInput;
 import evolutionaryrobotics.neuralnetworks.outputs.NNOutput;
 
 
+@Resettable
 public class MulitlayerPerceptron extends NeuralNetwork {
 	@ArgumentsAnnotation(name="hiddennodes", defaultValue="5")
 	int numberOfHiddenNodes    = 5;
@@ -67,6 +67,15 @@ public abstract class NeuralNetwork implements Serializable{
 	}
 
 	public void controlStep(double time) {
+		readInputs();
+		outputNeuronStates = propagateInputs(inputNeuronStates);
+		applyOutputs();
+	}
+
+	/**
+	 * Copies the values of the inputs to {@link #inputNeuronStates}.
+	 */
+	protected void readInputs() {
 		int currentInputValue = 0;
 		//		boolean difZero=false;
 		for (NNInput i : inputs) {
@@ -80,7 +89,12 @@ public abstract class NeuralNetwork implements Serializable{
 		//		if (!difZero){
 		//			System.out.println("ERROR - all zeros in the inputs");
 		//		}
-		outputNeuronStates = propagateInputs(inputNeuronStates);
+	}
+
+	/**
+	 * Sets the values of {@link #outputNeuronStates} in the outputs.
+	 */
+	protected void applyOutputs() {
 		int currentOutputValue = 0;
 		
 		for (NNOutput o : outputs) {
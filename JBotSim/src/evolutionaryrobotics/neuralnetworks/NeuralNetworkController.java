@@ -8,17 +8,27 @@ import simulation.robot.actuators.Actuator;
 import simulation.robot.sensors.Sensor;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 import controllers.Controller;
 import controllers.FixedLenghtGenomeEvolvableController;
 
+@Resettable
 public class NeuralNetworkController extends Controller implements FixedLenghtGenomeEvolvableController {
 	protected NeuralNetwork neuralNetwork;
 	
 	@ArgumentsAnnotation(name="printweights", values={"0","1"})
 	protected boolean printWeights = false;
+	
+	@ArgumentsAnnotation(name="batched", values={"0","1"}, defaultValue="1", help="Evaluates the networks of all robots together when they have the same weights.")
+	protected boolean batched = true;
+	
+	protected transient Simulator simulator;
+	protected transient CTRNNBatch batch;
+	protected transient boolean batchChecked = false;
 
 	public NeuralNetworkController(Simulator simulator, Robot robot, Arguments args) {
 		super(simulator, robot, args);
+		this.simulator = simulator;
 		
 		neuralNetwork = NeuralNetwork.getNeuralNetwork(simulator, robot, new Arguments(args.getArgumentAsString("network")));
 		
@@ -45,6 +55,7 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 		}
 		
 		printWeights = args.getArgumentAsIntOrSetDefault("printweights", 0) == 1;
+		batched = args.getArgumentAsIntOrSetDefault("batched", 1) == 1;
 	}
 
 	public boolean isAlive() {
@@ -57,8 +68,52 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 
 	@Override
 	public void controlStep(double time) {
+		if(batched && simulator != null) {
+			CTRNNBatch b = getBatch();
+			if(b != null) {
+				b.controlStep(this, time);
+				return;
+			}
+		}
 		neuralNetwork.controlStep(time);
 	}
+	
+	private CTRNNBatch getBatch() {
+		CTRNNBatch b = batch;
+		if(b != null && b.isValid())
+			return b;
+		if(batchChecked && b == null)
+			return null;
+		
+		synchronized(simulator) {
+			if(batch != null && batch.isValid())
+				return batch;
+			
+			CTRNNBatch created = CTRNNBatch.create(simulator);
+			
+			for(Robot r : simulator.getEnvironment().getRobots()) {
+				if(r.getController() instanceof NeuralNetworkController) {
+					NeuralNetworkController c = (NeuralNetworkController)r.getController();
+					if(c.batch != null)
+						c.batch.invalidate();
+					c.batch = created;
+					c.batchChecked = true;
+				}
+			}
+			return created;
+		}
+	}
+	
+	/**
+	 * The batch is created again in the next step, since the weights or the
+	 * network of this controller are no longer the same.
+	 */
+	private void invalidateBatch() {
+		if(batch != null)
+			batch.invalidate();
+		batch = null;
+		batchChecked = false;
+	}
 
 	@Override
 	public void end() {
@@ -71,6 +126,7 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 	
 	public void setNeuralNetwork(NeuralNetwork neuralNetwork) {
 		this.neuralNetwork = neuralNetwork;
+		invalidateBatch();
 	}
 
 	public NeuralNetwork getNeuralNetwork() {
@@ -82,6 +138,11 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 		super.reset();
 		neuralNetwork.reset();
 	}
+	
+	@Override
+	public boolean isResettable() {
+		return super.isResettable() && neuralNetwork.getClass().isAnnotationPresent(Resettable.class);
+	}
 
 	@Override
 	public void setNNWeights(double[] weights) {
@@ -97,6 +158,7 @@ public class NeuralNetworkController extends Controller implements FixedLenghtGe
 		}
 		
 		neuralNetwork.setWeights(weights);
+		invalidateBatch();
 		
 		int currentIndex = weights.length - 1;
 		
@@ -0,0 +1,89 @@
+package mathutils;
+
+import net.jafama.FastMath;
+
+/**
+ * Geometry functions that work directly on primitive coordinates, so they can
+ * be called in the inner loops of the simulation without allocating any
+ * {@link Vector2d}. Results with more than one value are written to a buffer
+ * provided by the caller.
+ */
+public class Geometry {
+
+	private Geometry() {}
+
+	/**
+	 * Squared distance between the point (px,py) and the segment (ax,ay)-(bx,by).
+	 */
+	public static double distanceSquaredToSegment(double px, double py, double ax, double ay, double bx, double by) {
+		double dx = bx - ax;
+		double dy = by - ay;
+		double l2 = dx*dx + dy*dy;
+
+		double cx = ax, cy = ay;
+
+		if (l2 != 0.0) {
+			// Projection of p onto the line that extends the segment, parameterized as a + t (b - a)
+			double t = ((px - ax) * dx + (py - ay) * dy) / l2;
+
+			if (t > 1.0) {
+				cx = bx;
+				cy = by;
+			} else if (t >= 0.0) {
+				cx = ax + dx * t;
+				cy = ay + dy * t;
+			}
+		}
+
+		double ex = px - cx;
+		double ey = py - cy;
+		return ex*ex + ey*ey;
+	}
+
+	/**
+	 * Distance between the point (px,py) and the segment (ax,ay)-(bx,by).
+	 */
+	public static double distanceToSegment(double px, double py, double ax, double ay, double bx, double by) {
+		return FastMath.sqrtQuick(distanceSquaredToSegment(px, py, ax, ay, bx, by));
+	}
+
+	/**
+	 * Position of the intersection along the segment (x1,y1)-(x2,y2), from 0
+	 * to 1, or -1 if it does not intersect the segment (x3,y3)-(x4,y4).
+	 */
+	public static double segmentIntersection(double x1, double y1, double x2, double y2,
+			double x3, double y3, double x4, double y4) {
+
+		double d = (y4-y3)*(x2-x1)-(x4-x3)*(y2-y1);
+
+		if (d == 0)// lines are parallel
+			return -1;
+
+		double ua = ((x4-x3)*(y1-y3)-(y4-y3)*(x1-x3)) / d;
+		double ub = ((x2-x1)*(y1-y3)-(y2-y1)*(x1-x3)) / d;
+
+		if (ua >= 0 && ua <= 1 && ub >= 0 && ub <= 1)//point inside both segments
+			return ua;
+		return -1;
+	}
+
+	/**
+	 * Intersection between the segments (x1,y1)-(x2,y2) and (x3,y3)-(x4,y4).
+	 * If they intersect, the point is written to <code>result[0]</code> and
+	 * <code>result[1]</code>.
+	 *
+	 * @return true if the segments intersect
+	 */
+	public static boolean segmentIntersection(double x1, double y1, double x2, double y2,
+			double x3, double y3, double x4, double y4, double[] result) {
+
+		double ua = segmentIntersection(x1, y1, x2, y2, x3, y3, x4, y4);
+
+		if (ua < 0)
+			return false;
+
+		result[0] = x1 + ua*(x2 - x1);
+		result[1] = y1 + ua*(y2 - y1);
+		return true;
+	}
+}
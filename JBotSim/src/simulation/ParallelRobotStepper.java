@@ -0,0 +1,203 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import simulation.robot.Robot;
+
+/**
+ * Persistent pool of worker threads used by the {@link Simulator} when
+ * <code>parallel=1</code>. The threads are created once and reused on every
+ * step. Each step runs in three phases (sensors, controllers and actuators)
+ * separated by a barrier, so no robot acts before every robot has sensed.
+ *
+ * Inside each phase the robots are claimed in small chunks from a shared
+ * counter, so threads that finish early take over the remaining robots and
+ * uneven controller costs are balanced. The number of robots is read at the
+ * start of every step, so robots added during the simulation are simulated.
+ */
+public class ParallelRobotStepper {
+
+	private static final int SENSORS = 0;
+	private static final int CONTROLLERS = 1;
+	private static final int ACTUATORS = 2;
+
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private Simulator simulator;
+	private Thread[] workers;
+	private CyclicBarrier barrier;
+	private AtomicInteger[] nextRobot = new AtomicInteger[3];
+
+	private volatile double time;
+	private volatile int numberOfRobots;
+	private volatile int chunkSize;
+	private volatile boolean shutdown = false;
+	private volatile Throwable error;
+
+	/**
+	 * @param simulator the simulator whose robots will be updated
+	 * @param numberOfThreads total number of threads, including the thread
+	 * that calls {@link #step(double)}
+	 */
+	public ParallelRobotStepper(Simulator simulator, int numberOfThreads) {
+		this.simulator = simulator;
+
+		numberOfThreads = Math.max(1, numberOfThreads);
+
+		for(int i = 0 ; i < nextRobot.length ; i++)
+			nextRobot[i] = new AtomicInteger();
+
+		barrier = new CyclicBarrier(numberOfThreads);
+		workers = new Thread[numberOfThreads - 1];
+
+		for(int i = 0 ; i < workers.length ; i++) {
+			workers[i] = new Thread(new Worker(), "ParallelRobotStepper-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Updates the sensors, controllers and actuators of all enabled robots,
+	 * returning only when every phase is complete in every thread.
+	 */
+	public void step(double time) {
+
+		if(shutdown)
+			throw new IllegalStateException("ParallelRobotStepper has already been shut down");
+
+		int threads = workers.length + 1;
+
+		this.time = time;
+		this.numberOfRobots = simulator.getEnvironment().getRobots().size();
+		this.chunkSize = Math.max(1, numberOfRobots / (threads * CHUNKS_PER_THREAD));
+
+		for(AtomicInteger i : nextRobot)
+			i.set(0);
+
+		SimulatorProfiler profiler = simulator.getProfiler();
+
+		//start of the step
+		await();
+		long actuatorsStart = runPhases(profiler);
+		//end of the step
+		await();
+
+		if(profiler != null)
+			profiler.getPhase(SimulatorProfiler.ACTUATORS).record(System.nanoTime() - actuatorsStart);
+
+		if(error != null) {
+			Throwable t = error;
+			error = null;
+			throw new RuntimeException("Error while updating robots in parallel", t);
+		}
+	}
+
+	/**
+	 * Stops all the worker threads. The stepper cannot be used afterwards.
+	 */
+	public void shutdown() {
+		if(shutdown)
+			return;
+		shutdown = true;
+		for(Thread t : workers)
+			t.interrupt();
+	}
+
+	public int getNumberOfThreads() {
+		return workers.length + 1;
+	}
+
+	/**
+	 * @param profiler the profiler where the calling thread records the
+	 * duration of the phases, or null
+	 * @return the time at which the actuators phase started
+	 */
+	private long runPhases(SimulatorProfiler profiler) {
+		long t = profiler == null ? 0 : System.nanoTime();
+		runPhase(SENSORS);
+		await();
+		if(profiler != null) {
+			long now = System.nanoTime();
+			profiler.getPhase(SimulatorProfiler.SENSORS).record(now - t);
+			t = now;
+		}
+		runPhase(CONTROLLERS);
+		await();
+		if(profiler != null) {
+			long now = System.nanoTime();
+			profiler.getPhase(SimulatorProfiler.CONTROLLERS).record(now - t);
+			t = now;
+		}
+		runPhase(ACTUATORS);
+		return t;
+	}
+
+	private void runPhase(int phase) {
+		ArrayList<Robot> robots = simulator.getEnvironment().getRobots();
+		AtomicInteger counter = nextRobot[phase];
+		double timeDelta = simulator.getTimeDelta();
+
+		try {
+			int start;
+			while((start = counter.getAndAdd(chunkSize)) < numberOfRobots) {
+				int end = Math.min(start + chunkSize, numberOfRobots);
+				for(int i = start ; i < end ; i++) {
+					Robot r = robots.get(i);
+					if(!r.isEnabled())
+						continue;
+					switch(phase) {
+						case SENSORS:
+							r.updateSensors(time, simulator.getEnvironment().getTeleported());
+							break;
+						case CONTROLLERS:
+							if(r.getController() != null)
+								r.getController().controlStep(time);
+							break;
+						case ACTUATORS:
+							r.updateActuators(time, timeDelta);
+							break;
+					}
+				}
+			}
+		} catch(Throwable t) {
+			//the other threads keep going until the next barrier, the error is reported at the end of the step
+			if(error == null)
+				error = t;
+		}
+	}
+
+	private void await() {
+		try {
+			barrier.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (BrokenBarrierException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			try {
+				while(true) {
+					barrier.await();
+					runPhases(null);
+					barrier.await();
+				}
+			} catch (InterruptedException e) {
+				//shut down
+			} catch (BrokenBarrierException e) {
+				//shut down
+			} catch (RuntimeException e) {
+				//await() was interrupted while shutting down
+				if(!shutdown)
+					throw e;
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package simulation;
 
 import gui.Gui;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +18,7 @@ import simulation.physicalobjects.PhysicalObjectType;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.Factory;
+import simulation.util.SimRandom;
 
 public class Simulator implements Serializable {
 
@@ -30,13 +32,22 @@ public class Simulator implements Serializable {
 	protected FileProvider fileProvider = FileProvider.getDefaultFileProvider();
 	private int numberRobots = 0;
 	private int numberPhysicalObjects = 0;
+	private int numberPhysicalObjectsBeforeSetup = 0;
+	private boolean configuredCallbacks = false;
 	private ArrayList<Updatable> callbacks = new ArrayList<Updatable>();
 	private boolean stopSimulation = false;
 	private int[] robotIndexes;
 	private boolean setup = false;
 
 	private boolean parallel = false;
-	private ArrayList<StagedParallelRobotCallable> runnables;
+	private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+	private transient ParallelRobotStepper parallelStepper;
+	private boolean splitRandom = false;
+	private SimRandom randomStreams;
+	private Random shuffleRandom;
+	private transient SimulatorProfiler profiler;
+	private String profileOutput;
+	private String profileFormat = "csv";
 
 	private Network network;
 
@@ -66,6 +77,15 @@ public class Simulator implements Serializable {
 			}
 
 			parallel = args.getArgumentAsIntOrSetDefault("parallel", 0) == 1;
+			numberOfThreads = args.getArgumentAsIntOrSetDefault("threads", numberOfThreads);
+			splitRandom = args.getArgumentAsIntOrSetDefault("splitrandom", 0) == 1;
+
+			if (args.getArgumentAsIntOrSetDefault("profile", 0) == 1) {
+				profiler = new SimulatorProfiler();
+				if (args.getArgumentIsDefined("profileoutput"))
+					profileOutput = args.getArgumentAsString("profileoutput");
+				profileFormat = args.getArgumentAsStringOrSetDefault("profileformat", profileFormat);
+			}
 		}
 
 		args = arguments.get("--updatables");
@@ -76,8 +96,13 @@ public class Simulator implements Serializable {
 				addCallback(
 						(Updatable) Factory.getInstance(updatableArgs.getArgumentAsString("classname"), updatableArgs));
 			}
+			configuredCallbacks = !callbacks.isEmpty();
 		}
 		
+		//the order of the actuators is drawn from its own stream, so that
+		//sequential runs draw the same numbers from the other streams as
+		//parallel runs, which do not shuffle the robots
+		shuffleRandom = createRandomStream();
 	}
 	
 	public void setSerializableObjects(HashMap<String, Serializable> serializableObjects) {
@@ -104,6 +129,34 @@ public class Simulator implements Serializable {
 		return random;
 	}
 
+	/**
+	 * Returns the random number generator that a robot, sensor, actuator or
+	 * controller should keep for its own noise. By default this is the shared
+	 * {@link #getRandom()}. With <code>splitrandom=1</code> every call returns
+	 * a new stream split from the simulation seed, so the numbers drawn by
+	 * each object do not depend on the order in which the robots are updated,
+	 * and parallel and sequential runs produce the same trajectories.
+	 */
+	public synchronized Random createRandomStream() {
+		if (!splitRandom)
+			return random;
+		if (randomStreams == null)
+			randomStreams = new SimRandom(randomSeed);
+		return randomStreams.split();
+	}
+
+	public boolean isSplitRandom() {
+		return splitRandom;
+	}
+
+	/**
+	 * Returns the profiler that records the duration of each phase of the
+	 * simulation steps, or null if <code>profile=1</code> was not set.
+	 */
+	public SimulatorProfiler getProfiler() {
+		return profiler;
+	}
+
 	public FileProvider getFileProvider() {
 		return fileProvider;
 	}
@@ -123,59 +176,62 @@ public class Simulator implements Serializable {
 	public void performOneSimulationStep(Double time) {
 		this.time = time;
 
-		if (parallel) {
-			if (runnables == null) {
-				runnables = new ArrayList<StagedParallelRobotCallable>();
-				for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++)
-					runnables.add(new StagedParallelRobotCallable(i));
-			}
-			// for(int i = 0 ; i < 3 ; i++) {
-			// for(Callable<Object> c : runnables)
-			// ((StagedParallelRobotCallable)c).stage=i;
-			// try {
-			// pool.invokeAll(runnables);
-			// } catch (InterruptedException e) {
-			// e.printStackTrace();
-			// }
-			// }
-			// environment.clearTeleported();
+		long stepStart = profiler == null ? 0 : System.nanoTime();
+		long t = stepStart;
 
-			try {
-				Thread[] t = new Thread[Runtime.getRuntime().availableProcessors()];
-				for (int i = 0; i < t.length; i++) {
-					t[i] = new Thread(runnables.get(i));
-					t[i].start();
-				}
-				for (int i = 0; i < t.length; i++) {
-					t[i].join();
-				}
-				environment.clearTeleported();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		environment.updateSpatialGridIfOutdated();
+
+		if (parallel) {
+			if (parallelStepper == null)
+				parallelStepper = new ParallelRobotStepper(this, numberOfThreads);
+			parallelStepper.step(time);
+			environment.clearTeleported();
+			t = profiler == null ? 0 : System.nanoTime();
 		} else {
 			// Update the readings for all the sensors:
-			// long d = System.currentTimeMillis();
 			updateAllRobotSensors(time);
+			t = profile(SimulatorProfiler.SENSORS, t);
 			// Call the controllers:
 			updateAllControllers(time);
+			t = profile(SimulatorProfiler.CONTROLLERS, t);
 			// Compute the actions of the robot's actuators on the environment
 			// and on itself
 			updateAllRobotActuators(time);
-			// d = System.currentTimeMillis()-d;
-			// d/=environment.getRobots().size();
-			// System.out.println(d);
+			t = profile(SimulatorProfiler.ACTUATORS, t);
 		}
 		// Update non-robot objects in the environment
 		updateEnvironment(time);
+		t = profile(SimulatorProfiler.ENVIRONMENT, t);
 		// Update the positions of everything
 		updatePositions(time);
+		t = profile(SimulatorProfiler.COLLISIONS, t);
 
-		for (Updatable r : callbacks) {
+		for (int i = 0; i < callbacks.size(); i++) {
+			Updatable r = callbacks.get(i);
 //			if(r instanceof Gui)
 //				continue;
 			r.update(this);
+			if (profiler != null) {
+				long now = System.nanoTime();
+				profiler.getUpdatable(r.getClass()).record(now - t);
+				t = now;
+			}
 		}
+
+		if (profiler != null)
+			profiler.getPhase(SimulatorProfiler.STEP).record(t - stepStart);
+	}
+
+	/**
+	 * Records the time since <code>start</code> in the histogram of the phase
+	 * and returns the current time, or does nothing if profiling is disabled.
+	 */
+	private long profile(String phase, long start) {
+		if (profiler == null)
+			return 0;
+		long now = System.nanoTime();
+		profiler.getPhase(phase).record(now - start);
+		return now;
 	}
 
 	protected void updateAllControllers(Double time) {
@@ -205,7 +261,7 @@ public class Simulator implements Serializable {
 		if (robotIndexes == null || robotIndexes.length != robots.size())
 			createRobotIndexes(robots.size());
 
-		Collections.shuffle(Arrays.asList(robotIndexes), random);
+		Collections.shuffle(Arrays.asList(robotIndexes), shuffleRandom);
 
 		for (int i = 0; i < robotIndexes.length; i++)
 			if (robots.get(robotIndexes[i]).isEnabled())
@@ -246,6 +302,10 @@ public class Simulator implements Serializable {
 
 	public void terminate() {
 		stopSimulation = true;
+		if (parallelStepper != null) {
+			parallelStepper.shutdown();
+			parallelStepper = null;
+		}
 		if (network != null)
 			network.shutdown();
 		for (Updatable u : callbacks) {
@@ -257,6 +317,13 @@ public class Simulator implements Serializable {
 		for (Robot r : environment.getRobots()) {
 			r.getController().end();
 		}
+		if (profiler != null && profileOutput != null) {
+			try {
+				profiler.write(profileOutput, profileFormat, randomSeed);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	public double getTimeDelta() {
@@ -291,8 +358,62 @@ public class Simulator implements Serializable {
 		return environment.getRobots();
 	}
 
+	/**
+	 * Returns true if the simulator can be run again with {@link #reset(long)}
+	 * instead of being created again: the environment and all the robots,
+	 * with their sensors, actuators and controllers, must be
+	 * {@link simulation.util.Resettable}. Simulators with a network, with
+	 * updatables defined in the arguments or with <code>splitrandom=1</code>
+	 * are never resettable.
+	 */
+	public boolean isResettable() {
+		if (network != null || configuredCallbacks || splitRandom || !environment.isResettable())
+			return false;
+		for (Robot r : environment.getRobots())
+			if (!r.isResettable())
+				return false;
+		return true;
+	}
+
+	/**
+	 * Prepares the simulator, with the robots it already has, for another
+	 * simulation with the given random seed. The result is the same as
+	 * creating a new simulator with the seed and adding the same robots, as
+	 * long as creating them did not draw random numbers. The callbacks are
+	 * removed, and the controllers must be configured again (for instance
+	 * with new weights) after the reset.
+	 */
+	public void reset(long randomSeed) {
+		if (!isResettable())
+			throw new IllegalStateException("Simulator cannot be reset: " + environment.getClass().getSimpleName()
+					+ " or its robots are not resettable");
+
+		Arguments args = arguments.get("--simulator");
+		if (args != null && args.getArgumentIsDefined("fixedseed") && args.getArgumentAsDouble("fixedseed") != 0)
+			randomSeed = args.getArgumentAsInt("fixedseed");
+
+		this.randomSeed = randomSeed;
+		random.setSeed(randomSeed);
+		//the first stream split from the seed, as in a new simulator
+		shuffleRandom = splitRandom ? new SimRandom(randomSeed).split() : random;
+		time = Double.valueOf(0);
+		stopSimulation = false;
+		robotIndexes = null;
+		callbacks.clear();
+
+		if (setup) {
+			numberPhysicalObjects = numberPhysicalObjectsBeforeSetup;
+			setup = false;
+		}
+
+		environment.reset(this);
+		for (Robot r : environment.getRobots())
+			r.reset();
+	}
+
 	private void setup() {
 		if (!this.setup) {
+			numberPhysicalObjectsBeforeSetup = numberPhysicalObjects;
 			if (!environment.isSetup()) {
 				setupEnvironment();
 				if (!environment.isSetup())
@@ -331,34 +452,4 @@ public class Simulator implements Serializable {
 			return r;
 		}
 	}
-
-	class StagedParallelRobotCallable implements Runnable {
-
-		// private ArrayList<Robot> robots = new ArrayList<Robot>();
-		public int stage = 0;
-		public int start = 0;
-		public int end = 0;
-
-		public StagedParallelRobotCallable(int i) {
-			int total = environment.getRobots().size() / Runtime.getRuntime().availableProcessors();
-			start = total * i;
-			end = total * (i + 1);
-
-			if (i == Runtime.getRuntime().availableProcessors() - 1)
-				end = environment.getRobots().size();
-
-		}
-
-		@Override
-		public void run() {
-			for (int j = start; j < end; j++) {
-				Robot r = environment.getRobots().get(j);
-				if (r.isEnabled()) {
-					r.updateSensors(time, environment.getTeleported());
-					r.getController().controlStep(time);
-					r.updateActuators(time, timeDelta);
-				}
-			}
-		}
-	}
 }
\ No newline at end of file
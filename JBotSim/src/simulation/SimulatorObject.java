@@ -5,6 +5,8 @@ import java.awt.event.KeyListener;
 import java.io.Serializable;
 import java.util.HashMap;
 
+import simulation.util.Resettable;
+
 public class SimulatorObject implements KeyListener, Serializable {
 	
 	protected HashMap<String, Object> parameters = new HashMap<String, Object>();
@@ -58,4 +60,19 @@ public class SimulatorObject implements KeyListener, Serializable {
 	
 	public void setExtraParameters(double[] parameters) {
 	}
+	
+	/**
+	 * Restores the state the object had when it was created. Only the classes
+	 * annotated with {@link Resettable} are expected to do it completely.
+	 */
+	public void reset() {
+	}
+	
+	/**
+	 * @return true if {@link #reset()} restores all the state of the object,
+	 * see {@link Simulator#reset(long)}
+	 */
+	public boolean isResettable() {
+		return getClass().isAnnotationPresent(Resettable.class);
+	}
 }
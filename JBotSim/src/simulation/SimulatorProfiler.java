@@ -0,0 +1,213 @@
+package simulation;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long each phase of a simulation step takes, in nanosecond
+ * histograms with power of two buckets. Enabled with
+ * <code>--simulator profile=1</code>: the {@link Simulator} times its
+ * phases (sensors, controllers, actuators, environment update, collisions
+ * and each {@link Updatable}) and the robots time each sensor and actuator,
+ * grouped by class.
+ *
+ * The histograms can be written as CSV or JSON. With
+ * <code>profileoutput=file</code> they are written when the simulation
+ * terminates, to <code>file_seed.csv</code> or <code>file_seed.json</code>
+ * (<code>profileformat=csv|json</code>).
+ */
+public class SimulatorProfiler {
+
+	public static final String SENSORS = "sensors";
+	public static final String CONTROLLERS = "controllers";
+	public static final String ACTUATORS = "actuators";
+	public static final String ENVIRONMENT = "environment.update";
+	public static final String COLLISIONS = "updateCollisions";
+	public static final String STEP = "step";
+
+	private ConcurrentHashMap<String, Histogram> phases = new ConcurrentHashMap<String, Histogram>();
+	private ConcurrentHashMap<Class<?>, Histogram> sensors = new ConcurrentHashMap<Class<?>, Histogram>();
+	private ConcurrentHashMap<Class<?>, Histogram> actuators = new ConcurrentHashMap<Class<?>, Histogram>();
+	private ConcurrentHashMap<Class<?>, Histogram> updatables = new ConcurrentHashMap<Class<?>, Histogram>();
+
+	public Histogram getPhase(String name) {
+		Histogram h = phases.get(name);
+		if(h == null) {
+			phases.putIfAbsent(name, new Histogram(name));
+			h = phases.get(name);
+		}
+		return h;
+	}
+
+	public Histogram getSensor(Class<?> c) {
+		return get(sensors, "sensor:", c);
+	}
+
+	public Histogram getActuator(Class<?> c) {
+		return get(actuators, "actuator:", c);
+	}
+
+	public Histogram getUpdatable(Class<?> c) {
+		return get(updatables, "updatable:", c);
+	}
+
+	private Histogram get(ConcurrentHashMap<Class<?>, Histogram> map, String prefix, Class<?> c) {
+		Histogram h = map.get(c);
+		if(h == null) {
+			map.putIfAbsent(c, new Histogram(prefix + c.getSimpleName()));
+			h = map.get(c);
+		}
+		return h;
+	}
+
+	/**
+	 * @return all the histograms, sorted by name
+	 */
+	public ArrayList<Histogram> getHistograms() {
+		ArrayList<Histogram> all = new ArrayList<Histogram>();
+		all.addAll(phases.values());
+		all.addAll(sensors.values());
+		all.addAll(actuators.values());
+		all.addAll(updatables.values());
+		Collections.sort(all);
+		return all;
+	}
+
+	public void writeCSV(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.println("phase,count,total_ns,mean_ns,min_ns,max_ns,p50_ns,p90_ns,p99_ns");
+		for(Histogram h : getHistograms()) {
+			synchronized(h) {
+				out.println(h.getName() + "," + h.getCount() + "," + h.getTotal() + "," + (long)h.getMean() + "," +
+						h.getMin() + "," + h.getMax() + "," + h.getPercentile(0.5) + "," + h.getPercentile(0.9) + "," + h.getPercentile(0.99));
+			}
+		}
+		out.flush();
+	}
+
+	public void writeJSON(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		ArrayList<Histogram> all = getHistograms();
+		out.println("{");
+		for(int i = 0 ; i < all.size() ; i++) {
+			Histogram h = all.get(i);
+			synchronized(h) {
+				out.print("  \"" + h.getName() + "\": {\"count\": " + h.getCount() + ", \"total_ns\": " + h.getTotal() +
+						", \"mean_ns\": " + (long)h.getMean() + ", \"min_ns\": " + h.getMin() + ", \"max_ns\": " + h.getMax() +
+						", \"p50_ns\": " + h.getPercentile(0.5) + ", \"p90_ns\": " + h.getPercentile(0.9) + ", \"p99_ns\": " + h.getPercentile(0.99) +
+						", \"buckets\": [");
+				long[] buckets = h.getBuckets();
+				int last = buckets.length - 1;
+				while(last > 0 && buckets[last] == 0)
+					last--;
+				for(int j = 0 ; j <= last ; j++)
+					out.print((j > 0 ? ", " : "") + buckets[j]);
+				out.print("]}");
+			}
+			out.println(i < all.size() - 1 ? "," : "");
+		}
+		out.println("}");
+		out.flush();
+	}
+
+	/**
+	 * Writes the histograms to <code>prefix_seed.format</code>.
+	 */
+	public void write(String prefix, String format, long seed) throws IOException {
+		boolean json = format.equalsIgnoreCase("json");
+		FileWriter writer = new FileWriter(prefix + "_" + seed + (json ? ".json" : ".csv"));
+		try {
+			if(json)
+				writeJSON(writer);
+			else
+				writeCSV(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Histogram of durations in nanoseconds. Bucket <code>i</code> counts the
+	 * durations in [2^(i-1), 2^i[, bucket 0 counts the durations of 0ns.
+	 */
+	public static class Histogram implements Comparable<Histogram> {
+
+		private String name;
+		private long[] buckets = new long[64];
+		private long count = 0;
+		private long total = 0;
+		private long min = Long.MAX_VALUE;
+		private long max = 0;
+
+		public Histogram(String name) {
+			this.name = name;
+		}
+
+		public synchronized void record(long nanos) {
+			if(nanos < 0)
+				nanos = 0;
+			buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+			count++;
+			total += nanos;
+			if(nanos < min)
+				min = nanos;
+			if(nanos > max)
+				max = nanos;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getTotal() {
+			return total;
+		}
+
+		public synchronized double getMean() {
+			return count == 0 ? 0 : (double)total / count;
+		}
+
+		public synchronized long getMin() {
+			return count == 0 ? 0 : min;
+		}
+
+		public synchronized long getMax() {
+			return max;
+		}
+
+		public synchronized long[] getBuckets() {
+			return buckets.clone();
+		}
+
+		/**
+		 * @return the upper bound of the bucket that contains the given
+		 * fraction of the durations, limited to the maximum duration
+		 */
+		public synchronized long getPercentile(double fraction) {
+			if(count == 0)
+				return 0;
+			long target = (long)Math.ceil(fraction * count);
+			long accumulated = 0;
+			for(int i = 0 ; i < buckets.length ; i++) {
+				accumulated += buckets[i];
+				if(accumulated >= target)
+					return i == 0 ? 0 : Math.min(max, (1L << i) - 1);
+			}
+			return max;
+		}
+
+		@Override
+		public int compareTo(Histogram o) {
+			return name.compareTo(o.name);
+		}
+	}
+}
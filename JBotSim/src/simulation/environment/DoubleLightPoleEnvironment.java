@@ -4,7 +4,9 @@ import simulation.Simulator;
 import simulation.physicalobjects.LightPole;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class DoubleLightPoleEnvironment extends Environment {
 
 	
@@ -3,7 +3,9 @@ package simulation.environment;
 import simulation.Simulator;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
+import simulation.util.Resettable;
 
+@Resettable
 public class EmptyEnvironment extends Environment {
 
 	private double forageLimit;
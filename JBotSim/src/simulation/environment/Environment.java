@@ -14,12 +14,15 @@ import simulation.physicalobjects.GeometricInfo;
 import simulation.physicalobjects.MovableObject;
 import simulation.physicalobjects.PhysicalObject;
 import simulation.physicalobjects.Prey;
+import simulation.physicalobjects.SpatialGrid;
 import simulation.physicalobjects.collisionhandling.SimpleCollisionManager;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CollisionManager;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.ClassSearchUtils;
 import simulation.util.Factory;
+import simulation.util.Resettable;
 
 public abstract class Environment implements KeyListener, Serializable {
 
@@ -41,8 +44,17 @@ public abstract class Environment implements KeyListener, Serializable {
 	protected double width;
 	@ArgumentsAnnotation(name="steps", defaultValue="100")
 	protected int steps;
+	@ArgumentsAnnotation(name="gridcellsize", help="Size of the cells of the spatial grid used to find close objects.", defaultValue="0.5")
+	protected double gridCellSize;
+	@ArgumentsAnnotation(name="collisionmanager", help="Class of the collision manager, such as SweepAndPruneCollisionManager.", defaultValue="SimpleCollisionManager")
+	protected String collisionManagerName;
+	
+	protected SpatialGrid spatialGrid;
+	private volatile boolean spatialGridOutdated = true;
 	
 	protected boolean setup = false;
+	
+	private int robotsBeforeSetup, preyBeforeSetup, objectsBeforeSetup, staticObjectsBeforeSetup, movableObjectsBeforeSetup;
 
 	private GeometricCalculator geometricCalculator;
 
@@ -50,10 +62,21 @@ public abstract class Environment implements KeyListener, Serializable {
 		this.width = args.getArgumentAsDoubleOrSetDefault("width", 4);
 		this.height = args.getArgumentAsDoubleOrSetDefault("height", 4);
 		this.steps = args.getArgumentAsIntOrSetDefault("steps", 100);
-		collisionManager = new SimpleCollisionManager(simulator);
+		this.gridCellSize = args.getArgumentAsDoubleOrSetDefault("gridcellsize", 0.5);
+		this.spatialGrid = new SpatialGrid(gridCellSize, getMaxApproximationSpeed());
+		this.collisionManagerName = args.getArgumentAsStringOrSetDefault("collisionmanager", SimpleCollisionManager.class.getName());
+		collisionManager = createCollisionManager(simulator, collisionManagerName);
 		this.geometricCalculator = new GeometricCalculator();//simulator.getGeoCalculator();
 	}
 	
+	private CollisionManager createCollisionManager(Simulator simulator, String className) {
+		if(className.equals(SimpleCollisionManager.class.getName()))
+			return new SimpleCollisionManager(simulator);
+		if(!className.contains("."))
+			className = ClassSearchUtils.getClassFullName(className);
+		return (CollisionManager)Factory.getInstance(className, simulator);
+	}
+	
 	public void setup(Simulator simulator) {
 		
 		/* eliminate the problem where the first random number can be similar even though
@@ -62,6 +85,12 @@ public abstract class Environment implements KeyListener, Serializable {
 		 */
 		simulator.getRandom().nextDouble();
 		
+		robotsBeforeSetup = robots.size();
+		preyBeforeSetup = prey.size();
+		objectsBeforeSetup = allObjects.size();
+		staticObjectsBeforeSetup = staticObjects.size();
+		movableObjectsBeforeSetup = movableObjects.size();
+		
 		this.setup = true;
 	}
 
@@ -105,8 +134,16 @@ public abstract class Environment implements KeyListener, Serializable {
 		return teleported;
 	}
 
+	/**
+	 * Can be called by the actuators of several robots at the same time in
+	 * parallel mode. The grid is only rebuilt at the start of the next step,
+	 * see {@link #updateSpatialGridIfOutdated()}.
+	 */
 	public void addTeleported(PhysicalObject object) {
-		teleported.add(object);
+		synchronized(teleported) {
+			teleported.add(object);
+		}
+		spatialGridOutdated = true;
 	}
 
 	public void clearTeleported() {
@@ -154,17 +191,48 @@ public abstract class Environment implements KeyListener, Serializable {
 	protected void addObject(PhysicalObject physicalObject) {
 		allObjects.add(physicalObject);
 		teleported.add(physicalObject);
+		spatialGridOutdated = true;
 	}
 	
 	protected void removeObject(PhysicalObject physicalObject) {
 		allObjects.remove(physicalObject);
 		teleported.remove(physicalObject);
+		spatialGridOutdated = true;
 	}
 
 	public void updateCollisions(double time) {
 //		 updateRobotCloseObjects(time);
+		updateSpatialGrid();
 		collisionManager.handleCollisions(this, time);
 	}
+	
+	/**
+	 * Rebuilds the spatial grid with the current position of all the objects.
+	 * This is called once per step, before handling the collisions.
+	 */
+	public void updateSpatialGrid() {
+		spatialGrid.rebuild(allObjects);
+		spatialGridOutdated = false;
+	}
+	
+	/**
+	 * Rebuilds the spatial grid if objects were added, removed or teleported
+	 * since the last rebuild. This is called by the simulator at the start of
+	 * each step, before the sensors are updated.
+	 */
+	public void updateSpatialGridIfOutdated() {
+		if(spatialGridOutdated)
+			updateSpatialGrid();
+	}
+	
+	/**
+	 * Returns the spatial grid of the environment. The grid is never rebuilt
+	 * here, since the sensors and actuators of several robots query it at the
+	 * same time in parallel mode: it is only rebuilt between the steps.
+	 */
+	public SpatialGrid getSpatialGrid() {
+		return spatialGrid;
+	}
 
 	public void updateRobotCloseObjects(double time) {
 		for (Robot r : robots) {
@@ -180,7 +248,39 @@ public abstract class Environment implements KeyListener, Serializable {
 		return steps;
 	}
 
-	public void reset() {
+	/**
+	 * Removes the objects that were added by {@link #setup(Simulator)}, so
+	 * that the environment can be setup again for another simulation, see
+	 * {@link Simulator#reset(long)}. Subclasses annotated with
+	 * {@link Resettable} must also restore their own state, and add their
+	 * objects only after calling <code>super.setup(simulator)</code>.
+	 */
+	public void reset(Simulator simulator) {
+		if(setup) {
+			truncate(robots, robotsBeforeSetup);
+			truncate(prey, preyBeforeSetup);
+			truncate(allObjects, objectsBeforeSetup);
+			truncate(staticObjects, staticObjectsBeforeSetup);
+			truncate(movableObjects, movableObjectsBeforeSetup);
+		}
+		teleported.clear();
+		teleported.addAll(allObjects);
+		spatialGridOutdated = true;
+		collisionManager = createCollisionManager(simulator, collisionManagerName);
+		setup = false;
+	}
+	
+	private static void truncate(ArrayList<?> list, int size) {
+		if(list.size() > size)
+			list.subList(size, list.size()).clear();
+	}
+	
+	/**
+	 * @return true if {@link #reset(Simulator)} restores all the state of the
+	 * environment
+	 */
+	public boolean isResettable() {
+		return getClass().isAnnotationPresent(Resettable.class);
 	}
 
 	public void keyPressed(KeyEvent e) {
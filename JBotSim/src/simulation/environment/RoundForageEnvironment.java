@@ -12,7 +12,9 @@ import simulation.robot.actuators.PreyPickerActuator;
 import simulation.robot.sensors.PreyCarriedSensor;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class RoundForageEnvironment extends Environment {
 
 	private static final double PREY_RADIUS = 0.025;
@@ -73,6 +75,12 @@ public class RoundForageEnvironment extends Environment {
 		addObject(nest);
 	}
 
+	@Override
+	public void reset(Simulator simulator) {
+		super.reset(simulator);
+		numberOfFoodSuccessfullyForaged = 0;
+	}
+
 	private Vector2d newRandomPosition() {
 		double radius = random.nextDouble()*(forageLimit-nestLimit)+nestLimit*1.1;
 		double angle = random.nextDouble()*2*Math.PI;
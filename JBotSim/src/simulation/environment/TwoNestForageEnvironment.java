@@ -12,7 +12,9 @@ import simulation.robot.actuators.PreyPickerActuator;
 import simulation.robot.sensors.PreyCarriedSensor;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class TwoNestForageEnvironment extends Environment {
 
 	protected static final double PREY_RADIUS = 0.025;
@@ -72,6 +74,13 @@ public class TwoNestForageEnvironment extends Environment {
 		deployPreys(simulator);	
 	}
 
+	@Override
+	public void reset(Simulator simulator) {
+		super.reset(simulator);
+		numberOfFoodSuccessfullyForagedNestA = 0;
+		numberOfFoodSuccessfullyForagedNestB = 0;
+	}
+
 	protected void deployPreys(Simulator simulator) {
 		for (int i = 0; i < getAmoutOfFood(); i++) {
 			addPrey(new Prey(simulator, "Prey " + i, newRandomPosition(), 0,
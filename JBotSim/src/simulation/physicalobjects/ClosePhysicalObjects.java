@@ -2,158 +2,109 @@ package simulation.physicalobjects;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.ListIterator;
 import simulation.environment.Environment;
 import simulation.physicalobjects.checkers.AllowedObjectsChecker;
 
+/**
+ * The objects allowed by a checker that are close to an owner object. The
+ * objects are obtained, on every update, by querying the environment's
+ * {@link SpatialGrid} around the position of the owner. If there is no owner,
+ * all the allowed objects in the environment are returned.
+ *
+ * If the grid was rebuilt since the last update, for instance because the
+ * collision manager does not update the close objects, they are updated
+ * again when they are iterated.
+ */
 public class ClosePhysicalObjects implements Serializable {
 
-	private static final double EXTENDED_VISIBILITY = 1;
-
-	private LinkedList<PhysicalObjectDistance> closeObjects = new LinkedList<PhysicalObjectDistance>();
-	private LinkedList<PhysicalObjectDistance> farObjects   = new LinkedList<PhysicalObjectDistance>();
-	private Double time;
-	private double farTime;
-	private boolean notInitialized = true;
+	private ArrayList<PhysicalObjectDistance> closeObjects = new ArrayList<PhysicalObjectDistance>();
+	private ArrayList<PhysicalObject> queryResult = new ArrayList<PhysicalObject>();
+	private int numberOfCloseObjects = 0;
+	private double time;
+	private int gridVersion = -1;
 
 	private double range;
-	private double twiceSpeed;
 	private AllowedObjectsChecker allowedObjectsChecker;
+	private PhysicalObject owner;
+	private double[] ownerBounds = new double[4];
 
 	protected Environment env;
 
 	public ClosePhysicalObjects(Environment env, double range, AllowedObjectsChecker allowedObjectsChecker) {
+		this(env, null, range, allowedObjectsChecker);
+	}
+
+	public ClosePhysicalObjects(Environment env, PhysicalObject owner, double range, AllowedObjectsChecker allowedObjectsChecker) {
 		this.env = env;
+		this.owner = owner;
 		this.range = range*1.5;
 		this.allowedObjectsChecker = allowedObjectsChecker;
-		farTime = 0;
-		time = 0.0;
-		twiceSpeed = env.getMaxApproximationSpeed();
 	}
 
 	public void update(double time, ArrayList<PhysicalObject> teleported){
-		if(notInitialized){
-			teleported = env.getAllObjects();
-			notInitialized=false;
-		}
 		this.time = time;
 
-		if (teleported.size() > 0) {
-			if(closeObjects.isEmpty() && farObjects.isEmpty()){
-				updateTeleportedNoCheck(teleported);
-			} else {
-				updateTeleported(teleported);
-			}
+		SpatialGrid grid = env.getSpatialGrid();
+		gridVersion = grid.getVersion();
+		queryResult.clear();
+
+		if(owner == null) {
+			grid.queryAll(allowedObjectsChecker, queryResult);
+		} else {
+			SpatialGrid.getBounds(owner, ownerBounds);
+			double x = (ownerBounds[0] + ownerBounds[1]) / 2;
+			double y = (ownerBounds[2] + ownerBounds[3]) / 2;
+			double extent = Math.max(ownerBounds[1] - ownerBounds[0], ownerBounds[3] - ownerBounds[2]) / 2;
+			grid.query(x, y, range + extent, allowedObjectsChecker, queryResult);
 		}
-		updateCloseObjects();
-	}
-
-	public CloseObjectIterator iterator(){
-		return new CloseObjectIterator(closeObjects.listIterator());
-	}
 
-	private void updateCloseObjects() {
-		if(farObjects.size() > 0){
-			Iterator<PhysicalObjectDistance> i = farObjects.iterator();
-			PhysicalObjectDistance next = i.next();
-			int o = 0;
-			while(next.getTime() <= time){
-				if(next.getObject().isEnabled()) {
-					i.remove();
-					o++;
-					closeObjects.add(next);
-				}
-				if (!i.hasNext()){
-					break;
-				}
-				next = i.next();
-			}
+		numberOfCloseObjects = 0;
+		for(int i = 0 ; i < queryResult.size() ; i++) {
+			PhysicalObject o = queryResult.get(i);
+			if(numberOfCloseObjects == closeObjects.size())
+				closeObjects.add(new PhysicalObjectDistance(o, time));
+			else
+				closeObjects.get(numberOfCloseObjects).set(o, time);
+			numberOfCloseObjects++;
 		}
 	}
 
-
-	private void updateTeleported(ArrayList<PhysicalObject> teleportedObjects){
-		//Expensive operation... should be called few times
-		for(PhysicalObject physicalObject : teleportedObjects){
-			if(allowedObjectsChecker.isAllowed(physicalObject)){
-				PhysicalObjectDistance teleported = new PhysicalObjectDistance(physicalObject,0.0);
-				if(!closeObjects.contains(teleported)){
-					farObjects.remove(teleported);
-					closeObjects.add(teleported);
-				}
-			}
-		}
+	public CloseObjectIterator iterator(){
+		updateIfOutdated();
+		return new CloseObjectIterator();
 	}
 
-	private void updateTeleportedNoCheck(ArrayList<PhysicalObject> teleportedObjects){
-		//Expensive operation... should be called few times
-		for(PhysicalObject physicalObject : teleportedObjects){
-			if(allowedObjectsChecker.isAllowed(physicalObject)){
-				PhysicalObjectDistance teleported = new PhysicalObjectDistance(physicalObject,0.0);
-				closeObjects.add(teleported);
-			}
-		}
+	public int getNumberOfCloseObjects() {
+		updateIfOutdated();
+		return numberOfCloseObjects;
 	}
 
-	private void insertInFarObjects(PhysicalObjectDistance physicalObject) {
-		ListIterator<PhysicalObjectDistance> i = farObjects.listIterator();
-
-		while(i.hasNext()){
-			PhysicalObjectDistance next = i.next();
-			if(next.getTime()>=physicalObject.getTime()){
-				i.previous();
-				i.add(physicalObject);
-				return;
-			}
-		}
-		farObjects.add(physicalObject);
-
+	private void updateIfOutdated() {
+		if(env != null && gridVersion != env.getSpatialGrid().getVersion())
+			update(time, null);
 	}
 
 	public void debugInfo(){
-		System.out.println(time + " CO " +closeObjects.size() + " FO: " + farObjects.size());
+		System.out.println(time + " CO " + numberOfCloseObjects);
 	}
-	public class CloseObjectIterator{
-		private ListIterator<PhysicalObjectDistance> iterador;
-
-		//To save some null checks... and a new instantiation every cycle
-		private PhysicalObjectDistance emptyObject				= new PhysicalObjectDistance(null, 0.0); 
-		private PhysicalObjectDistance currentObject 			= emptyObject;
 
-
-		public CloseObjectIterator(ListIterator<PhysicalObjectDistance> iterador) {
-			this.iterador = iterador;
-			currentObject=emptyObject;
-		}
+	public class CloseObjectIterator{
+		private int index = 0;
 
 		public boolean hasNext(){
-			if (iterador.hasNext())
-				return true;
-			updateCurrentElement();
-			return false;
+			return index < numberOfCloseObjects;
 		}
 
 		public PhysicalObjectDistance next(){
-			updateCurrentElement();
-			currentObject  = iterador.next();
-			return currentObject;
-		}
-
-		private void updateCurrentElement() {
-			if(currentObject.getTime() > time) {
-				iterador.remove();
-				insertInFarObjects(currentObject);
-			}
+			return closeObjects.get(index++);
 		}
 
+		/**
+		 * Kept for compatibility: the close objects are recomputed from the
+		 * spatial grid on every update, so the distance is only stored.
+		 */
 		public void updateCurrentDistance(Double distanceBetween) {
-			double d = range - distanceBetween;
-			if(d < 0) //far away
-				currentObject.setTime(time-(d/twiceSpeed));	
-			else
-				currentObject.setTime(time);
+			closeObjects.get(index-1).setLastDistance(distanceBetween);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -44,6 +44,18 @@ public class MovableObject extends PhysicalObject {
 		this.previousPosition = position;
 	}
 	
+	/**
+	 * Same as {@link #moveTo(Vector2d)}, but reuses the previous position
+	 * vector instead of keeping a reference to the argument.
+	 */
+	public void moveTo(double x, double y) {
+		this.position.set(x, y);
+		if(previousPosition == null || previousPosition == position)
+			previousPosition = new Vector2d(x, y);
+		else
+			previousPosition.set(x, y);
+	}
+	
 	public Vector2d getPreviousPosition() {
 		return previousPosition;
 	}
@@ -5,8 +5,8 @@ import java.io.Serializable;
 public class PhysicalObjectDistance implements
 		Comparable<PhysicalObjectDistance>, Serializable {
 	private PhysicalObject object;
-	private Double time;
-	private Double lastDistance = 0.0;
+	private double time;
+	private double lastDistance = 0.0;
 
 	public PhysicalObjectDistance(PhysicalObject object, Double time) {
 		super();
@@ -14,6 +14,12 @@ public class PhysicalObjectDistance implements
 		this.time = time;
 	}
 
+	void set(PhysicalObject object, double time) {
+		this.object = object;
+		this.time = time;
+		this.lastDistance = 0.0;
+	}
+
 	public Double getTime() {
 		return time;
 	}
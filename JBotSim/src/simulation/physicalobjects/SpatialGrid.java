@@ -0,0 +1,294 @@
+package simulation.physicalobjects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import simulation.physicalobjects.checkers.AllowedObjectsChecker;
+import simulation.physicalobjects.collisionhandling.knotsandbolts.AxisAlignedBoundingBox;
+import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
+
+/**
+ * Uniform grid (spatial hash) over all the objects of the environment. Each
+ * object is stored once, in the cell that contains its position, and queries
+ * are expanded by the largest half-extent of the stored objects. Objects that
+ * are larger than half a cell (walls, big nests) are kept in a separate list
+ * that is checked on every query.
+ *
+ * The grid is rebuilt once per step by the environment, so the cost of a
+ * query depends on the local density of objects and not on the total number
+ * of objects in the simulation.
+ */
+public class SpatialGrid implements Serializable {
+
+	private static final long serialVersionUID = -1406573402264564385L;
+
+	private double cellSize;
+	private double margin;
+
+	private int size = 0;
+	private int mask = 0;
+
+	//objects sorted by bucket, with the objects of bucket i in [bucketStart[i],bucketStart[i+1])
+	private int[] bucketStart = new int[1];
+	private PhysicalObject[] objects = new PhysicalObject[0];
+	private int[] cellX = new int[0];
+	private int[] cellY = new int[0];
+	private double[] minX = new double[0];
+	private double[] maxX = new double[0];
+	private double[] minY = new double[0];
+	private double[] maxY = new double[0];
+
+	//temporary buffers used while rebuilding
+	private int[] buckets = new int[0];
+	private PhysicalObject[] sortedObjects = new PhysicalObject[0];
+	private double[] sortedBounds = new double[0];
+	private int[] sortedCells = new int[0];
+	private double[] tempBounds = new double[4];
+
+	private ArrayList<PhysicalObject> largeObjects = new ArrayList<PhysicalObject>();
+	private ArrayList<double[]> largeBounds = new ArrayList<double[]>();
+
+	private double maxHalfExtent = 0;
+	private int version = 0;
+
+	/**
+	 * @param cellSize the side of each cell of the grid
+	 * @param margin extra distance added to each query to account for objects
+	 * that move between two rebuilds of the grid
+	 */
+	public SpatialGrid(double cellSize, double margin) {
+		this.cellSize = cellSize;
+		this.margin = margin;
+	}
+
+	public void rebuild(ArrayList<PhysicalObject> allObjects) {
+
+		int n = allObjects.size();
+		ensureCapacity(n);
+
+		version++;
+		largeObjects.clear();
+		maxHalfExtent = 0;
+		size = 0;
+
+		for(int i = 0 ; i < n ; i++) {
+			PhysicalObject o = allObjects.get(i);
+			getBounds(o, tempBounds);
+
+			double halfExtent = Math.max(tempBounds[1] - tempBounds[0], tempBounds[3] - tempBounds[2]) / 2;
+
+			if(halfExtent > cellSize / 2) {
+				addLargeObject(o, tempBounds);
+				continue;
+			}
+
+			maxHalfExtent = Math.max(maxHalfExtent, halfExtent);
+
+			minX[size] = tempBounds[0];
+			maxX[size] = tempBounds[1];
+			minY[size] = tempBounds[2];
+			maxY[size] = tempBounds[3];
+			objects[size] = o;
+			size++;
+		}
+
+		int numberOfBuckets = Integer.highestOneBit(Math.max(size, 1)) * 2;
+		mask = numberOfBuckets - 1;
+
+		if(bucketStart.length < numberOfBuckets + 1)
+			bucketStart = new int[numberOfBuckets + 1];
+		else
+			Arrays.fill(bucketStart, 0, numberOfBuckets + 1, 0);
+
+		//counting sort of the objects by bucket
+		for(int i = 0 ; i < size ; i++) {
+			int cx = cell((minX[i] + maxX[i]) / 2);
+			int cy = cell((minY[i] + maxY[i]) / 2);
+			cellX[i] = cx;
+			cellY[i] = cy;
+			buckets[i] = bucket(cx, cy);
+			bucketStart[buckets[i] + 1]++;
+		}
+
+		for(int i = 0 ; i < numberOfBuckets ; i++)
+			bucketStart[i + 1] += bucketStart[i];
+
+		sort();
+	}
+
+	/**
+	 * Adds to <code>result</code> all the objects accepted by the checker whose
+	 * bounding box is at most <code>radius</code> away from (x,y). The result
+	 * can contain objects slightly further away, but never misses a close one.
+	 */
+	public void query(double x, double y, double radius, AllowedObjectsChecker checker, ArrayList<PhysicalObject> result) {
+
+		double r = radius + margin;
+
+		for(int i = 0 ; i < largeObjects.size() ; i++) {
+			double[] b = largeBounds.get(i);
+			PhysicalObject o = largeObjects.get(i);
+			if(isClose(x, y, r, b[0], b[1], b[2], b[3]) && checker.isAllowed(o))
+				result.add(o);
+		}
+
+		if(size == 0)
+			return;
+
+		double expanded = r + maxHalfExtent;
+		int x1 = cell(x - expanded);
+		int x2 = cell(x + expanded);
+		int y1 = cell(y - expanded);
+		int y2 = cell(y + expanded);
+
+		long cells = (long)(x2 - x1 + 1) * (y2 - y1 + 1);
+
+		if(cells > mask + 1) {
+			//the query covers more cells than there are buckets, so it is cheaper to check everything
+			for(int i = 0 ; i < size ; i++)
+				addIfClose(i, x, y, r, checker, result);
+			return;
+		}
+
+		for(int cx = x1 ; cx <= x2 ; cx++) {
+			for(int cy = y1 ; cy <= y2 ; cy++) {
+				int b = bucket(cx, cy);
+				for(int i = bucketStart[b] ; i < bucketStart[b + 1] ; i++) {
+					if(cellX[i] == cx && cellY[i] == cy)
+						addIfClose(i, x, y, r, checker, result);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds all the objects accepted by the checker to <code>result</code>.
+	 */
+	public void queryAll(AllowedObjectsChecker checker, ArrayList<PhysicalObject> result) {
+		for(int i = 0 ; i < largeObjects.size() ; i++) {
+			if(checker.isAllowed(largeObjects.get(i)))
+				result.add(largeObjects.get(i));
+		}
+		for(int i = 0 ; i < size ; i++) {
+			if(checker.isAllowed(objects[i]))
+				result.add(objects[i]);
+		}
+	}
+
+	/**
+	 * Number of times the grid was rebuilt, used to know if the results of a
+	 * previous query are outdated.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public double getCellSize() {
+		return cellSize;
+	}
+
+	private void addIfClose(int i, double x, double y, double r, AllowedObjectsChecker checker, ArrayList<PhysicalObject> result) {
+		if(isClose(x, y, r, minX[i], maxX[i], minY[i], maxY[i]) && checker.isAllowed(objects[i]))
+			result.add(objects[i]);
+	}
+
+	private static boolean isClose(double x, double y, double r, double x1, double x2, double y1, double y2) {
+		double dx = x < x1 ? x1 - x : (x > x2 ? x - x2 : 0);
+		double dy = y < y1 ? y1 - y : (y > y2 ? y - y2 : 0);
+		return dx*dx + dy*dy <= r*r;
+	}
+
+	private void addLargeObject(PhysicalObject o, double[] bounds) {
+		int index = largeObjects.size();
+		largeObjects.add(o);
+		if(largeBounds.size() <= index)
+			largeBounds.add(new double[4]);
+		System.arraycopy(bounds, 0, largeBounds.get(index), 0, 4);
+	}
+
+	private void sort() {
+		//bucketStart is used as an insertion cursor and then shifted back
+		for(int i = 0 ; i < size ; i++) {
+			int position = bucketStart[buckets[i]]++;
+			sortedObjects[position] = objects[i];
+			sortedBounds[position * 4] = minX[i];
+			sortedBounds[position * 4 + 1] = maxX[i];
+			sortedBounds[position * 4 + 2] = minY[i];
+			sortedBounds[position * 4 + 3] = maxY[i];
+			sortedCells[position * 2] = cellX[i];
+			sortedCells[position * 2 + 1] = cellY[i];
+		}
+
+		for(int i = mask + 1 ; i > 0 ; i--)
+			bucketStart[i] = bucketStart[i - 1];
+		bucketStart[0] = 0;
+
+		for(int i = 0 ; i < size ; i++) {
+			objects[i] = sortedObjects[i];
+			sortedObjects[i] = null;
+			minX[i] = sortedBounds[i * 4];
+			maxX[i] = sortedBounds[i * 4 + 1];
+			minY[i] = sortedBounds[i * 4 + 2];
+			maxY[i] = sortedBounds[i * 4 + 3];
+			cellX[i] = sortedCells[i * 2];
+			cellY[i] = sortedCells[i * 2 + 1];
+		}
+	}
+
+	private void ensureCapacity(int n) {
+		if(objects.length < n) {
+			int capacity = Math.max(n, objects.length * 2);
+			objects = new PhysicalObject[capacity];
+			cellX = new int[capacity];
+			cellY = new int[capacity];
+			minX = new double[capacity];
+			maxX = new double[capacity];
+			minY = new double[capacity];
+			maxY = new double[capacity];
+			buckets = new int[capacity];
+			sortedObjects = new PhysicalObject[capacity];
+			sortedBounds = new double[capacity * 4];
+			sortedCells = new int[capacity * 2];
+		}
+	}
+
+	private int cell(double coordinate) {
+		return (int)Math.floor(coordinate / cellSize);
+	}
+
+	private int bucket(int cx, int cy) {
+		int h = cx * 73856093 ^ cy * 19349663;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Bounds of the object in the form {minX, maxX, minY, maxY}. The bounds
+	 * of circular objects are computed from the current position of the
+	 * parent, since their AABB is only refreshed during collision handling.
+	 */
+	static void getBounds(PhysicalObject o, double[] bounds) {
+		double x = o.getPosition().getX();
+		double y = o.getPosition().getY();
+
+		if(o.shape instanceof CircularShape) {
+			CircularShape circle = (CircularShape)o.shape;
+			double r = circle.getRadius();
+			x += circle.getRelativePosition().getX();
+			y += circle.getRelativePosition().getY();
+			bounds[0] = x - r;
+			bounds[1] = x + r;
+			bounds[2] = y - r;
+			bounds[3] = y + r;
+		} else if(o.shape != null) {
+			AxisAlignedBoundingBox aabb = o.shape.getAABB();
+			bounds[0] = Math.min(x, aabb.getMinX());
+			bounds[1] = Math.max(x, aabb.getMaxX());
+			bounds[2] = Math.min(y, aabb.getMinY());
+			bounds[3] = Math.max(y, aabb.getMaxY());
+		} else {
+			bounds[0] = bounds[1] = x;
+			bounds[2] = bounds[3] = y;
+		}
+	}
+}
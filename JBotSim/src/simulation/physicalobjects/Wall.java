@@ -8,6 +8,7 @@ import java.awt.Shape;
 import java.io.Serializable;
 
 import net.jafama.FastMath;
+import mathutils.Geometry;
 import mathutils.MathUtils;
 import mathutils.Vector2d;
 import simulation.Simulator;
@@ -20,6 +21,8 @@ public class Wall extends PhysicalObject{
 
 	private Edge left, right, top, bottom;
 	private Edge[] edges;
+	//the edges as {x1,y1,x2,y2} for each edge, used to avoid allocations in distance checks
+	private double[] edgeCoordinates = new double[16];
 	public Color color = Color.BLUE;
 	
 	public Wall(Simulator simulator, String name, double x, double y,
@@ -34,6 +37,7 @@ public class Wall extends PhysicalObject{
 		this.setPosition(new Vector2d(x,y));
 		initializeEdges();
 		edges = getEdges();
+		updateEdgeCoordinates();
 		
 		defineShape(simulator);
 		
@@ -52,6 +56,7 @@ public class Wall extends PhysicalObject{
 		this.height = wallSize;
 		initializeEdges(p1,p2);
 		edges = getEdges();
+		updateEdgeCoordinates();
 		defineShape(simulator);
 	}
 	
@@ -75,6 +80,16 @@ public class Wall extends PhysicalObject{
 	public void moveWall() {
 		initializeEdges();
 		edges = getEdges();
+		updateEdgeCoordinates();
+	}
+	
+	private void updateEdgeCoordinates() {
+		for(int i = 0 ; i < edges.length ; i++) {
+			edgeCoordinates[i*4] = edges[i].getP1().x;
+			edgeCoordinates[i*4+1] = edges[i].getP1().y;
+			edgeCoordinates[i*4+2] = edges[i].getP2().x;
+			edgeCoordinates[i*4+3] = edges[i].getP2().y;
+		}
 	}
 
 	private void initializeEdges(Vector2d p1, Vector2d p2) {
@@ -174,22 +189,21 @@ public class Wall extends PhysicalObject{
 	}
 	
 	public Vector2d intersectsWithLineSegment(Vector2d p1, Vector2d p2) {
-		Vector2d closestPoint      = null;
-		Vector2d lineSegmentVector = new Vector2d(p2);
-		lineSegmentVector.sub(p1);
+		double dx = p2.x - p1.x;
+		double dy = p2.y - p1.y;
 		
 		for (Edge e : edges) {
-			double dot = e.getNormal().dot(lineSegmentVector);
+			double dot = e.getNormal().x*dx + e.getNormal().y*dy;
 			if (dot < 0) {
 				Vector2d e1 = e.getP1();
 				Vector2d e2 = e.getP2();
-				closestPoint = MathUtils.intersectLines(p1, p2, e1, e2);
-				if(closestPoint != null) {
-					break;
+				double ua = Geometry.segmentIntersection(p1.x, p1.y, p2.x, p2.y, e1.x, e1.y, e2.x, e2.y);
+				if(ua >= 0) {
+					return new Vector2d(p1.x + ua*dx, p1.y + ua*dy);
 				}
 			}
 		}
-		return closestPoint;
+		return null;
 	}
 	
 	public Vector2d intersectsWithLineSegment(Vector2d p1, Vector2d p2, double maxReflectionAngle) {
@@ -224,55 +238,26 @@ public class Wall extends PhysicalObject{
 	}
 	
 	public double getMinDist(Vector2d pos) {
+		return getMinDist(pos.x, pos.y);
+	}
+	
+	public double getMinDist(double x, double y) {
 		double d = Double.MAX_VALUE;
 		
-		for (Edge e : edges) {
-			Vector2d e1 = new Vector2d(e.getP1());
-			Vector2d e2 = new Vector2d(e.getP2());
-			d = Math.min(d,distToSegment(new Vector2d(pos), e1, e2));
+		for (int i = 0 ; i < edgeCoordinates.length ; i+=4) {
+			d = Math.min(d, Geometry.distanceToSegment(x, y, 
+					edgeCoordinates[i], edgeCoordinates[i+1], edgeCoordinates[i+2], edgeCoordinates[i+3]));
 		}
 		return d;
 	}
+	
 	/**
 	 * "Shortest distance between a point and a line segment" by Grumdrig
 	 * http://stackoverflow.com/questions/849211/shortest-distance-between-a-point-and-a-line-segment
 	 */
 	public static double distToSegment(Vector2d p, Vector2d v, Vector2d w) {
-
-	       double l2 = FastMath.pow2(v.x - w.x) + FastMath.pow2(v.y - w.y);
-	       if (l2 == 0.0) {
-	           return p.distanceTo(v);   // v == w case
-	       }
-	       // Consider the line extending the segment, parameterized as v + t (w - v).
-	       // We find projection of point p onto the line. 
-	       // It falls where t = [(p-v) . (w-v)] / |w-v|^2
-	       
-	       Vector2d pp = new Vector2d(p);
-	       Vector2d vv = new Vector2d(v);
-	       Vector2d ww = new Vector2d(w);
-	       
-	       pp.sub(v);
-	       ww.sub(v);
-	       double t = pp.dot(ww) / l2;
-	       
-	       if (t < 0.0) {
-	           return p.distanceTo(v); // Beyond the 'v' end of the segment
-	       } else if (t > 1.0) {
-	           return p.distanceTo(w);  // Beyond the 'w' end of the segment
-	       }
-	       
-	    // Projection falls on the segment
-
-	       pp = new Vector2d(p);
-	       vv = new Vector2d(v);
-	       ww = new Vector2d(w);
-	       
-	       ww.sub(v);
-	       ww.multiply(t);
-	       vv.add(ww); 
-	       
-	       return p.distanceTo(vv);
-	   }
+		return Geometry.distanceToSegment(p.x, p.y, v.x, v.y, w.x, w.y);
+	}
 	
 	public static Vector2d debug(Vector2d p, Vector2d v, Vector2d w) {
 
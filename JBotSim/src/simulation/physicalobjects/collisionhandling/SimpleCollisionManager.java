@@ -23,6 +23,9 @@ public class SimpleCollisionManager extends CollisionManager {
 	
 	public boolean drag = false;
 	public double dragValue = 0.5;
+	
+	//reused between calls to avoid allocations in every step
+	private Vector2d temp = new Vector2d();
 
 	public SimpleCollisionManager(Simulator simulator) {
 		super(simulator);
@@ -48,8 +51,6 @@ public class SimpleCollisionManager extends CollisionManager {
 			mo.shape.getCloseWalls().update(time, environment.getTeleported());
 		}
 
-		Vector2d temp = new Vector2d();
-
 		// robot - robot collisions
 		for (Robot robot : environment.getRobots()) {
 			ClosePhysicalObjects closeRobots = robot.shape.getCloseRobot();
@@ -93,7 +94,7 @@ public class SimpleCollisionManager extends CollisionManager {
 
 				Wall closeWall = (Wall) (iterator.next().getObject());
 				
-				if(closeWall.getMinDist(new Vector2d(robot.getPosition())) < robot.getRadius()) {
+				if(closeWall.getMinDist(robot.getPosition().x, robot.getPosition().y) < robot.getRadius()) {
 					
 					PolygonShape ps = (PolygonShape) closeWall.shape;
 					ps.collision = true;
@@ -112,23 +113,21 @@ public class SimpleCollisionManager extends CollisionManager {
 						
 						Vector2d prev = robot.getPreviousPosition();
 						
-						Vector2d left = new Vector2d(robot.getPreviousPosition());
-						left.add(new Vector2d(speed*Math.cos(orientation-Math.PI/2), speed*Math.sin(orientation-Math.PI/2)));
+						double leftX = prev.x + speed*Math.cos(orientation-Math.PI/2);
+						double leftY = prev.y + speed*Math.sin(orientation-Math.PI/2);
 						
-						Vector2d right = new Vector2d(robot.getPreviousPosition());
-						right.add(new Vector2d(speed*Math.cos(orientation+Math.PI/2), speed*Math.sin(orientation+Math.PI/2)));
+						double rightX = prev.x + speed*Math.cos(orientation+Math.PI/2);
+						double rightY = prev.y + speed*Math.sin(orientation+Math.PI/2);
 						
-						Vector2d[] pos = new Vector2d[]{left,right};
-						
-						if(!leftFirst) {
-							pos[0] = right;
-							pos[1] = left;
-						}
+						double firstX = leftFirst ? leftX : rightX;
+						double firstY = leftFirst ? leftY : rightY;
+						double secondX = leftFirst ? rightX : leftX;
+						double secondY = leftFirst ? rightY : leftY;
 
-						if(validPosition(pos[0],robot.getRadius(),closeWalls))
-							robot.moveTo(pos[0]);
-						else if(validPosition(pos[1],robot.getRadius(),closeWalls))
-							robot.moveTo(pos[1]);
+						if(validPosition(firstX, firstY, robot.getRadius(), closeWalls))
+							robot.moveTo(firstX, firstY);
+						else if(validPosition(secondX, secondY, robot.getRadius(), closeWalls))
+							robot.moveTo(secondX, secondY);
 						else
 							robot.moveTo(prev);
 						
@@ -149,7 +148,7 @@ public class SimpleCollisionManager extends CollisionManager {
 				
 				Wall closeWall = (Wall) (iterator.next().getObject());
 				
-				if(closeWall.getMinDist(new Vector2d(prey.getPosition())) < prey.getRadius()) {
+				if(closeWall.getMinDist(prey.getPosition().x, prey.getPosition().y) < prey.getRadius()) {
 					
 					PolygonShape ps = (PolygonShape) closeWall.shape;
 					ps.collision = true;
@@ -286,12 +285,12 @@ public class SimpleCollisionManager extends CollisionManager {
 		}
 	}
 	
-	private boolean validPosition(Vector2d pos, double radius, ClosePhysicalObjects closeWalls) {
+	private boolean validPosition(double x, double y, double radius, ClosePhysicalObjects closeWalls) {
 		CloseObjectIterator iterator = closeWalls.iterator();
 
 		while(iterator.hasNext()) {
 			Wall w = (Wall)iterator.next().getObject();
-			if(w.getMinDist(pos) < radius)
+			if(w.getMinDist(x, y) < radius)
 				return false;
 		}
 		return true;
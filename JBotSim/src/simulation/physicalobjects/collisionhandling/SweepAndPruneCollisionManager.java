@@ -0,0 +1,493 @@
+package simulation.physicalobjects.collisionhandling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import mathutils.Vector2d;
+import simulation.Simulator;
+import simulation.environment.Environment;
+import simulation.physicalobjects.MovableObject;
+import simulation.physicalobjects.PhysicalObject;
+import simulation.physicalobjects.PhysicalObjectType;
+import simulation.physicalobjects.Prey;
+import simulation.physicalobjects.Wall;
+import simulation.physicalobjects.collisionhandling.knotsandbolts.AxisAlignedBoundingBox;
+import simulation.physicalobjects.collisionhandling.knotsandbolts.PolygonShape;
+import simulation.robot.Robot;
+
+/**
+ * Collision manager that finds the candidate pairs with a sort-and-sweep over
+ * the AABBs of the shapes, instead of the close objects of each shape. The
+ * objects are kept sorted by the left side of their AABB between steps, so
+ * the sort only has to fix the few objects that moved past each other.
+ *
+ * The collisions are resolved with the same rules as the
+ * {@link SimpleCollisionManager}: robot-robot, robot-wall, prey-wall,
+ * robot-prey and prey-prey, in this order.
+ *
+ * Select it with <code>--environment collisionmanager=SweepAndPruneCollisionManager</code>.
+ */
+public class SweepAndPruneCollisionManager extends SimpleCollisionManager {
+
+	private static final long serialVersionUID = 7690915817053646359L;
+
+	private static final int ROBOT = 0;
+	private static final int PREY = 1;
+	private static final int WALL = 2;
+
+	//robots first, then prey, then walls
+	private PhysicalObject[] objects = new PhysicalObject[0];
+	private int[] types = new int[0];
+	private double[] minX = new double[0];
+	private double[] maxX = new double[0];
+	private double[] minY = new double[0];
+	private double[] maxY = new double[0];
+	private int numberOfObjects = 0;
+	private int numberOfRobots = 0;
+	private int numberOfPrey = 0;
+
+	//indexes of the objects sorted by minX, kept between steps
+	private int[] order = new int[0];
+
+	private PairList robotRobot = new PairList();
+	private PairList robotWall = new PairList();
+	private PairList preyWall = new PairList();
+	private PairList robotPrey = new PairList();
+	private PairList preyPrey = new PairList();
+
+	private Vector2d temp = new Vector2d();
+
+	public SweepAndPruneCollisionManager(Simulator simulator) {
+		super(simulator);
+	}
+
+	@Override
+	public void handleCollisions(Environment environment, double time) {
+
+		ArrayList<Robot> robots = environment.getRobots();
+		for(int i = 0 ; i < robots.size() ; i++)
+			robots.get(i).getCollidingObjects().clear();
+
+		ArrayList<MovableObject> movableObjects = environment.getMovableObjects();
+		for(int i = 0 ; i < movableObjects.size() ; i++) {
+			MovableObject mo = movableObjects.get(i);
+			mo.setInvolvedInCollison(false);
+			mo.setInvolvedInCollisonWall(false);
+			mo.shape.computeNewPositionAndOrientationFromParent();
+		}
+
+		collectObjects(environment);
+		sortByMinX();
+		findPairs();
+
+		handleRobotRobot();
+		handleRobotWall();
+		handlePreyWall();
+		handleRobotPrey();
+		handlePreyPrey();
+	}
+
+	private void collectObjects(Environment environment) {
+
+		ArrayList<Robot> robots = environment.getRobots();
+		ArrayList<Prey> prey = environment.getPrey();
+		ArrayList<PhysicalObject> staticObjects = environment.getStaticObjects();
+
+		ensureCapacity(robots.size() + prey.size() + staticObjects.size());
+
+		boolean changed = false;
+		int n = 0;
+		double margin = 0;
+
+		for(int i = 0 ; i < robots.size() ; i++) {
+			Robot r = robots.get(i);
+			changed|= set(n++, r, ROBOT);
+			margin = Math.max(margin, r.getRadius());
+		}
+
+		for(int i = 0 ; i < prey.size() ; i++) {
+			Prey p = prey.get(i);
+			changed|= set(n++, p, PREY);
+			margin = Math.max(margin, p.getRadius());
+		}
+
+		numberOfRobots = robots.size();
+		numberOfPrey = prey.size();
+
+		for(int i = 0 ; i < staticObjects.size() ; i++) {
+			PhysicalObject o = staticObjects.get(i);
+			if(o.shape != null && (o.getType() == PhysicalObjectType.WALL || o.getType() == PhysicalObjectType.WALLBUTTON))
+				changed|= set(n++, o, WALL);
+		}
+
+		changed|= n != numberOfObjects;
+		numberOfObjects = n;
+
+		//an object can be pushed by up to a radius while resolving a
+		//collision, so the boxes are expanded to find what it can reach
+		for(int i = 0 ; i < n ; i++) {
+			AxisAlignedBoundingBox aabb = objects[i].shape.getAABB();
+			minX[i] = aabb.getMinX() - margin;
+			maxX[i] = aabb.getMaxX() + margin;
+			minY[i] = aabb.getMinY() - margin;
+			maxY[i] = aabb.getMaxY() + margin;
+		}
+
+		if(changed)
+			resetOrder();
+	}
+
+	private boolean set(int i, PhysicalObject o, int type) {
+		boolean changed = objects[i] != o;
+		objects[i] = o;
+		types[i] = type;
+		return changed;
+	}
+
+	/**
+	 * Sorts the objects from scratch, when objects were added or removed.
+	 */
+	private void resetOrder() {
+		Integer[] sorted = new Integer[numberOfObjects];
+		for(int i = 0 ; i < numberOfObjects ; i++)
+			sorted[i] = i;
+
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(minX[a], minX[b]);
+			}
+		});
+
+		for(int i = 0 ; i < numberOfObjects ; i++)
+			order[i] = sorted[i];
+	}
+
+	/**
+	 * Insertion sort, which is close to linear since the order from the
+	 * previous step is almost correct.
+	 */
+	private void sortByMinX() {
+		for(int i = 1 ; i < numberOfObjects ; i++) {
+			int current = order[i];
+			double key = minX[current];
+			int j = i - 1;
+			while(j >= 0 && minX[order[j]] > key) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = current;
+		}
+	}
+
+	private void findPairs() {
+
+		robotRobot.clear();
+		robotWall.clear();
+		preyWall.clear();
+		robotPrey.clear();
+		preyPrey.clear();
+
+		for(int i = 0 ; i < numberOfObjects ; i++) {
+			int a = order[i];
+			for(int j = i + 1 ; j < numberOfObjects ; j++) {
+				int b = order[j];
+				if(minX[b] > maxX[a])
+					break;
+				if(minY[b] <= maxY[a] && minY[a] <= maxY[b])
+					addPair(Math.min(a, b), Math.max(a, b));
+			}
+		}
+
+		robotWall.groupByFirst(numberOfObjects);
+		preyWall.groupByFirst(numberOfObjects);
+		robotPrey.groupByFirst(numberOfObjects);
+	}
+
+	/**
+	 * Since the robots come before the prey and the prey before the walls,
+	 * <code>a</code> has the lowest type of the pair.
+	 */
+	private void addPair(int a, int b) {
+		switch(types[a]) {
+			case ROBOT:
+				if(types[b] == ROBOT)
+					robotRobot.add(a, b);
+				else if(types[b] == PREY)
+					robotPrey.add(b, a);
+				else
+					robotWall.add(a, b);
+				break;
+			case PREY:
+				if(types[b] == PREY)
+					preyPrey.add(a, b);
+				else if(types[b] == WALL)
+					preyWall.add(a, b);
+				break;
+		}
+	}
+
+	private void handleRobotRobot() {
+		for(int i = 0 ; i < robotRobot.size ; i++) {
+			Robot robot = (Robot)objects[robotRobot.first[i]];
+			Robot other = (Robot)objects[robotRobot.second[i]];
+
+			if(isPreyRobot(robot) && isPreyRobot(other))
+				continue;
+
+			temp.set(other.getPosition());
+			temp.sub(robot.getPosition());
+			double length = temp.length() - robot.getRadius() - other.getRadius();
+
+			if (length < 0) {
+				setLength(temp, length/2);
+				robot.move(temp);
+				temp.negate();
+				other.move(temp);
+				if(!robot.ignoreRobotToRobotCollisions()) {
+					robot.setInvolvedInCollison(true);
+					robot.getCollidingObjects().add(other);
+					other.getCollidingObjects().add(robot);
+					other.setInvolvedInCollison(true);
+				}
+			}
+		}
+	}
+
+	private void handleRobotWall() {
+		for(int r = 0 ; r < numberOfRobots ; r++) {
+			Robot robot = (Robot)objects[r];
+
+			if(robot.ignoreWallCollisions())
+				continue;
+
+			for(int i = robotWall.start[r] ; i < robotWall.start[r + 1] ; i++) {
+
+				Wall closeWall = (Wall)objects[robotWall.grouped[i]];
+
+				if(closeWall.getMinDist(robot.getPosition().x, robot.getPosition().y) < robot.getRadius()) {
+
+					PolygonShape ps = (PolygonShape) closeWall.shape;
+					ps.collision = true;
+
+					robot.setInvolvedInCollison(true);
+					robot.setInvolvedInCollisonWall(true);
+					robot.getCollidingObjects().add(closeWall);
+
+					if(drag) {
+
+						boolean leftFirst = simulator.getRandom().nextBoolean();
+
+						double speed = robot.getPreviousPosition().distanceTo(robot.getPosition())*dragValue;
+
+						double orientation = robot.getOrientation();
+
+						Vector2d prev = robot.getPreviousPosition();
+
+						double leftX = prev.x + speed*Math.cos(orientation-Math.PI/2);
+						double leftY = prev.y + speed*Math.sin(orientation-Math.PI/2);
+
+						double rightX = prev.x + speed*Math.cos(orientation+Math.PI/2);
+						double rightY = prev.y + speed*Math.sin(orientation+Math.PI/2);
+
+						double firstX = leftFirst ? leftX : rightX;
+						double firstY = leftFirst ? leftY : rightY;
+						double secondX = leftFirst ? rightX : leftX;
+						double secondY = leftFirst ? rightY : leftY;
+
+						if(validPosition(firstX, firstY, robot.getRadius(), r))
+							robot.moveTo(firstX, firstY);
+						else if(validPosition(secondX, secondY, robot.getRadius(), r))
+							robot.moveTo(secondX, secondY);
+						else
+							robot.moveTo(prev);
+
+					} else {
+						robot.moveTo(robot.getPreviousPosition());
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private void handlePreyWall() {
+		for(int p = numberOfRobots ; p < numberOfRobots + numberOfPrey ; p++) {
+			Prey prey = (Prey)objects[p];
+
+			for(int i = preyWall.start[p] ; i < preyWall.start[p + 1] ; i++) {
+
+				Wall closeWall = (Wall)objects[preyWall.grouped[i]];
+
+				if(closeWall.getMinDist(prey.getPosition().x, prey.getPosition().y) < prey.getRadius()) {
+
+					PolygonShape ps = (PolygonShape) closeWall.shape;
+					ps.collision = true;
+
+					prey.setInvolvedInCollison(true);
+					prey.setInvolvedInCollisonWall(true);
+
+					prey.moveTo(prey.getPreviousPosition());
+					break;
+				}
+			}
+		}
+	}
+
+	private void handleRobotPrey() {
+		for(int p = numberOfRobots ; p < numberOfRobots + numberOfPrey ; p++) {
+			Prey prey = (Prey)objects[p];
+
+			if(!prey.isEnabled())
+				continue;
+
+			//if the number of robots touching the prey is less than the mass, make it stay in the same place
+			boolean heavy = false;
+			if(prey.getMass() > 1) {
+				int number = 0;
+				for(int i = robotPrey.start[p] ; i < robotPrey.start[p + 1] ; i++) {
+					Robot r = (Robot)objects[robotPrey.grouped[i]];
+					if(!isPreyRobot(r) && distanceBetween(prey, r) < 0)
+						number++;
+				}
+				if (number < prey.getMass())
+					heavy = true;
+			}
+
+			for(int i = robotPrey.start[p] ; i < robotPrey.start[p + 1] ; i++) {
+				Robot r = (Robot)objects[robotPrey.grouped[i]];
+
+				if(isPreyRobot(r))
+					continue;
+
+				temp.set(prey.getPosition());
+				temp.sub(r.getPosition());
+
+				double length = temp.length() - r.getRadius() - prey.getRadius();
+				if (length < 0) {
+					setLength(temp, length/2);
+					r.move(temp);
+					temp.negate();
+					if(!heavy)
+						prey.move(temp);
+				}
+			}
+		}
+	}
+
+	private void handlePreyPrey() {
+		for(int i = 0 ; i < preyPrey.size ; i++) {
+			Prey prey = (Prey)objects[preyPrey.first[i]];
+			Prey other = (Prey)objects[preyPrey.second[i]];
+
+			if(!prey.isEnabled() || !other.isEnabled())
+				continue;
+
+			temp.set(other.getPosition());
+			temp.sub(prey.getPosition());
+			double tempLength = temp.length();
+			double length = tempLength - prey.getDiameter();
+
+			if (length < 0) {
+				if (tempLength > 0) {
+					setLength(temp, length/2);
+				} else {
+					temp.set(0, length / 2);
+					temp.rotate(simulator.getRandom().nextGaussian() * Math.PI);
+				}
+				prey.move(temp);
+				temp.negate();
+				other.move(temp);
+			}
+		}
+	}
+
+	private double distanceBetween(Prey prey, Robot r) {
+		temp.set(prey.getPosition());
+		temp.sub(r.getPosition());
+		return temp.length() - r.getRadius() - prey.getRadius();
+	}
+
+	private boolean validPosition(double x, double y, double radius, int robot) {
+		for(int i = robotWall.start[robot] ; i < robotWall.start[robot + 1] ; i++) {
+			Wall w = (Wall)objects[robotWall.grouped[i]];
+			if(w.getMinDist(x, y) < radius)
+				return false;
+		}
+		return true;
+	}
+
+	private boolean isPreyRobot(Robot r) {
+		return r.getDescription().equals("prey");
+	}
+
+	private void ensureCapacity(int n) {
+		if(objects.length < n) {
+			int capacity = Math.max(n, objects.length * 2);
+			objects = Arrays.copyOf(objects, capacity);
+			types = new int[capacity];
+			minX = new double[capacity];
+			maxX = new double[capacity];
+			minY = new double[capacity];
+			maxY = new double[capacity];
+			order = new int[capacity];
+		}
+	}
+
+	/**
+	 * Pairs of object indexes. After {@link #groupByFirst(int)}, the second
+	 * objects of the pairs whose first object is <code>i</code> are in
+	 * <code>grouped[start[i]]</code> to <code>grouped[start[i+1]-1]</code>,
+	 * in the order in which they were added.
+	 */
+	private static class PairList implements java.io.Serializable {
+
+		private static final long serialVersionUID = -9007222019034000300L;
+
+		private int[] first = new int[16];
+		private int[] second = new int[16];
+		private int size = 0;
+
+		private int[] start = new int[1];
+		private int[] grouped = new int[16];
+
+		public void clear() {
+			size = 0;
+		}
+
+		public void add(int a, int b) {
+			if(size == first.length) {
+				first = Arrays.copyOf(first, size * 2);
+				second = Arrays.copyOf(second, size * 2);
+			}
+			first[size] = a;
+			second[size] = b;
+			size++;
+		}
+
+		public void groupByFirst(int numberOfObjects) {
+			if(start.length < numberOfObjects + 1)
+				start = new int[numberOfObjects + 1];
+			else
+				Arrays.fill(start, 0, numberOfObjects + 1, 0);
+
+			if(grouped.length < size)
+				grouped = new int[first.length];
+
+			for(int i = 0 ; i < size ; i++)
+				start[first[i] + 1]++;
+
+			for(int i = 0 ; i < numberOfObjects ; i++)
+				start[i + 1] += start[i];
+
+			//start is used as an insertion cursor and then shifted back
+			for(int i = 0 ; i < size ; i++)
+				grouped[start[first[i]]++] = second[i];
+
+			for(int i = numberOfObjects ; i > 0 ; i--)
+				start[i] = start[i - 1];
+			start[0] = 0;
+		}
+	}
+}
@@ -77,4 +77,20 @@ public class AxisAlignedBoundingBox implements Serializable {
 		p2.set(x2, y2);
 	}
 
+	public double getMinX() {
+		return x1;
+	}
+
+	public double getMaxX() {
+		return x2;
+	}
+
+	public double getMinY() {
+		return y1;
+	}
+
+	public double getMaxY() {
+		return y2;
+	}
+
 }
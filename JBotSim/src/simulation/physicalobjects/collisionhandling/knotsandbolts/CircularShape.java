@@ -31,7 +31,15 @@ public class CircularShape extends Shape {
 				radius * 2, radius * 2);
 		
 		//mult by 10000 because in the Polygon shape we do it too, since it has to be defined by an integer
-		circle = getEllipse2D(parent.getPosition(), relativePosition, radius);
+		if(circle == null) {
+			circle = getEllipse2D(parent.getPosition(), relativePosition, radius);
+		} else {
+			circle.setFrame(
+				(parent.getPosition().getX() + relativePosition.getX()-radius)*10000, 
+				(parent.getPosition().getY() + relativePosition.getY()-radius)*10000, 
+				(radius*2)*10000, 
+				(radius*2)*10000);
+		}
 	}
 
 	@Override
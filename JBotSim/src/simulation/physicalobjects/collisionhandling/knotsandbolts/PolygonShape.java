@@ -30,11 +30,20 @@ public class PolygonShape extends Shape {
 		int[] xi = new int[x.length];
 		int[] yi = new int[y.length];
 		
+		double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		
 		for(int i = 0 ; i < x.length ; i++) {
 			xi[i] = (int)(x[i]*10000);
 			yi[i] = (int)(y[i]*10000);
+			minX = Math.min(minX, x[i]);
+			maxX = Math.max(maxX, x[i]);
+			minY = Math.min(minY, y[i]);
+			maxY = Math.max(maxY, y[i]);
 		}
 		
+		aabb.reset((minX + maxX) / 2, (minY + maxY) / 2, maxX - minX, maxY - minY);
+		
 		this.polygon = new Polygon(xi, yi, xi.length);
 		area = new Area(this.polygon);
 	}
@@ -5,10 +5,11 @@ import mathutils.MathUtils;
 import mathutils.Vector2d;
 import simulation.Simulator;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
-import simulation.robot.actuators.Actuator;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class DifferentialDriveRobot extends Robot {
 	/**
 	 * Diameter of the robot's wheels.
@@ -53,9 +54,7 @@ public class DifferentialDriveRobot extends Robot {
 		
 		stopTimestep--;
 		
-		for(Actuator actuator: actuators){
-			actuator.apply(this,timeDelta);
-		}
+		applyActuators(timeDelta);
 	}
 
 	/**
@@ -97,6 +96,14 @@ public class DifferentialDriveRobot extends Robot {
 		return this.wheelDiameter;
 	}
 	
+	@Override
+	public void reset() {
+		super.reset();
+		leftWheelSpeed = 0;
+		rightWheelSpeed = 0;
+		stopTimestep = 0;
+	}
+	
 	@Override
 	public void stop() {
 		super.stop();
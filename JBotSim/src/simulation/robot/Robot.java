@@ -6,11 +6,12 @@ import java.awt.event.KeyEvent;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Random;
 
 import controllers.Controller;
 import mathutils.Vector2d;
 import simulation.Simulator;
+import simulation.SimulatorProfiler;
 import simulation.physicalobjects.MovableObject;
 import simulation.physicalobjects.PhysicalObject;
 import simulation.physicalobjects.collisionhandling.knotsandbolts.CircularShape;
@@ -19,6 +20,7 @@ import simulation.robot.sensors.Sensor;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
 import simulation.util.Factory;
+import simulation.util.Resettable;
 
 /**
  * Representation of a robot, including its physical characteristics such as
@@ -26,6 +28,7 @@ import simulation.util.Factory;
  * 
  * @author alc
  */
+@Resettable
 public class Robot extends MovableObject {
 
 	private static final long serialVersionUID = -4226242258989368422L;
@@ -68,6 +71,7 @@ public class Robot extends MovableObject {
 	private double x;
 	@ArgumentsAnnotation(name = "y", defaultValue = "0")
 	private double y;
+	private double initialOrientation;
 	@ArgumentsAnnotation(name = "color", values = { "black", "blue", "cyan", "dark gray", "gray", "green", "light gray",
 			"magneta", "orange", "pink", "red", "white", "yellow" })
 	private Color color;
@@ -91,7 +95,19 @@ public class Robot extends MovableObject {
 	@ArgumentsAnnotation(name = "ignorerobottorobotcollisions", values = { "0", "1" })
 	protected boolean ignoreRobotToRobotCollisions = false;
 
-	protected LinkedList<PhysicalObject> collidingObjects = new LinkedList<PhysicalObject>();
+	protected ArrayList<PhysicalObject> collidingObjects = new ArrayList<PhysicalObject>();
+
+	/**
+	 * Random number generator for the robot's own use (e.g. by its
+	 * controller). See {@link Simulator#createRandomStream()}.
+	 */
+	protected Random random;
+
+	/**
+	 * Records the duration of each sensor and actuator, or null if the
+	 * simulation is not profiled. See {@link Simulator#getProfiler()}.
+	 */
+	protected transient SimulatorProfiler profiler;
 
 	/**
 	 * Initialize a new robot.
@@ -124,10 +140,13 @@ public class Robot extends MovableObject {
 				diameter / 2);
 
 		this.description = args.getArgumentAsStringOrSetDefault("description", "robot");
+		this.random = simulator.createRandomStream();
+		this.profiler = simulator.getProfiler();
 
 		x = args.getArgumentAsDoubleOrSetDefault("x", 0);
 		y = args.getArgumentAsDoubleOrSetDefault("y", 0);
 		setPosition(x, y);
+		initialOrientation = orientation;
 
 		try {
 			Field field = Color.class.getField(args.getArgumentAsStringOrSetDefault("color", "black"));
@@ -284,8 +303,15 @@ public class Robot extends MovableObject {
 	 */
 	public void updateSensors(double simulationStep, ArrayList<PhysicalObject> teleported) {
 		for (Sensor sensor : sensors) {
-			if (!ignoreDisabledSensors || sensor.isEnabled())
-				sensor.update(simulationStep, teleported);
+			if (!ignoreDisabledSensors || sensor.isEnabled()) {
+				if (profiler == null) {
+					sensor.update(simulationStep, teleported);
+				} else {
+					long start = System.nanoTime();
+					sensor.update(simulationStep, teleported);
+					profiler.getSensor(sensor.getClass()).record(System.nanoTime() - start);
+				}
+			}
 		}
 	}
 
@@ -300,11 +326,77 @@ public class Robot extends MovableObject {
 	 */
 	public void updateActuators(Double time, double timeDelta) {
 		this.previousPosition = new Vector2d(position);
+		applyActuators(timeDelta);
+	}
+
+	/**
+	 * Applies all the actuators of the robot, recording their duration if the
+	 * simulation is profiled.
+	 */
+	protected void applyActuators(double timeDelta) {
 		for (Actuator actuator : actuators) {
-			actuator.apply(this, timeDelta);
+			if (profiler == null) {
+				actuator.apply(this, timeDelta);
+			} else {
+				long start = System.nanoTime();
+				actuator.apply(this, timeDelta);
+				profiler.getActuator(actuator.getClass()).record(System.nanoTime() - start);
+			}
 		}
 	}
 
+	/**
+	 * Places the robot back where it was created and resets its sensors,
+	 * actuators and controller, so that it can be used in another simulation.
+	 * See {@link Simulator#reset(long)}.
+	 */
+	@Override
+	public void reset() {
+		setPosition(x, y);
+		orientation = initialOrientation;
+		previousPosition = position;
+		setEnabled(true);
+		setInvisible(false);
+		setInvolvedInCollison(false);
+		setInvolvedInCollisonWall(false);
+		collidingObjects.clear();
+
+		bodyColor = new double[3];
+		if (color != null)
+			setBodyColor(color);
+		ledColor = color;
+		ledState = LedState.OFF;
+
+		shape.enable();
+		shape.clearCollidedWith();
+		shape.setOrientation(orientation);
+		shape.computeNewPositionAndOrientationFromParent();
+
+		for (Sensor sensor : sensors)
+			sensor.reset();
+		for (Actuator actuator : actuators)
+			actuator.reset();
+		if (controller != null)
+			controller.reset();
+	}
+
+	/**
+	 * @return true if the robot, its sensors, actuators and controller are
+	 *         all {@link simulation.util.Resettable}
+	 */
+	@Override
+	public boolean isResettable() {
+		if (!super.isResettable())
+			return false;
+		for (Sensor sensor : sensors)
+			if (!sensor.isResettable())
+				return false;
+		for (Actuator actuator : actuators)
+			if (!actuator.isResettable())
+				return false;
+		return controller == null || controller.isResettable();
+	}
+
 	/**
 	 * TODO: Sancho
 	 * 
@@ -450,10 +542,14 @@ public class Robot extends MovableObject {
 		return null;
 	}
 
-	public LinkedList<PhysicalObject> getCollidingObjects() {
+	public ArrayList<PhysicalObject> getCollidingObjects() {
 		return collidingObjects;
 	}
 
+	public Random getRandom() {
+		return random;
+	}
+
 	public static ArrayList<Robot> getRobots(Simulator simulator, Arguments arguments) {
 		int numberOfRobots = arguments.getArgumentAsIntOrSetDefault("numberofrobots", 1);
 		variableNumber = arguments.getArgumentAsIntOrSetDefault("variablenumber", 0);
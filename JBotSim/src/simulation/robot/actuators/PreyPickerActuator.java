@@ -12,7 +12,9 @@ import simulation.robot.DifferentialDriveRobot;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class PreyPickerActuator extends Actuator {
 
 	public static final float NOISESTDEV = 0.05f;
@@ -33,7 +35,7 @@ public class PreyPickerActuator extends Actuator {
 
 	public PreyPickerActuator(Simulator simulator, int id, Arguments arguments) {
 		super(simulator, id, arguments);
-		this.setRandom(simulator.getRandom());
+		this.setRandom(simulator.createRandomStream());
 		this.maxPickDistance = arguments.getArgumentAsDoubleOrSetDefault("maxpickdistance", 0.1);
 
 		this.setStopRobot(!arguments.getFlagIsFalse("stoprobot"));
@@ -51,8 +53,11 @@ public class PreyPickerActuator extends Actuator {
 		setStatus(PickerStatus.DROP);
 	}
 
+	@Override
 	public void reset() {
 		setStatus(PickerStatus.OFF);
+		preyCarried = null;
+		numDrops = 0;
 	}
 
 	@Override
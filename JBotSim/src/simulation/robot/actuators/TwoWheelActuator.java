@@ -7,7 +7,9 @@ import simulation.robot.DifferentialDriveRobot;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
 import simulation.util.ArgumentsAnnotation;
+import simulation.util.Resettable;
 
+@Resettable
 public class TwoWheelActuator extends Actuator {
 
 	public static final float NOISESTDEV = 0.05f;
@@ -20,7 +22,7 @@ public class TwoWheelActuator extends Actuator {
 	
 	public TwoWheelActuator(Simulator simulator, int id, Arguments arguments) {
 		super(simulator, id, arguments);
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandomStream();
 		this.maxSpeed = arguments.getArgumentAsDoubleOrSetDefault("maxspeed", 0.1);
 	}
 
@@ -32,6 +34,12 @@ public class TwoWheelActuator extends Actuator {
 		rightSpeed = (value - 0.5) * maxSpeed * 2.0;
 	}
 
+	@Override
+	public void reset() {
+		leftSpeed = 0;
+		rightSpeed = 0;
+	}
+
 	@Override
 	public void apply(Robot robot, double timeDelta) {
 		leftSpeed*= (1 + random.nextGaussian() * NOISESTDEV);
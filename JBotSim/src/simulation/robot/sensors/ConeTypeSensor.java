@@ -73,7 +73,7 @@ public abstract class ConeTypeSensor extends Sensor {
 		this.geoCalc = new GeometricCalculator();//simulator.getGeoCalculator();
 		this.env = simulator.getEnvironment();
 		this.time = simulator.getTime();
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandomStream();
 		numberOfSensors = (args.getArgumentIsDefined("numbersensors")) ? args.getArgumentAsInt("numbersensors") : 1;
 		range = (args.getArgumentIsDefined("range")) ? args.getArgumentAsDouble("range") : 1;
 		openingAngle = Math.toRadians((args.getArgumentIsDefined("angle")) ? args.getArgumentAsDouble("angle") : 90);
@@ -128,12 +128,12 @@ public abstract class ConeTypeSensor extends Sensor {
 	
 	public void setAllowedObstaclesChecker(AllowedObjectsChecker aoc) {
 		if(aoc != null)
-			this.closeObstacles = new ClosePhysicalObjects(env,range,aoc);
+			this.closeObstacles = new ClosePhysicalObjects(env,robot,range,aoc);
 	}
 	
 	public void setAllowedObjectsChecker(AllowedObjectsChecker aoc) {
 		if(aoc != null)
-			this.closeObjects 	= new ClosePhysicalObjects(env,range,aoc);
+			this.closeObjects 	= new ClosePhysicalObjects(env,robot,range,aoc);
 	}
 	
 	public void setupPositions(Vector2d[] positions) {
@@ -329,6 +329,19 @@ public abstract class ConeTypeSensor extends Sensor {
 		}
 	}
 	
+	/**
+	 * Restores the range and opening angle, which may have been changed by
+	 * {@link #setExtraParameters(double[])}. The readings are computed again
+	 * on every update.
+	 */
+	@Override
+	public void reset() {
+		range = initialRange;
+		cutOff = initialRange;
+		openingAngle = initialOpeningAngle;
+		System.arraycopy(originalAngles, 0, angles, 0, angles.length);
+	}
+
 	public double normalize(double parameter) {
 		//from [-10;10] to [0;1]
 		return (parameter+10.0)/20.0;
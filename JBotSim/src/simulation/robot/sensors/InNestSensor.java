@@ -32,7 +32,7 @@ public class InNestSensor extends Sensor {
 			}
 			
 			this.closeObjects = new ClosePhysicalObjects(simulator.getEnvironment(),
-					radius,
+					robot, radius,
 					new AllowNestChecker());
 		}
 		
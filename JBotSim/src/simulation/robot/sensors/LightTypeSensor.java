@@ -10,7 +10,9 @@ import simulation.physicalobjects.PhysicalObjectDistance;
 import simulation.physicalobjects.checkers.AllowLightChecker;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
+import simulation.util.Resettable;
 
+@Resettable
 public class LightTypeSensor extends ConeTypeSensor {
 	
 	public LightTypeSensor(Simulator simulator,int id, Robot robot, Arguments args) {
@@ -4,7 +4,9 @@ import simulation.Simulator;
 import simulation.physicalobjects.checkers.AllowNestChecker;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
+import simulation.util.Resettable;
 
+@Resettable
 public class NestSensor extends LightTypeSensor {
 
 	public NestSensor(Simulator simulator, int id, Robot robot, Arguments args) {
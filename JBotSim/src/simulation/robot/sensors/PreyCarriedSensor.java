@@ -4,7 +4,9 @@ import simulation.Simulator;
 import simulation.robot.Robot;
 import simulation.robot.actuators.PreyPickerActuator;
 import simulation.util.Arguments;
+import simulation.util.Resettable;
 
+@Resettable
 public class PreyCarriedSensor extends Sensor{
 	
 	protected PreyPickerActuator actuator;
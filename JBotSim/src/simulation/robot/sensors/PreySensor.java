@@ -4,7 +4,9 @@ import simulation.Simulator;
 import simulation.physicalobjects.checkers.AllowOrderedPreyChecker;
 import simulation.robot.Robot;
 import simulation.util.Arguments;
+import simulation.util.Resettable;
 
+@Resettable
 public class PreySensor extends LightTypeSensor {
 
 	public PreySensor(Simulator simulator, int id, Robot robot, Arguments args) {
@@ -30,7 +30,7 @@ public class RobotRGBColorSensor extends ConeTypeSensor {
 
 	public RobotRGBColorSensor(Simulator simulator, int id, Robot robot, Arguments args) {
 		super(simulator, id, robot, args);
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandomStream();
 		String modeStr = (args.getArgumentIsDefined("mode")) ? args.getArgumentAsString("mode") : "r";
 		
 		this.slices = numberOfSensors;
@@ -36,7 +36,7 @@ public class WallRaySensor extends ConeTypeSensor {
 	
 	public WallRaySensor(Simulator simulator, int id, Robot robot, Arguments args) {
 		super(simulator,id,robot,args);
-		this.random = simulator.getRandom();
+		this.random = simulator.createRandomStream();
 		
 		numberOfRays = args.getArgumentAsIntOrSetDefault("numberofrays", numberOfRays);
 		cutoffAngle = args.getArgumentAsDoubleOrSetDefault("cutoffangle", cutoffAngle);
@@ -8,11 +8,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -28,6 +32,10 @@ import mathutils.Vector2d;
  * how to parse them:
  * <p>
  * Non-case sensitive,parses parenthesis correctly
+ * <p>
+ * The names are looked up in a hash index and the numeric values are parsed
+ * when the index is built. Strings that were already parsed are copied from a
+ * cache of parsed arguments instead of being parsed again.
  * 
  * @author alc
  * 
@@ -42,6 +50,14 @@ public class Arguments implements Serializable {
 
 	public static final String CLASS_NAME_TAG = "classname";
 
+	private static final int PARSED_CACHE_SIZE = 4096;
+
+	/**
+	 * Arguments already parsed, by their unparsed string. They are only used
+	 * to be copied, and are never modified.
+	 */
+	private static final ConcurrentHashMap<String, Arguments> parsedCache = new ConcurrentHashMap<String, Arguments>();
+
 	/**
 	 * Complete unparsed argument string
 	 */
@@ -62,6 +78,12 @@ public class Arguments implements Serializable {
 	
 	protected String loadedFile = "";
 
+	/**
+	 * Index of the names and parsed values, shared with the copies of these
+	 * arguments until they are modified.
+	 */
+	private transient Index index;
+
 	/**
 	 * Initializes a new arguments instance and sets all arguments to
 	 * non-queried.
@@ -72,23 +94,63 @@ public class Arguments implements Serializable {
 	 * @throws ClassNotFoundException
 	 */
 	public Arguments(String unparsedArgumentString) {
-		parseString(unparsedArgumentString);
-		removeRepeated();
+		this(unparsedArgumentString, false);
 	}
 	public Arguments(String unparsedArgumentString, boolean translateClasses) {
 		if(translateClasses) {
 			unparsedArgumentString = translateClasses(unparsedArgumentString);
 //			System.out.println(unparsedArgumentString);
 		}
-		parseString(unparsedArgumentString);
-		removeRepeated();
+		
+		Arguments parsed = unparsedArgumentString == null ? null : parsedCache.get(unparsedArgumentString);
+		
+		if(parsed != null) {
+			copy(parsed, true);
+		} else {
+			parseString(unparsedArgumentString);
+			removeRepeated();
+			
+			if(unparsedArgumentString != null) {
+				if(parsedCache.size() >= PARSED_CACHE_SIZE)
+					parsedCache.clear();
+				parsed = new Arguments(this, true);
+				parsed.index();
+				parsedCache.put(unparsedArgumentString, parsed);
+				index = parsed.index;
+			}
+		}
+	}
+	
+	/**
+	 * Copies the arguments without parsing them. None of the arguments of the
+	 * copy has been queried, and the copy shares the index of these arguments
+	 * until either of them is modified.
+	 */
+	public Arguments(Arguments arguments) {
+		this(arguments, false);
+	}
+	
+	private Arguments(Arguments arguments, boolean copyQueried) {
+		copy(arguments, copyQueried);
+	}
+	
+	private void copy(Arguments other, boolean copyQueried) {
+		unparsedArgumentString = other.unparsedArgumentString;
+		loadedFile = other.loadedFile;
+		arguments = new Vector<String>(other.arguments);
+		values = new Vector<String>(other.values);
+		if(copyQueried)
+			argumentQueried = new Vector<Boolean>(other.argumentQueried);
+		else
+			argumentQueried = new Vector<Boolean>(Collections.nCopies(arguments.size(), Boolean.FALSE));
+		index = other.index;
 	}
 	
 	private void removeRepeated() {
 		Iterator<String> iArgs = arguments.iterator();
 		Iterator<String> iValues = values.iterator();
 		
-		ArrayList<String> found = new ArrayList<String>();
+		HashSet<String> found = new HashSet<String>();
 		
 		while(iArgs.hasNext()) {
 			String current = iArgs.next();
@@ -100,6 +162,7 @@ public class Arguments implements Serializable {
 				found.add(current);
 			}
 		}
+		index = null;
 	}
 	
 	public static String replaceAndGetArguments(String argName, String arg ,String by,List<String> removedStrings){
@@ -250,6 +313,51 @@ public class Arguments implements Serializable {
 				values.add(currentValue.toString());
 			}
 		}
+		index = null;
+	}
+
+	private Index index() {
+		Index current = index;
+		if (current == null || current.size != arguments.size()) {
+			current = new Index(arguments, values);
+			index = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Finds an argument and marks it as queried.
+	 * 
+	 * @param argument
+	 *            case insensitive name of the argument
+	 * @return the index of the first argument with that name, or -1
+	 */
+	private int query(String argument) {
+		if (argument == null)
+			return -1;
+
+		int i = index().find(argument);
+
+		//the vectors returned by getArguments() can be modified directly
+		if (i >= 0 && !arguments.elementAt(i).equalsIgnoreCase(argument)) {
+			index = null;
+			i = index().find(argument);
+		}
+
+		if (i >= 0)
+			argumentQueried.setElementAt(Boolean.TRUE, i);
+		return i;
+	}
+
+	/**
+	 * @return the value at the index parsed when the index was built, or null
+	 *         if it is not a number or was modified since
+	 */
+	private Number getNumberAt(int i) {
+		Index current = index;
+		if (current != null && i < current.size && current.values[i] == values.elementAt(i))
+			return current.numbers[i];
+		return null;
 	}
 
 	/**
@@ -260,22 +368,12 @@ public class Arguments implements Serializable {
 	 * @return the value of the argument or null if the argument does not exist
 	 */
 	public String getArgumentValue(String argument) {
-		int index = 0;
-		boolean found = false;
-
-		while (index < arguments.size() && !found) {
-			if (arguments.elementAt(index).equalsIgnoreCase(argument))
-				found = true;
-			else
-				index++;
-		}
+		int index = query(argument);
 
-		if (!found)
+		if (index < 0)
 			return null;
-		else {
-			argumentQueried.setElementAt(Boolean.TRUE, index);
+		else
 			return values.elementAt(index);
-		}
 	}
 
 	/**
@@ -319,11 +417,17 @@ public class Arguments implements Serializable {
 	 */
 
 	public int getArgumentAsIntOrSetDefault(String argument, int defaultValue) {
-		String value = getArgumentValue(argument);
-		if (value == null) {
+		int index = query(argument);
+		if (index < 0) {
 			return defaultValue;
 		}
 
+		Number number = getNumberAt(index);
+		if (number instanceof Integer) {
+			return number.intValue();
+		}
+
+		String value = values.elementAt(index);
 		int result = defaultValue;
 		try {
 			result = Integer.parseInt(value);
@@ -345,16 +449,8 @@ public class Arguments implements Serializable {
 	 * @value the new value for the argument
 	 */
 	public void setArgument(String argument, String value) {
-		if (getArgumentIsDefined(argument)) {
-			int index = 0;
-			boolean found = false;
-
-			while (index < arguments.size() && !found) {
-				if (arguments.elementAt(index).equalsIgnoreCase(argument))
-					found = true;
-				else
-					index++;
-			}
+		int index = query(argument);
+		if (index >= 0) {
 			arguments.set(index, argument);
 			values.set(index, value);
 		} else {
@@ -362,6 +458,7 @@ public class Arguments implements Serializable {
 			values.add(value);
 			argumentQueried.add(Boolean.FALSE);
 		}
+		this.index = null;
 	}
 
 	/**
@@ -414,11 +511,18 @@ public class Arguments implements Serializable {
 	 */
 	public double getArgumentAsDoubleOrSetDefault(String argument,
 			double defaultValue) {
-		String value = getArgumentValue(argument);
-		if (value == null) {
+		int index = query(argument);
+		if (index < 0) {
 			return defaultValue;
 		}
 
+		Number number = getNumberAt(index);
+		if (number != null) {
+			return number.doubleValue();
+		}
+
+		String value = values.elementAt(index);
+
 		try {
 			return Double.parseDouble(value);
 		} catch (NumberFormatException e) {
@@ -844,10 +948,12 @@ public class Arguments implements Serializable {
 	}
 	
 	public Vector<String> getArguments() {
+		index = null;
 		return arguments;
 	}
 	
 	public Vector<String> getValues() {
+		index = null;
 		return values;
 	}
 	
@@ -897,7 +1003,59 @@ public class Arguments implements Serializable {
 		if(index >= 0) {
 			arguments.remove(index);
 			values.remove(index);
+			this.index = null;
 		}
 	}
-	
-}
\ No newline at end of file
+
+	/**
+	 * Positions of the names, in lower case, and the values that are numbers,
+	 * parsed. It is not modified once built, so that it can be shared by the
+	 * copies of the arguments. The names are lowered in English, so that they
+	 * are found in every default locale, such as the Turkish one, where "I" is
+	 * not lowered to "i".
+	 */
+	private static class Index {
+
+		private final int size;
+		private final HashMap<String, Integer> positions;
+		private final String[] values;
+		private final Number[] numbers;
+
+		public Index(Vector<String> arguments, Vector<String> values) {
+			size = arguments.size();
+			positions = new HashMap<String, Integer>();
+			this.values = values.toArray(new String[size]);
+			numbers = new Number[size];
+
+			for(int i = 0 ; i < size ; i++) {
+				String name = arguments.elementAt(i).toLowerCase(Locale.ENGLISH);
+				//the first argument with a name is the one that is found
+				if(!positions.containsKey(name))
+					positions.put(name, i);
+				numbers[i] = parseNumber(this.values[i]);
+			}
+		}
+
+		public int find(String argument) {
+			Integer i = positions.get(argument.toLowerCase(Locale.ENGLISH));
+			return i == null ? -1 : i;
+		}
+
+		private static Number parseNumber(String value) {
+			if(value == null || value.isEmpty())
+				return null;
+
+			char c = value.charAt(0);
+			if(!Character.isDigit(c) && c != '-' && c != '+' && c != '.')
+				return null;
+
+			try {
+				return Integer.valueOf(value);
+			} catch(NumberFormatException e) {}
+			try {
+				return Double.valueOf(value);
+			} catch(NumberFormatException e) {}
+			return null;
+		}
+	}
+}
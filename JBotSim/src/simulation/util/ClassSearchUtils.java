@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,6 +15,7 @@ import java.util.jar.JarFile;
 public class ClassSearchUtils {
     
         static private ConcurrentHashMap<String, List<String>> lookupMap = new ConcurrentHashMap<>();
+	static private HashMap<String, List<ClassEntry>> classIndex;
 
 	public static String getClassFullName(String className){
 		List<String> names = ClassSearchUtils.searchFullNameInPath(className);
@@ -34,8 +36,6 @@ public class ClassSearchUtils {
                 return get;
             } else {		
 		ArrayList<String> classNames = new ArrayList<String>();
-		ClassLoader classloader = className.getClass().getClassLoader();
-		String classpath = System.getProperty("java.class.path");
 		
 		try {
 			Class c = Class.forName(className);
@@ -45,6 +45,43 @@ public class ClassSearchUtils {
 			//ignore
 		}
 		
+		String simpleName = className.substring(className.lastIndexOf('.') + 1);
+		List<ClassEntry> entries = getClassIndex().get(simpleName);
+		
+		if(entries != null) {
+			for(ClassEntry entry : entries) {
+				if(entry.inDirectory) {
+					try {
+						if(simpleName.equals(className)) {
+							Class.forName(entry.name);
+							classNames.add(entry.name);
+						}
+					} catch (ClassNotFoundException e) {
+						
+					}
+				} else if(entry.name.endsWith("." + className)
+						&& !entry.name.equals(className)) {
+					classNames.add(entry.name);
+				}
+			}
+		}
+                lookupMap.put(className, classNames);
+		return classNames;
+	}
+        }
+	
+	/**
+	 * Classes in the classpath by their simple name, in the order of the
+	 * classpath. The classpath is only scanned the first time.
+	 */
+	private static synchronized HashMap<String, List<ClassEntry>> getClassIndex() {
+		if(classIndex != null)
+			return classIndex;
+		
+		HashMap<String, List<ClassEntry>> index = new HashMap<String, List<ClassEntry>>();
+		ClassLoader classloader = ClassSearchUtils.class.getClassLoader();
+		String classpath = System.getProperty("java.class.path");
+		
 		try {
 			Method method = classloader.getClass().getMethod("getClassPath",
 					(Class<?>) null);
@@ -67,19 +104,28 @@ public class ClassSearchUtils {
 			token = tokenizer.nextToken();
 			dir = new File(token);
 			if (dir.isDirectory()) {
-				lookForNamesInDirectory(className, "", dir, classNames);
+				indexDirectory("", dir, index);
 			}
 			else if (dir.isFile()) {
 				name = dir.getName().toLowerCase();
 				if (name.endsWith(".zip") || name.endsWith(".jar")) {
-					lookForNamesInArchive(className, dir, classNames);
+					indexArchive(dir, index);
 				}
 			}
 		}
-                lookupMap.put(className, classNames);
-		return classNames;
+		classIndex = index;
+		return index;
+	}
+	
+	private static void addToIndex(String fullName, boolean inDirectory, HashMap<String, List<ClassEntry>> index) {
+		String simpleName = fullName.substring(fullName.lastIndexOf('.') + 1);
+		List<ClassEntry> entries = index.get(simpleName);
+		if(entries == null) {
+			entries = new ArrayList<ClassEntry>(1);
+			index.put(simpleName, entries);
+		}
+		entries.add(new ClassEntry(fullName, inDirectory));
 	}
-        }
 
 	/**
 	 * @param name
@@ -88,10 +134,13 @@ public class ClassSearchUtils {
 	 * @param dir
 	 *            Directory to be searched for classes.
 	 */
-	private static void lookForNamesInDirectory(String className, String name,
-			File dir, ArrayList<String> classNames) {
+	private static void indexDirectory(String name, File dir,
+			HashMap<String, List<ClassEntry>> index) {
 		File[] files = dir.listFiles();
 
+		if(files == null)
+			return;
+
 		String fileName;
 		final int size = files.length;
 		for (int i = 0; i < size; i++) {
@@ -99,29 +148,21 @@ public class ClassSearchUtils {
 			fileName = file.getName();
 			
 			if (file.isDirectory()) {
-				lookForNamesInDirectory(className, name + fileName + ".", file,
-						classNames);
-			}else{
-				try {
-					if(fileName.equals(className+".class")) {
-						Class.forName(name + className);
-						classNames.add(name + className);
-					}
-				} catch (ClassNotFoundException e) {
-
-				}
+				indexDirectory(name + fileName + ".", file, index);
+			}else if(fileName.endsWith(".class")) {
+				addToIndex(name + fileName.substring(0, fileName.length() - 6), true, index);
 			}
 		}
 	}
 
 	/**
-	 * Search archive files for required resource.
+	 * Indexes the classes of an archive.
 	 * 
 	 * @param archive
-	 *            Jar or zip to be searched for classes or other resources.
+	 *            Jar or zip to be searched for classes.
 	 */
-	private static void lookForNamesInArchive(String className, File archive,
-			ArrayList<String> classNames) {
+	private static void indexArchive(File archive,
+			HashMap<String, List<ClassEntry>> index) {
 		JarFile jarFile = null;
 		try {
 			jarFile = new JarFile(archive);
@@ -135,18 +176,25 @@ public class ClassSearchUtils {
 			entry = (JarEntry) entries.nextElement();
 			entryName = entry.getName();
 			if (entryName.toLowerCase().endsWith(".class")) {
-				try {
-					// convert name into java classloader notation
-					entryName = entryName.substring(0, entryName.length() - 6);
-					entryName = entryName.replace('/', '.');
-
-					if (entryName.endsWith("." + className)
-							&& !entryName.equals(className)) {
-						classNames.add(entryName);
-					}
-
-				} catch (Throwable e) {}
+				// convert name into java classloader notation
+				entryName = entryName.substring(0, entryName.length() - 6);
+				entryName = entryName.replace('/', '.');
+				addToIndex(entryName, false, index);
 			}
 		}
+		try {
+			jarFile.close();
+		} catch (IOException e) {}
+	}
+	
+	private static class ClassEntry {
+		
+		private final String name;
+		private final boolean inDirectory;
+		
+		public ClassEntry(String name, boolean inDirectory) {
+			this.name = name;
+			this.inDirectory = inDirectory;
+		}
 	}
-}
\ No newline at end of file
+}
@@ -1,14 +1,26 @@
 package simulation.util;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Creates objects by the name of their class. The constructor chosen for a
+ * class and the classes of the parameters is kept, so that only the first
+ * instance is looked up by reflection.
+ */
 public class Factory implements Serializable{
 	private static final long serialVersionUID = -5792645805164851756L;
 	public final static Map<Class<?>, Class<?>> map = initializeMap();
 
+	private static final ConcurrentHashMap<Signature, MethodHandle> constructors = new ConcurrentHashMap<Signature, MethodHandle>();
+
 	private static Map<Class<?>, Class<?>> initializeMap() {
 		Map<Class<?>, Class<?>> map = new HashMap<Class<?>, Class<?>>();
 		map.put(Boolean.class, boolean.class);
@@ -24,7 +36,33 @@ public class Factory implements Serializable{
 	}
 
 	public static Object getInstance(String className, Object... objects) {
-//		System.out.println("Build by reflection class "+ className); 
+		Signature signature = Signature.of(className, objects);
+		MethodHandle constructor = signature == null ? null : constructors.get(signature);
+
+		if(constructor == null) {
+			constructor = findConstructor(className, objects);
+			if(signature != null)
+				constructors.put(signature, constructor);
+		}
+
+		try {
+			return (Object)constructor.invokeExact(objects);
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			//the exceptions of the constructor are not wrapped by the method handle
+			System.out.println("Problem with class "+className);
+			e.printStackTrace();
+			throw new RuntimeException("Problem with class " + className, e);
+		}
+	}
+
+	/**
+	 * @return the first declared constructor whose parameters can be assigned
+	 * from the objects, taking an Object[] and returning an Object
+	 */
+	private static MethodHandle findConstructor(String className, Object... objects) {
+//		System.out.println("Build by reflection class "+ className);
 //		String s = "";
 		try {
 			Constructor<?>[] constructors = Class.forName(className).getDeclaredConstructors();
@@ -38,9 +76,9 @@ public class Factory implements Serializable{
 						Class c = objects[i].getClass();
 						if(params[i].isPrimitive())
 							c = map.get(objects[i].getClass());
-						
+
 //						s+=params[i].getName()+"=="+c.getName()+"\n";
-						
+
 						if(!params[i].isAssignableFrom(c)) {
 							found = false;
 							System.out.println(className +" not assignable with "+params[i].getCanonicalName());
@@ -50,17 +88,64 @@ public class Factory implements Serializable{
 //					s+="\n_____\n";
 					if(found) {
 //						System.out.println("found: "+s);
-						return constructor.newInstance(objects);
+						MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+						return handle.asSpreader(Object[].class, params.length).asType(MethodType.methodType(Object.class, Object[].class));
 					}
 				}
 			}
 //			System.out.println(s);
-			
+
 //			System.out.println(className+" ## "+Class.forName(className).getName());
 		} catch (Exception e) {
 			System.out.println("Problem with class "+className);
 			e.printStackTrace();
+			throw new RuntimeException("Unknown classname: " + className, e);
 		}
 		throw new RuntimeException("Unknown classname: " + className);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Name of a class and classes of the objects given to its constructor.
+	 */
+	private static class Signature {
+
+		private final String className;
+		private final Class<?>[] classes;
+		private final int hash;
+
+		private Signature(String className, Class<?>[] classes) {
+			this.className = className;
+			this.classes = classes;
+			this.hash = 31 * className.hashCode() + Arrays.hashCode(classes);
+		}
+
+		/**
+		 * @return the signature, or null if any of the objects is null
+		 */
+		public static Signature of(String className, Object... objects) {
+			if(className == null)
+				return null;
+
+			Class<?>[] classes = new Class<?>[objects.length];
+			for(int i = 0 ; i < objects.length ; i++) {
+				if(objects[i] == null)
+					return null;
+				classes[i] = objects[i].getClass();
+			}
+			return new Signature(className, classes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Signature))
+				return false;
+			Signature other = (Signature)obj;
+			return className.equals(other.className) && Arrays.equals(classes, other.classes);
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package simulation.util;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the classes whose <code>reset</code> restores all the state their
+ * objects had when they were created, so that a {@link simulation.Simulator}
+ * that contains them can be run again with
+ * {@link simulation.Simulator#reset(long)} instead of being created again.
+ *
+ * The annotation is not inherited: a subclass that adds state has to restore
+ * it in its own <code>reset</code> and be annotated again.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+
+public @interface Resettable {
+}
@@ -3,16 +3,52 @@ package simulation.util;
 import java.io.Serializable;
 import java.util.Random;
 
+/**
+ * Splittable random number generator based on SplitMix64. Each instance is
+ * meant to be used by a single object (robot, sensor, actuator), so unlike
+ * {@link Random} it does not pay for an atomic update of the seed on every
+ * call. New independent streams are obtained with {@link #split()}, which
+ * gives the same sequence of streams for the same initial seed.
+ */
 public class SimRandom extends Random implements Serializable {
 
-//	public SimRandom(long seed) {
-//		super(seed);
-//		if (instance != null) {
-//			instance.setSeed(seed);
-//		}
-//	}
-
-//	public static Random getInstance() {
-//		return instance;
-//	}
-}
\ No newline at end of file
+	private static final long serialVersionUID = 2908468340326423567L;
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private long state;
+
+	public SimRandom(long seed) {
+		super(seed);
+		this.state = seed;
+	}
+
+	@Override
+	public synchronized void setSeed(long seed) {
+		super.setSeed(seed);
+		this.state = seed;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int)(nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public long nextLong() {
+		state += GOLDEN_GAMMA;
+		return mix64(state);
+	}
+
+	/**
+	 * Returns a new generator whose sequence is independent from this one.
+	 */
+	public SimRandom split() {
+		return new SimRandom(mix64(nextLong()));
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,83 @@
+package tests;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import simulation.Simulator;
+import simulation.environment.Environment;
+import simulation.physicalobjects.Wall;
+import simulation.robot.Robot;
+import simulation.util.Arguments;
+
+/**
+ * Measures the bytes allocated by the collision handling of robots that are
+ * pushed against walls in every step. After warm-up, the robot-wall path
+ * should not allocate anything.
+ *
+ * Usage: WallCollisionAllocationBenchmark [numberOfRobots] [steps] [drag]
+ */
+public class WallCollisionAllocationBenchmark {
+
+	public static void main(String[] args) {
+
+		int numberOfRobots = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int steps = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		boolean drag = args.length > 2 && args[2].equals("1");
+
+		HashMap<String, Arguments> arguments = new HashMap<String, Arguments>();
+		arguments.put("--environment", new Arguments("classname=simulation.environment.EmptyEnvironment,width=10,height=10"));
+		arguments.put("--robots", new Arguments("classname=simulation.robot.DifferentialDriveRobot,drag=" + (drag ? 1 : 0)));
+
+		Simulator simulator = new Simulator(1, arguments);
+		Environment environment = simulator.getEnvironment();
+
+		double wallLength = numberOfRobots * 0.2;
+		environment.addStaticObject(new Wall(simulator, 0, 0, wallLength, 0.1));
+
+		ArrayList<Robot> robots = new ArrayList<Robot>();
+		for(int i = 0 ; i < numberOfRobots ; i++) {
+			Robot r = Robot.getRobot(simulator, new Arguments("classname=simulation.robot.DifferentialDriveRobot"));
+			//the previous position is above the wall, the current one overlaps it
+			r.moveTo(-wallLength / 2 + 0.1 + i * 0.2, 0.12);
+			r.setPosition(r.getPosition().x, 0.08);
+			robots.add(r);
+		}
+		simulator.addRobots(robots);
+		simulator.setupEnvironment();
+
+		for(int i = 0 ; i < steps ; i++)
+			step(environment, robots, i);
+
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		long before = bean.getThreadAllocatedBytes(threadId);
+		long time = System.nanoTime();
+
+		for(int i = 0 ; i < steps ; i++)
+			step(environment, robots, steps + i);
+
+		time = System.nanoTime() - time;
+		long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+		int colliding = 0;
+		for(Robot r : robots)
+			if(r.isInvolvedInCollisonWall())
+				colliding++;
+
+		System.out.println("Robots: " + numberOfRobots + " (" + colliding + " colliding with the wall), steps: " + steps + ", drag: " + drag);
+		System.out.println("Allocated bytes per step: " + (double)allocated / steps);
+		System.out.println("Time per step (us): " + time / 1000.0 / steps);
+	}
+
+	private static void step(Environment environment, ArrayList<Robot> robots, int time) {
+		for(int i = 0 ; i < robots.size() ; i++) {
+			Robot r = robots.get(i);
+			//push the robot against the wall, as its actuators would
+			r.getPreviousPosition().set(r.getPosition().x, 0.12);
+			r.setPosition(r.getPosition().x, 0.08);
+		}
+		environment.updateCollisions(time);
+	}
+}